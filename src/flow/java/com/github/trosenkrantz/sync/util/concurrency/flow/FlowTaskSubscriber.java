@@ -0,0 +1,80 @@
+package com.github.trosenkrantz.sync.util.concurrency.flow;
+
+import com.github.trosenkrantz.sync.util.concurrency.AsynchronousTask;
+import com.github.trosenkrantz.sync.util.concurrency.ConcurrentTaskDriver;
+import com.github.trosenkrantz.sync.util.concurrency.TaskStreamSubscriber;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Flow;
+
+/**
+ * {@link Flow.Subscriber} feeding a {@link ConcurrentTaskDriver} from a publisher of tasks, pulling tasks only as the driver has room for them.
+ * See {@link TaskStreamSubscriber} for how many tasks are requested.
+ * <p>
+ * This is in the separate sync-util-flow artifact, as it needs Java 9 or newer.
+ * Reactive Streams publishers can be subscribed to after adapting them by {@code org.reactivestreams.FlowAdapters}.
+ */
+public class FlowTaskSubscriber implements Flow.Subscriber<AsynchronousTask> {
+    private final TaskStreamSubscriber subscriber;
+
+    /**
+     * Constructs this.
+     * @param driver   driver to queue tasks to
+     * @param prefetch number of tasks to keep queued or requested beyond the free slots, at least 1
+     * @throws IllegalArgumentException if prefetch is less than 1
+     */
+    public FlowTaskSubscriber(final ConcurrentTaskDriver driver, final int prefetch) throws IllegalArgumentException {
+        this.subscriber = new TaskStreamSubscriber(driver, prefetch);
+    }
+
+    /**
+     * Subscribes a driver to a publisher of tasks.
+     * @param publisher publisher of tasks
+     * @param driver    driver to queue tasks to
+     * @param prefetch  number of tasks to keep queued or requested beyond the free slots, at least 1
+     * @return the subscriber
+     * @throws IllegalArgumentException if prefetch is less than 1
+     */
+    public static FlowTaskSubscriber subscribe(final Flow.Publisher<? extends AsynchronousTask> publisher, final ConcurrentTaskDriver driver, final int prefetch) throws IllegalArgumentException {
+        FlowTaskSubscriber subscriber = new FlowTaskSubscriber(driver, prefetch);
+        publisher.subscribe(subscriber);
+        return subscriber;
+    }
+
+    @Override
+    public void onSubscribe(final Flow.Subscription subscription) {
+        subscriber.onSubscribe(subscription::request, subscription::cancel);
+    }
+
+    @Override
+    public void onNext(final AsynchronousTask task) {
+        subscriber.onNext(task);
+    }
+
+    @Override
+    public void onError(final Throwable error) {
+        subscriber.onError(error);
+    }
+
+    @Override
+    public void onComplete() {
+        subscriber.onComplete();
+    }
+
+    /**
+     * Cancels the subscription.
+     * Tasks already queued still run.
+     */
+    public void cancel() {
+        subscriber.cancel();
+    }
+
+    /**
+     * Gets a future completed when the publisher has completed and all its tasks are done,
+     * or completed exceptionally if the publisher fails, and cancelled if this is cancelled.
+     * @return the future
+     */
+    public CompletableFuture<Void> getCompletion() {
+        return subscriber.getCompletion();
+    }
+}
@@ -0,0 +1,98 @@
+package com.github.trosenkrantz.sync.util.concurrency.flow;
+
+import com.github.trosenkrantz.sync.util.concurrency.AsynchronousTask;
+import com.github.trosenkrantz.sync.util.concurrency.ConcurrentTaskDriver;
+import com.github.trosenkrantz.sync.util.concurrency.Limit;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.SubmissionPublisher;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+class FlowTaskSubscriberTest {
+    private final List<Runnable> onDoneList = new ArrayList<>();
+    private final AsynchronousTask asynchronousTask = onDoneList::add;
+    private final ConcurrentTaskDriver driver = new ConcurrentTaskDriver();
+    private final SubmissionPublisher<AsynchronousTask> publisher = new SubmissionPublisher<>(Runnable::run, 16); // Delivers on the calling thread
+
+    private void assertTasks(final int expectedQueued, final int expectedRunning, final int expectedFinished) {
+        Assertions.assertEquals(expectedQueued, driver.getNumberOfQueuedTasks(), "Wrong number of queued tasks");
+        Assertions.assertEquals(expectedRunning, driver.getNumberOfRunningTasks(), "Wrong number of running tasks");
+        Assertions.assertEquals(expectedFinished, driver.getNumberOfFinishedTasks(), "Wrong number of finished tasks");
+    }
+
+    @Test
+    void pullsOnlyAsDriverHasRoom() {
+        driver.setMaxRunningTasks(Limit.of(1));
+        FlowTaskSubscriber.subscribe(publisher, driver, 1);
+
+        for (int i = 0; i < 5; i++) publisher.submit(asynchronousTask);
+        assertTasks(1, 1, 0);
+        Assertions.assertEquals(3, publisher.estimateMaximumLag()); // Left in the publisher until requested
+
+        onDoneList.remove(0).run();
+        assertTasks(1, 1, 1);
+        Assertions.assertEquals(2, publisher.estimateMaximumLag());
+    }
+
+    @Test
+    void completesWhenPublisherClosesAndTasksDone() {
+        FlowTaskSubscriber subscriber = FlowTaskSubscriber.subscribe(publisher, driver, 1);
+        publisher.submit(asynchronousTask);
+        publisher.submit(asynchronousTask);
+
+        publisher.close();
+        Assertions.assertFalse(subscriber.getCompletion().isDone());
+
+        onDoneList.remove(0).run();
+        onDoneList.remove(0).run();
+        Assertions.assertTrue(subscriber.getCompletion().isDone());
+        Assertions.assertFalse(subscriber.getCompletion().isCompletedExceptionally());
+    }
+
+    @Test
+    void failsWhenPublisherFails() {
+        FlowTaskSubscriber subscriber = FlowTaskSubscriber.subscribe(publisher, driver, 1);
+
+        publisher.closeExceptionally(new IOException("Failed"));
+        ExecutionException exception = Assertions.assertThrows(ExecutionException.class, () -> subscriber.getCompletion().get());
+        Assertions.assertTrue(exception.getCause() instanceof IOException);
+    }
+
+    @Test
+    void cancelUnsubscribes() {
+        FlowTaskSubscriber subscriber = FlowTaskSubscriber.subscribe(publisher, driver, 1);
+        Assertions.assertTrue(publisher.isSubscribed(subscriber));
+
+        subscriber.cancel();
+        Assertions.assertFalse(publisher.isSubscribed(subscriber));
+        Assertions.assertThrows(CancellationException.class, () -> subscriber.getCompletion().join());
+    }
+
+    @Test
+    void runsAllTasksOfAsynchronousPublisher() throws InterruptedException, ExecutionException, TimeoutException {
+        driver.setMaxRunningTasks(Limit.of(4));
+        CountDownLatch done = new CountDownLatch(1000);
+        try (SubmissionPublisher<AsynchronousTask> asynchronousPublisher = new SubmissionPublisher<>()) {
+            FlowTaskSubscriber subscriber = FlowTaskSubscriber.subscribe(asynchronousPublisher, driver, 8);
+
+            for (int i = 0; i < 1000; i++) {
+                asynchronousPublisher.submit(onDone -> {
+                    done.countDown();
+                    onDone.run();
+                });
+            }
+            asynchronousPublisher.close();
+            subscriber.getCompletion().get(8, TimeUnit.SECONDS);
+        }
+        Assertions.assertTrue(done.await(8, TimeUnit.SECONDS));
+        assertTasks(0, 0, 1000);
+    }
+}
@@ -0,0 +1,90 @@
+package com.github.trosenkrantz.sync.util;
+
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.results.Result;
+import org.openjdk.jmh.results.RunResult;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+/**
+ * Runs the benchmarks and compares the scores to a recorded baseline, failing if any benchmark regressed more than a tolerance.
+ * <p>
+ * Arguments:
+ * <ol>
+ *     <li>baseline properties file</li>
+ *     <li>tolerance as a fraction, e.g., 0.1 to allow 10% regression</li>
+ *     <li>true to record the scores as the new baseline instead of comparing, as done by the jmhRecordBaseline task</li>
+ *     <li>regular expression of benchmarks to include</li>
+ * </ol>
+ * Baselines are machine specific, so record them on the machine running the gate.
+ * Comparing fails without a baseline, rather than passing by recording one.
+ */
+public class BenchmarkGate {
+    private BenchmarkGate() {
+    }
+
+    public static void main(final String[] args) throws IOException, RunnerException {
+        File baselineFile = new File(args[0]);
+        double tolerance = Double.parseDouble(args[1]);
+        boolean updateBaseline = Boolean.parseBoolean(args[2]);
+        String include = args[3];
+        if (!updateBaseline && !baselineFile.exists()) {
+            System.err.println("No baseline in " + baselineFile + ". Record one on this machine with ./gradlew jmhRecordBaseline.");
+            System.exit(1);
+        }
+
+        Collection<RunResult> results = new Runner(new OptionsBuilder().include(include).build()).run();
+
+        Properties scores = new Properties();
+        for (RunResult result : results) {
+            Result<?> primaryResult = result.getPrimaryResult();
+            scores.setProperty(getKey(result), Double.toString(primaryResult.getScore()));
+        }
+
+        if (updateBaseline) {
+            try (Writer writer = new OutputStreamWriter(new FileOutputStream(baselineFile), StandardCharsets.UTF_8)) {
+                scores.store(writer, "JMH baseline, recorded by BenchmarkGate");
+            }
+            System.out.println("Recorded baseline of " + scores.size() + " benchmarks in " + baselineFile + ".");
+            return;
+        }
+
+        Properties baseline = new Properties();
+        try (Reader reader = new InputStreamReader(new FileInputStream(baselineFile), StandardCharsets.UTF_8)) {
+            baseline.load(reader);
+        }
+
+        List<String> regressions = new ArrayList<>();
+        for (RunResult result : results) {
+            String key = getKey(result);
+            String baselineScore = baseline.getProperty(key);
+            if (baselineScore == null) continue; // New benchmark, nothing to compare with
+
+            double ratio = result.getPrimaryResult().getScore() / Double.parseDouble(baselineScore);
+            boolean higherIsBetter = result.getParams().getMode() == Mode.Throughput;
+            double improvement = higherIsBetter ? ratio - 1 : 1 - ratio;
+            if (improvement < -tolerance) {
+                regressions.add(String.format("%s regressed %.1f%%", key, -improvement * 100));
+            }
+        }
+
+        if (!regressions.isEmpty()) {
+            regressions.forEach(System.err::println);
+            System.exit(1);
+        }
+        System.out.println("No benchmark regressed more than " + tolerance * 100 + "%.");
+    }
+
+    private static String getKey(final RunResult result) {
+        StringBuilder key = new StringBuilder(result.getParams().getBenchmark());
+        for (String param : new TreeSet<>(result.getParams().getParamsKeys())) {
+            key.append(':').append(param).append('=').append(result.getParams().getParam(param));
+        }
+        return key.toString();
+    }
+}
@@ -0,0 +1,49 @@
+package com.github.trosenkrantz.sync.util.concurrency;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of starting and finishing a task in {@link ConcurrentTaskDriver} in steady state, on a single thread.
+ * Run with {@code -prof gc} to see the bytes allocated per task as {@code gc.alloc.rate.norm}.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class ConcurrentTaskDriverAllocationBenchmark {
+    private final AsynchronousTask inlineTask = onDone -> onDone.run();
+    private final SynchronousTask synchronousTask = () -> {
+    };
+
+    private ConcurrentTaskDriver driver;
+
+    @Param({"false", "true"})
+    public boolean withListener;
+
+    @Setup
+    public void setUp() {
+        driver = new ConcurrentTaskDriver();
+        driver.setMaxRunningTasks(Limit.of(4));
+        if (withListener) driver.addListener((queued, running, finished) -> {
+        });
+    }
+
+    @Benchmark
+    public void asynchronous() {
+        driver.queue(inlineTask);
+    }
+
+    @Benchmark
+    public void prioritised() {
+        driver.queue(1, inlineTask);
+    }
+
+    @Benchmark
+    public void synchronous() {
+        driver.queue(synchronousTask);
+    }
+}
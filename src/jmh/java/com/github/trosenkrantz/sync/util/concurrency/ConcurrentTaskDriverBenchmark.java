@@ -0,0 +1,119 @@
+package com.github.trosenkrantz.sync.util.concurrency;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Throughput of the drivers, measured in tasks per second.
+ * Each producer thread queues a batch of tasks and waits for the batch to finish.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ConcurrentTaskDriverBenchmark {
+    static final int BATCH_SIZE = 1000;
+
+    public enum DriverType {
+        LOCKING, LOCK_FREE, SHARDED
+    }
+
+    public enum Ordering {
+        FIFO, PRIORITY
+    }
+
+    public enum Completion {
+        INLINE, EXECUTOR
+    }
+
+    @Param({"LOCKING", "LOCK_FREE", "SHARDED"})
+    public DriverType driverType;
+
+    @Param({"FIFO", "PRIORITY"})
+    public Ordering ordering;
+
+    @Param({"INLINE", "EXECUTOR"})
+    public Completion completion;
+
+    @Param({"4", "0"}) // 0 means no limit
+    public int maxRunningTasks;
+
+    private Driver driver;
+    private ExecutorService executor;
+
+    @Setup
+    public void setUp() {
+        Limit limit = maxRunningTasks > 0 ? Limit.of(maxRunningTasks) : Limit.noLimit();
+        if (driverType == DriverType.LOCKING) {
+            ConcurrentTaskDriver concurrentTaskDriver = new ConcurrentTaskDriver();
+            concurrentTaskDriver.setMaxRunningTasks(limit);
+            driver = ordering == Ordering.FIFO ? task -> concurrentTaskDriver.queue(task) : task -> concurrentTaskDriver.queue(1, task);
+        } else if (driverType == DriverType.SHARDED) {
+            ShardedConcurrentTaskDriver shardedDriver = new ShardedConcurrentTaskDriver();
+            shardedDriver.setMaxRunningTasks(limit);
+            driver = ordering == Ordering.FIFO ? task -> shardedDriver.queue(task) : task -> shardedDriver.queue(1, task);
+        } else {
+            LockFreeConcurrentTaskDriver lockFreeDriver = new LockFreeConcurrentTaskDriver();
+            lockFreeDriver.setMaxRunningTasks(limit);
+            driver = ordering == Ordering.FIFO ? task -> lockFreeDriver.queue(task) : task -> lockFreeDriver.queue(1, task);
+        }
+        executor = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors());
+    }
+
+    @TearDown
+    public void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH_SIZE)
+    @Threads(1)
+    public void oneProducer() throws InterruptedException {
+        runBatch();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH_SIZE)
+    @Threads(4)
+    public void fourProducers() throws InterruptedException {
+        runBatch();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH_SIZE)
+    @Threads(16)
+    public void sixteenProducers() throws InterruptedException {
+        runBatch();
+    }
+
+    private void runBatch() throws InterruptedException {
+        CountDownLatch latch = new CountDownLatch(BATCH_SIZE);
+        AsynchronousTask task = completion == Completion.INLINE
+                ? onDone -> {
+                    latch.countDown();
+                    onDone.run();
+                }
+                : onDone -> executor.execute(() -> {
+                    latch.countDown();
+                    onDone.run();
+                });
+
+        for (int i = 0; i < BATCH_SIZE; i++) {
+            driver.queue(task);
+        }
+        latch.await();
+    }
+
+    /**
+     * The part of the driver APIs used here, so both drivers can be measured the same way.
+     */
+    private interface Driver {
+        void queue(final AsynchronousTask task);
+    }
+}
@@ -0,0 +1,57 @@
+package com.github.trosenkrantz.sync.util.concurrency;
+
+import com.github.trosenkrantz.sync.util.runnable.SingleRunnable;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of {@link NotifyingTask} notifying subscribers, and of {@link DependentTask} waiting for the tasks it depends on.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class NotifyingTaskBenchmark {
+    @Param({"1", "16", "256"})
+    public int fanSize;
+
+    private NotifyingTask fanOutTask;
+    private ConcurrentTaskDriver driver;
+
+    @Setup
+    public void setUp(final Blackhole blackhole) {
+        fanOutTask = new NotifyingTask(onDone -> onDone.run());
+        for (int i = 0; i < fanSize; i++) {
+            Object token = new Object();
+            fanOutTask.subscribe(() -> blackhole.consume(token)); // Distinct subscribers, as they are kept in a set
+        }
+        driver = new ConcurrentTaskDriver();
+    }
+
+    /**
+     * One task finishing and notifying all its subscribers.
+     */
+    @Benchmark
+    public void fanOut() {
+        fanOutTask.run(new SingleRunnable(() -> {
+        }));
+    }
+
+    /**
+     * One dependent task scheduled after many tasks, which all finish.
+     */
+    @Benchmark
+    public void fanIn(final Blackhole blackhole) {
+        NotifyingTask[] dependencies = new NotifyingTask[fanSize];
+        for (int i = 0; i < fanSize; i++) {
+            dependencies[i] = new NotifyingTask(onDone -> onDone.run());
+        }
+
+        new DependentTask(() -> blackhole.consume(dependencies)).schedule(driver, dependencies);
+        driver.queue(dependencies);
+    }
+}
@@ -0,0 +1,71 @@
+package com.github.trosenkrantz.sync.util.concurrency;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.*;
+
+/**
+ * Baseline for {@link ConcurrentTaskDriverBenchmark} using only JDK primitives:
+ * A {@link Semaphore} limits the number of running tasks, and a {@link ThreadPoolExecutor} runs them.
+ * Compare with the {@code EXECUTOR} completion of the driver benchmark.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class SemaphoreExecutorBaselineBenchmark {
+    private static final int BATCH_SIZE = ConcurrentTaskDriverBenchmark.BATCH_SIZE;
+
+    @Param({"4", "0"}) // 0 means no limit
+    public int maxRunningTasks;
+
+    private Semaphore semaphore;
+    private ThreadPoolExecutor executor;
+
+    @Setup
+    public void setUp() {
+        semaphore = new Semaphore(maxRunningTasks > 0 ? maxRunningTasks : Integer.MAX_VALUE);
+        int threads = Runtime.getRuntime().availableProcessors();
+        executor = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<>());
+    }
+
+    @TearDown
+    public void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH_SIZE)
+    @Threads(1)
+    public void oneProducer() throws InterruptedException {
+        runBatch();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH_SIZE)
+    @Threads(4)
+    public void fourProducers() throws InterruptedException {
+        runBatch();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH_SIZE)
+    @Threads(16)
+    public void sixteenProducers() throws InterruptedException {
+        runBatch();
+    }
+
+    private void runBatch() throws InterruptedException {
+        CountDownLatch latch = new CountDownLatch(BATCH_SIZE);
+        for (int i = 0; i < BATCH_SIZE; i++) {
+            semaphore.acquire(); // Unlike the driver, the producer blocks instead of queueing
+            executor.execute(() -> {
+                latch.countDown();
+                semaphore.release();
+            });
+        }
+        latch.await();
+    }
+}
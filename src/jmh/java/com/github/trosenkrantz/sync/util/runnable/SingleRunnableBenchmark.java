@@ -0,0 +1,70 @@
+package com.github.trosenkrantz.sync.util.runnable;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of {@link SingleRunnable} and {@link SingleRunnableManager}, both for the first run and for repeated runs from many threads.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SingleRunnableBenchmark {
+    @State(Scope.Benchmark)
+    public static class Shared {
+        final SingleRunnable runnable = new SingleRunnable(() -> {
+        });
+        final SingleRunnableManager manager = new SingleRunnableManager();
+
+        @Setup
+        public void setUp() {
+            runnable.run();
+            manager.run(() -> {
+            });
+        }
+    }
+
+    /**
+     * Constructing and running once, as the drivers do for every task.
+     */
+    @Benchmark
+    public SingleRunnable constructAndRun() {
+        SingleRunnable runnable = new SingleRunnable(() -> {
+        });
+        runnable.run();
+        return runnable;
+    }
+
+    /**
+     * Scheduling while suspended and running when allowed.
+     */
+    @Benchmark
+    public SingleRunnableManager suspendAndAllow(final Blackhole blackhole) {
+        SingleRunnableManager manager = new SingleRunnableManager(false);
+        manager.run(() -> blackhole.consume(manager));
+        manager.allow();
+        return manager;
+    }
+
+    /**
+     * Many threads calling an already run instance, as when duplicate triggers are collapsed.
+     */
+    @Benchmark
+    @Threads(8)
+    public void contendedRepeatedRun(final Shared shared) {
+        shared.runnable.run();
+    }
+
+    /**
+     * Many threads calling an already run manager with their own runnable.
+     */
+    @Benchmark
+    @Threads(8)
+    public void contendedManagerRun(final Shared shared, final Blackhole blackhole) {
+        shared.manager.run(() -> blackhole.consume(shared));
+    }
+}
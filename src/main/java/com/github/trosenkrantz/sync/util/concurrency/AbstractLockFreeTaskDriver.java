@@ -0,0 +1,336 @@
+package com.github.trosenkrantz.sync.util.concurrency;
+
+import com.github.trosenkrantz.sync.util.runnable.SingleRunnable;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Queueing, draining and listening shared by the drivers built without locks, leaving admission of tasks to subclasses.
+ * <p>
+ * Tasks are queued in lanes, each a lock-free queue with its own draining thread.
+ * A thread queues tasks in its local lane, and drains that lane, stealing tasks from the other lanes when it is empty.
+ * Only one thread drains a lane at a time; if another thread of the same lane queues or finishes a task meanwhile,
+ * it leaves the work to the draining thread and returns immediately, so the stack depth stays constant.
+ */
+abstract class AbstractLockFreeTaskDriver {
+    private final List<ConcurrentTasksListener> listeners = new CopyOnWriteArrayList<>();
+    private final Lane[] lanes;
+    private final LongAdder tasksFinished = new LongAdder();
+
+    volatile Limit maxRunningTasks = Limit.noLimit();
+
+    /**
+     * Constructs this.
+     * @param numberOfLanes number of lanes to spread queued tasks over, at least 1
+     */
+    AbstractLockFreeTaskDriver(final int numberOfLanes) {
+        this.lanes = new Lane[numberOfLanes];
+        for (int i = 0; i < numberOfLanes; i++) {
+            lanes[i] = new Lane(i);
+        }
+    }
+
+    /**
+     * Takes a slot for running a task, if the limit and suspension allow.
+     * @param lane lane of the calling thread
+     * @return true if and only if a slot was taken
+     */
+    abstract boolean tryAcquireSlot(Lane lane);
+
+    /**
+     * Releases a slot taken by {@link #tryAcquireSlot(Lane)}.
+     * @param lane lane of the calling thread, which may differ from the lane taking the slot
+     */
+    abstract void releaseSlot(Lane lane);
+
+    /**
+     * Limits the number of tasks allowed to run simultaneously.
+     * If the limit {@link Limit#isAdaptive()}, this driver provides it the round trip times of tasks as they are done.
+     * @param maxRunningTasks limit to set
+     */
+    public void setMaxRunningTasks(final Limit maxRunningTasks) {
+        this.maxRunningTasks = maxRunningTasks;
+        updateTasks(getLocalLane());
+    }
+
+    /**
+     * Queues one of more asynchronous tasks.
+     * @param tasks tasks to queue
+     */
+    public void queue(final AsynchronousTask... tasks) {
+        Lane lane = getLocalLane();
+        for (AsynchronousTask task : tasks) {
+            lane.queue.add(task);
+        }
+
+        updateTasks(lane);
+    }
+
+    /**
+     * Queues one of more asynchronous tasks.
+     * @param priority priority, where lower values have higher priority
+     * @param tasks    tasks to queue
+     */
+    public void queue(final int priority, final AsynchronousTask... tasks) {
+        Lane lane = getLocalLane();
+        for (AsynchronousTask task : tasks) {
+            lane.queue.add(priority, task);
+        }
+
+        updateTasks(lane);
+    }
+
+    /**
+     * Queues one or more synchronous tasks.
+     * @param tasks tasks to queue
+     */
+    public void queue(final SynchronousTask... tasks) {
+        queue(Arrays.stream(tasks).map(TaskConverter::toAsynchronous).toArray(AsynchronousTask[]::new)); // Treat as asynchronous to only handle one type of tasks
+    }
+
+    /**
+     * Queues one or more synchronous tasks.
+     * @param priority priority, where lower values have higher priority
+     * @param tasks    tasks to queue
+     */
+    public void queue(final int priority, final SynchronousTask... tasks) {
+        queue(priority, Arrays.stream(tasks).map(TaskConverter::toAsynchronous).toArray(AsynchronousTask[]::new)); // Treat as asynchronous to only handle one type of tasks
+    }
+
+    /**
+     * Queues a batch of asynchronous tasks.
+     * Listeners are notified once for the batch, making this cheaper than queueing the tasks one at a time.
+     * @param tasks tasks to queue
+     */
+    public void queueAll(final Iterable<? extends AsynchronousTask> tasks) {
+        Lane lane = getLocalLane();
+        lane.queue.addAll(tasks);
+
+        updateTasks(lane);
+    }
+
+    /**
+     * Queues a batch of asynchronous tasks with the same priority.
+     * Listeners are notified once for the batch, making this cheaper than queueing the tasks one at a time.
+     * @param priority priority, where lower values have higher priority
+     * @param tasks    tasks to queue
+     */
+    public void queueAll(final int priority, final Iterable<? extends AsynchronousTask> tasks) {
+        Lane lane = getLocalLane();
+        lane.queue.addAll(priority, tasks);
+
+        updateTasks(lane);
+    }
+
+    /**
+     * Clears the queue of tasks not yet started.
+     * Already running tasks are unaffected.
+     */
+    public void clearQueue() {
+        for (Lane lane : lanes) {
+            while (lane.queue.poll() != null) {
+                // Discard the task
+            }
+        }
+        notifyListeners();
+    }
+
+    private void startTask(final AsynchronousTask task) {
+        if (maxRunningTasks.isAdaptive()) {
+            long startedNanos = System.nanoTime();
+            task.run(new SingleRunnable(() -> onTaskDone(startedNanos)));
+        } else {
+            task.run(new SingleRunnable(this::onTaskDone));
+        }
+    }
+
+    private void onTaskDone(final long startedNanos) {
+        Limit currentMaxRunningTasks = maxRunningTasks;
+        if (currentMaxRunningTasks.isAdaptive()) {
+            currentMaxRunningTasks.onTaskDone(System.nanoTime() - startedNanos, false, getNumberOfRunningTasks());
+        }
+        onTaskDone();
+    }
+
+    private void onTaskDone() {
+        tasksFinished.increment(); // Increment before releasing the slot, so a task is never missing from both counts
+        Lane lane = getLocalLane();
+        releaseSlot(lane);
+        updateTasks(lane);
+    }
+
+    /**
+     * Gets the number of tasks queued.
+     * @return the number of tasks queued
+     */
+    public int getNumberOfQueuedTasks() {
+        int queued = 0;
+        for (Lane lane : lanes) {
+            queued += lane.queue.size();
+        }
+        return queued;
+    }
+
+    /**
+     * Gets the number of tasks currently running.
+     * @return the number of tasks running
+     */
+    public abstract int getNumberOfRunningTasks();
+
+    public int getNumberOfFinishedTasks() {
+        return tasksFinished.intValue();
+    }
+
+    /**
+     * Adds listener to be notified of updates.
+     * @param listener listener to be notified
+     */
+    public void addListener(final ConcurrentTasksListener listener) {
+        listeners.add(listener);
+    }
+
+    /**
+     * Removes listener added by {@link #addListener(ConcurrentTasksListener)}.
+     * @param listener listener to remove
+     */
+    public void removeListener(final ConcurrentTasksListener listener) {
+        listeners.remove(listener);
+    }
+
+    /**
+     * Prevents starting new tasks until {@link #resume()} is called.
+     */
+    public abstract void suspend();
+
+    /**
+     * Prevents starting new tasks until {@link #resume()} is called.
+     * @param whenIdle called when no more tasks are running, or immediately if no tasks are currently running
+     */
+    public void suspend(final Runnable whenIdle) {
+        suspend();
+
+        // The last task may finish on another thread while we subscribe, so guard against calling whenIdle twice
+        SingleRunnable whenIdleOnce = new SingleRunnable(whenIdle);
+        ConcurrentTasksListener listener = new ConcurrentTasksListener() {
+            @Override
+            public void onProgress(final int queued, final int running, final int finished) {
+                if (running <= 0) {
+                    removeListener(this);
+                    whenIdleOnce.run();
+                }
+            }
+        };
+        addListener(listener);
+
+        if (getNumberOfRunningTasks() <= 0) {
+            removeListener(listener);
+            whenIdleOnce.run();
+        }
+    }
+
+    /**
+     * Removes the prevention of starting new tasks caused by {@link #suspend()} or {@link #suspend(Runnable)}.
+     */
+    public void resume() {
+        allowStarting();
+        updateTasks(getLocalLane());
+    }
+
+    /**
+     * Clears the suspension, for {@link #resume()} to start tasks afterwards.
+     */
+    abstract void allowStarting();
+
+    public abstract boolean isSuspended();
+
+    int getNumberOfLanes() {
+        return lanes.length;
+    }
+
+    Lane getLocalLane() {
+        return lanes.length == 1 ? lanes[0] : lanes[(int) (Thread.currentThread().getId() % lanes.length)];
+    }
+
+    /**
+     * Starts tasks while there is capacity, taking them from a lane, or stealing from other lanes when it is empty, and notifies listeners.
+     * If another call is already doing this for the lane, that call is asked to do another round instead.
+     * @param lane lane to start tasks for
+     */
+    private void updateTasks(final Lane lane) {
+        if (lane.updatesRequested.getAndIncrement() != 0) return; // The draining thread will do another round
+
+        RuntimeException failure = null;
+        int handledRequests = 0;
+        boolean hasStoppedDraining = false;
+        try {
+            do {
+                handledRequests = lane.updatesRequested.get();
+
+                while (getNumberOfQueuedTasks() > 0 && tryAcquireSlot(lane)) {
+                    AsynchronousTask task = pollTask(lane);
+                    if (task == null) {
+                        // Another thread took the task. Release and check again, since a producer may have seen our slot as taken meanwhile.
+                        releaseSlot(lane);
+                        continue;
+                    }
+
+                    try {
+                        startTask(task);
+                    } catch (final RuntimeException e) {
+                        // Keep draining, so other tasks are not stuck in the queue, and throw afterwards
+                        if (failure == null) failure = e;
+                        else failure.addSuppressed(e);
+                    }
+                }
+
+                notifyListeners();
+            } while (!(hasStoppedDraining = lane.updatesRequested.addAndGet(-handledRequests) == 0));
+        } finally {
+            if (!hasStoppedDraining) lane.updatesRequested.set(0);
+        }
+
+        if (failure != null) throw failure;
+    }
+
+    /**
+     * Takes the next task, prioritised tasks first.
+     * Each kind is taken from the lane itself if possible, and otherwise stolen from the other lanes.
+     * @param lane lane to take tasks from first
+     * @return the task, or null if all lanes are empty
+     */
+    private AsynchronousTask pollTask(final Lane lane) {
+        for (int i = 0; i < lanes.length; i++) {
+            AsynchronousTask task = lanes[(lane.index + i) % lanes.length].queue.pollPrioritised();
+            if (task != null) return task;
+        }
+        for (int i = 0; i < lanes.length; i++) {
+            AsynchronousTask task = lanes[(lane.index + i) % lanes.length].queue.pollFifo();
+            if (task != null) return task;
+        }
+        return null;
+    }
+
+    private void notifyListeners() {
+        if (listeners.isEmpty()) return;
+
+        int numberOfQueuedTasks = getNumberOfQueuedTasks();
+        int numberOfRunningTasks = getNumberOfRunningTasks();
+        int numberOfFinishedTasks = getNumberOfFinishedTasks();
+
+        listeners.forEach(listener -> listener.onProgress(numberOfQueuedTasks, numberOfRunningTasks, numberOfFinishedTasks)); // Iterates a snapshot, so listeners may remove themselves
+    }
+
+    static final class Lane {
+        final int index;
+        private final LockFreeTaskQueue queue = new LockFreeTaskQueue();
+        private final AtomicInteger updatesRequested = new AtomicInteger(); // Non-zero while a thread is draining
+
+        private Lane(final int index) {
+            this.index = index;
+        }
+    }
+}
@@ -0,0 +1,72 @@
+package com.github.trosenkrantz.sync.util.concurrency;
+
+/**
+ * A limit that adapts its value to feedback about the tasks it limits.
+ * Set it on a driver with {@link ConcurrentTaskDriver#setMaxRunningTasks(Limit)} and the driver provides the feedback.
+ * <p>
+ * The value always stays between a minimum and a maximum.
+ * Do not share an instance between drivers, as the feedback of one driver would affect the others.
+ */
+public abstract class AdaptiveLimit extends Limit {
+    private final int min;
+    private final int max;
+
+    private volatile int value;
+
+    /**
+     * Constructs this.
+     * @param initial initial value
+     * @param min     minimum value
+     * @param max     maximum value
+     * @throws IllegalArgumentException if not {@code 1 <= min <= initial <= max}
+     */
+    protected AdaptiveLimit(final int initial, final int min, final int max) throws IllegalArgumentException {
+        if (min < 1 || initial < min || max < initial) {
+            throw new IllegalArgumentException("Must have 1 <= min <= initial <= max, but had min " + min + ", initial " + initial + " and max " + max + ".");
+        }
+
+        this.min = min;
+        this.max = max;
+        this.value = initial;
+    }
+
+    @Override
+    public boolean hasLimit() {
+        return true;
+    }
+
+    @Override
+    protected int getValue() {
+        return value;
+    }
+
+    public int getMin() {
+        return min;
+    }
+
+    public int getMax() {
+        return max;
+    }
+
+    @Override
+    public boolean isAdaptive() {
+        return true;
+    }
+
+    @Override
+    public synchronized void onTaskDone(final long roundTripNanos, final boolean failed, final int running) {
+        value = Math.max(min, Math.min(max, computeValue(value, roundTripNanos, failed, running)));
+    }
+
+    /**
+     * Computes the new value of this limit, when a task is done.
+     * Calls are serialised, so implementations may keep state without further synchronisation.
+     * The result is clamped between the minimum and maximum.
+     * @param current        current value
+     * @param roundTripNanos time in nanoseconds from the task started until it was done
+     * @param failed         true if the task failed
+     * @param running        number of running tasks, including the task that is done
+     * @return the new value
+     */
+    protected abstract int computeValue(final int current, final long roundTripNanos, final boolean failed, final int running);
+}
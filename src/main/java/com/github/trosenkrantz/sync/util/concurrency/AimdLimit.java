@@ -0,0 +1,50 @@
+package com.github.trosenkrantz.sync.util.concurrency;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * An adaptive limit using additive increase, multiplicative decrease (AIMD).
+ * <p>
+ * While tasks succeed within a latency threshold, the limit increases by one for each task done, but only while at least half the limit is in use.
+ * When a task fails or exceeds the threshold, the limit is multiplied by a backoff ratio.
+ */
+public class AimdLimit extends AdaptiveLimit {
+    private final double backoffRatio;
+    private final long latencyThresholdNanos;
+
+    /**
+     * Constructs with a backoff ratio of 0.9 and no latency threshold, so the limit only decreases when tasks fail.
+     * @param initial initial value
+     * @param min     minimum value
+     * @param max     maximum value
+     * @throws IllegalArgumentException if not {@code 1 <= min <= initial <= max}
+     */
+    public AimdLimit(final int initial, final int min, final int max) throws IllegalArgumentException {
+        this(initial, min, max, 0.9, Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Constructs this.
+     * @param initial          initial value
+     * @param min              minimum value
+     * @param max              maximum value
+     * @param backoffRatio     ratio to multiply the limit with when backing off, between 0 and 1
+     * @param latencyThreshold round trip time above which a task counts as failed
+     * @param unit             unit of the latency threshold
+     * @throws IllegalArgumentException if not {@code 1 <= min <= initial <= max}, or if the backoff ratio is not between 0 and 1
+     */
+    public AimdLimit(final int initial, final int min, final int max, final double backoffRatio, final long latencyThreshold, final TimeUnit unit) throws IllegalArgumentException {
+        super(initial, min, max);
+        if (backoffRatio <= 0 || backoffRatio >= 1) throw new IllegalArgumentException("Backoff ratio must be between 0 and 1, but was " + backoffRatio + ".");
+
+        this.backoffRatio = backoffRatio;
+        this.latencyThresholdNanos = unit.toNanos(latencyThreshold);
+    }
+
+    @Override
+    protected int computeValue(final int current, final long roundTripNanos, final boolean failed, final int running) {
+        if (failed || roundTripNanos > latencyThresholdNanos) return (int) (current * backoffRatio);
+        if (running * 2 >= current) return current + 1; // Only increase when the limit is actually in use
+        return current;
+    }
+}
@@ -0,0 +1,16 @@
+package com.github.trosenkrantz.sync.util.concurrency;
+
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * An asynchronous task producing a value, ready to be run.
+ * @param <T> type of value
+ */
+public interface AsynchronousValueTask<T> {
+    /**
+     * Runs this task. The implementation must ensure {@code result} is completed when the task is done, exceptionally if failed.
+     * Throwing from this completes {@code result} exceptionally.
+     * @param result future to complete with the value
+     */
+    void run(final CompletableFuture<T> result);
+}
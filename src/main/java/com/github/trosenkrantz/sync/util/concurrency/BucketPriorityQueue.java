@@ -0,0 +1,244 @@
+package com.github.trosenkrantz.sync.util.concurrency;
+
+import java.util.AbstractQueue;
+import java.util.ArrayDeque;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * A queue of tasks ordered by priority, where lower values have higher priority, and tasks of equal priority keep the order they were added in.
+ * <p>
+ * Each priority from 0 to 63 has its own bucket, a ring buffer, and a bitmap tracks which buckets are non-empty.
+ * Adding and removing tasks of these priorities is therefore O(1).
+ * Tasks of other priorities go to overflow buckets in a sorted map, costing O(log k) for k distinct such priorities.
+ * <p>
+ * With {@link PriorityAging}, the effective priority of a task depends on the time it has waited.
+ * As tasks of equal priority keep their order, the first task of each bucket has waited the longest and has the best effective priority of the bucket.
+ * Finding the next task therefore only compares the first task of each non-empty bucket, regardless of the number of tasks queued.
+ * To make {@link #poll()} remove the task returned by a preceding {@link #peek()}, although time has passed, the bucket found by peek is remembered until this changes.
+ * <p>
+ * This is not thread-safe.
+ */
+final class BucketPriorityQueue extends AbstractQueue<QueuedTask> {
+    private static final int NUMBER_OF_BUCKETS = Long.SIZE;
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private final ArrayDeque<QueuedTask>[] buckets = new ArrayDeque[NUMBER_OF_BUCKETS];
+    private final TreeMap<Integer, ArrayDeque<QueuedTask>> overflowBuckets = new TreeMap<>();
+    private long occupiedBuckets = 0; // Bit i is set if and only if buckets[i] is non-empty
+    private int size = 0;
+    private PriorityAging aging = PriorityAging.none();
+    private ArrayDeque<QueuedTask> peekedBucket = null; // Bucket found by the latest peek, if nothing has changed since
+
+    /**
+     * Sets the aging policy, affecting tasks already queued too.
+     * @param aging policy to set
+     */
+    void setAging(final PriorityAging aging) {
+        this.aging = aging;
+        peekedBucket = null;
+    }
+
+    @Override
+    public boolean offer(final QueuedTask task) {
+        peekedBucket = null;
+        getOrCreateBucket(task.priority).addLast(task);
+        size++;
+        return true;
+    }
+
+    /**
+     * Adds a task in front of other tasks of the same priority.
+     * @param task task to add
+     */
+    void addFirst(final QueuedTask task) {
+        peekedBucket = null;
+        getOrCreateBucket(task.priority).addFirst(task);
+        size++;
+    }
+
+    @Override
+    public QueuedTask poll() {
+        ArrayDeque<QueuedTask> bucket = peekedBucket != null ? peekedBucket : getFirstBucket();
+        peekedBucket = null;
+        if (bucket == null) return null;
+
+        QueuedTask task = bucket.pollFirst();
+        size--;
+        if (bucket.isEmpty()) onEmptied(task.priority);
+        return task;
+    }
+
+    /**
+     * Takes the task of lowest priority, added last among tasks of that priority, ignoring aging.
+     * @return the task, or null if this is empty
+     */
+    QueuedTask pollLast() {
+        ArrayDeque<QueuedTask> bucket = getLastBucket();
+        peekedBucket = null;
+        if (bucket == null) return null;
+
+        QueuedTask task = bucket.pollLast();
+        size--;
+        if (bucket.isEmpty()) onEmptied(task.priority);
+        return task;
+    }
+
+    @Override
+    public QueuedTask peek() {
+        peekedBucket = getFirstBucket();
+        return peekedBucket == null ? null : peekedBucket.peekFirst();
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public void clear() {
+        for (int i = 0; i < NUMBER_OF_BUCKETS; i++) {
+            if (buckets[i] != null) buckets[i].clear();
+        }
+        overflowBuckets.clear();
+        occupiedBuckets = 0;
+        size = 0;
+        peekedBucket = null;
+    }
+
+    /**
+     * Removes cancelled tasks, keeping the order of the others.
+     * @return the number of tasks removed
+     */
+    int removeCancelled() {
+        peekedBucket = null;
+        int removed = 0;
+        for (int i = 0; i < NUMBER_OF_BUCKETS; i++) {
+            if (buckets[i] != null) removed += removeCancelled(buckets[i], i);
+        }
+        for (Iterator<Map.Entry<Integer, ArrayDeque<QueuedTask>>> iterator = overflowBuckets.entrySet().iterator(); iterator.hasNext(); ) {
+            Map.Entry<Integer, ArrayDeque<QueuedTask>> entry = iterator.next();
+            removed += removeCancelled(entry.getValue(), entry.getKey());
+            if (entry.getValue().isEmpty()) iterator.remove();
+        }
+        size -= removed;
+        return removed;
+    }
+
+    private int removeCancelled(final ArrayDeque<QueuedTask> bucket, final int priority) {
+        int removed = 0;
+        for (int i = bucket.size(); i > 0; i--) { // Rotate through the bucket once, in place
+            QueuedTask task = bucket.pollFirst();
+            if (task.cancelled) removed++;
+            else bucket.addLast(task);
+        }
+        if (bucket.isEmpty() && isBucketed(priority)) occupiedBuckets &= ~(1L << priority);
+        return removed;
+    }
+
+    /**
+     * Iterates tasks in bucket order, but not necessarily in priority order across overflow buckets.
+     * Removal through the iterator is not supported.
+     * @return the iterator
+     */
+    @Override
+    public Iterator<QueuedTask> iterator() {
+        ArrayDeque<QueuedTask> all = new ArrayDeque<>(size);
+        for (ArrayDeque<QueuedTask> bucket : buckets) {
+            if (bucket != null) all.addAll(bucket);
+        }
+        for (ArrayDeque<QueuedTask> bucket : overflowBuckets.values()) {
+            all.addAll(bucket);
+        }
+        return Collections.unmodifiableCollection(all).iterator();
+    }
+
+    private static boolean isBucketed(final int priority) {
+        return priority >= 0 && priority < NUMBER_OF_BUCKETS;
+    }
+
+    private ArrayDeque<QueuedTask> getOrCreateBucket(final int priority) {
+        if (isBucketed(priority)) {
+            ArrayDeque<QueuedTask> bucket = buckets[priority];
+            if (bucket == null) {
+                bucket = new ArrayDeque<>();
+                buckets[priority] = bucket;
+            }
+            occupiedBuckets |= 1L << priority;
+            return bucket;
+        } else {
+            return overflowBuckets.computeIfAbsent(priority, ignored -> new ArrayDeque<>());
+        }
+    }
+
+    /**
+     * Gets the non-empty bucket of highest priority.
+     * @return the bucket, or null if this is empty
+     */
+    private ArrayDeque<QueuedTask> getFirstBucket() {
+        if (aging.isEnabled()) return getFirstAgedBucket();
+
+        Map.Entry<Integer, ArrayDeque<QueuedTask>> firstOverflow = overflowBuckets.firstEntry();
+        if (firstOverflow != null && firstOverflow.getKey() < 0) return firstOverflow.getValue(); // Negative priorities precede all buckets
+        if (occupiedBuckets != 0) return buckets[Long.numberOfTrailingZeros(occupiedBuckets)];
+        return firstOverflow == null ? null : firstOverflow.getValue();
+    }
+
+    /**
+     * Gets the non-empty bucket of lowest priority.
+     * @return the bucket, or null if this is empty
+     */
+    private ArrayDeque<QueuedTask> getLastBucket() {
+        Map.Entry<Integer, ArrayDeque<QueuedTask>> lastOverflow = overflowBuckets.lastEntry();
+        if (lastOverflow != null && lastOverflow.getKey() >= 0) return lastOverflow.getValue(); // Positive overflow priorities follow all buckets
+        if (occupiedBuckets != 0) return buckets[NUMBER_OF_BUCKETS - 1 - Long.numberOfLeadingZeros(occupiedBuckets)];
+        return lastOverflow == null ? null : lastOverflow.getValue();
+    }
+
+    /**
+     * Gets the non-empty bucket whose first task has the best effective priority.
+     * Ties go to the bucket of best original priority.
+     * @return the bucket, or null if this is empty
+     */
+    private ArrayDeque<QueuedTask> getFirstAgedBucket() {
+        long now = System.nanoTime();
+        ArrayDeque<QueuedTask> bestBucket = null;
+        int bestPriority = Integer.MAX_VALUE;
+
+        for (ArrayDeque<QueuedTask> bucket : overflowBuckets.headMap(0).values()) { // Negative priorities precede all buckets
+            int priority = getEffectivePriority(bucket.peekFirst(), now);
+            if (bestBucket == null || priority < bestPriority) {
+                bestBucket = bucket;
+                bestPriority = priority;
+            }
+        }
+        for (long remaining = occupiedBuckets; remaining != 0; remaining &= remaining - 1) {
+            ArrayDeque<QueuedTask> bucket = buckets[Long.numberOfTrailingZeros(remaining)];
+            int priority = getEffectivePriority(bucket.peekFirst(), now);
+            if (bestBucket == null || priority < bestPriority) {
+                bestBucket = bucket;
+                bestPriority = priority;
+            }
+        }
+        for (ArrayDeque<QueuedTask> bucket : overflowBuckets.tailMap(0).values()) {
+            int priority = getEffectivePriority(bucket.peekFirst(), now);
+            if (bestBucket == null || priority < bestPriority) {
+                bestBucket = bucket;
+                bestPriority = priority;
+            }
+        }
+
+        return bestBucket;
+    }
+
+    private int getEffectivePriority(final QueuedTask task, final long now) {
+        return aging.getEffectivePriority(task.priority, task.queuedNanos, now);
+    }
+
+    private void onEmptied(final int priority) {
+        if (isBucketed(priority)) occupiedBuckets &= ~(1L << priority); // Keep the ring buffer for reuse
+        else overflowBuckets.remove(priority);
+    }
+}
@@ -0,0 +1,15 @@
+package com.github.trosenkrantz.sync.util.concurrency;
+
+/**
+ * An asynchronous task that can be told to stop, when a driver gives up on it.
+ * <p>
+ * A driver calls {@link #cancel()} when the task times out.
+ * By then, the driver has counted the task as done and failed, and calling {@code onDone} afterwards has no effect.
+ */
+public interface CancellableTask extends AsynchronousTask {
+    /**
+     * Asks this task to stop and release its resources.
+     * This is called on a timer thread shared with other drivers, so it should return quickly.
+     */
+    void cancel();
+}
@@ -1,8 +1,19 @@
 package com.github.trosenkrantz.sync.util.concurrency;
 
 import com.github.trosenkrantz.sync.util.runnable.SingleRunnable;
+import com.github.trosenkrantz.sync.util.timer.HashedWheelTimer;
 
+import javax.management.JMException;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
 import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
 
 /**
  * Driver for managing tasks that run concurrently.
@@ -11,12 +22,44 @@ import java.util.*;
  * This driver does not use threading.
  * If you want to run tasks with high CPU usage, you should handle threading yourself.
  * You could do that by wrapping your tasks in {@link ExecutorServiceTask}.
+ * <p>
+ * Each thread starts the tasks its own calls let in, from a drain loop.
+ * If a task is done, or a task is queued, while a call further up the same thread's stack is already starting tasks,
+ * that call takes over the work instead.
+ * This keeps the stack depth constant, even when many tasks are done within their own {@link AsynchronousTask#run(SingleRunnable)},
+ * while tasks let in by different threads still start on their own threads, in parallel.
  */
 public class ConcurrentTaskDriver {
-    private final List<ConcurrentTasksListener> listeners = new ArrayList<>();
-    private final Queue<AsynchronousTask> fifoQueue = new ArrayDeque<>();
-    private final Queue<PriorityAsynchronousTask> priorityQueue = new PriorityQueue<>();
-    private Limit maxRunningTasks;
+    private static final int MIN_CANCELLED_TASKS_TO_COMPACT = 64;
+
+    private final ReentrantLock lock = new ReentrantLock(); // Rather than synchronized, so virtual threads waiting for it do not pin their carrier thread
+    private final Condition spaceAvailable = lock.newCondition();
+    private volatile ConcurrentTasksListener[] listeners = new ConcurrentTasksListener[0]; // Replaced on change, so notifying iterates without allocating
+    private final Deque<QueuedTask> fifoQueue = new ArrayDeque<>();
+    private final BucketPriorityQueue priorityQueue = new BucketPriorityQueue();
+    private final ThreadLocal<Drain> drains = ThreadLocal.withInitial(Drain::new); // Per thread, so each thread starts the tasks it admits
+    private volatile Limit maxRunningTasks;
+    private Limit maxRunningWeight = Limit.noLimit();
+    private OversizedTaskPolicy oversizedTaskPolicy = OversizedTaskPolicy.RUN_ALONE;
+    private long runningWeight = 0;
+    private int cancelledQueuedTasks = 0; // Cancelled tasks still in the queues
+    private RateLimit rateLimit = RateLimit.noLimit();
+    private boolean refillWakeUpScheduled = false;
+    private volatile TaskStatistics statistics; // Null when disabled
+    private volatile TaskTraceRecorder traceRecorder; // Null when disabled
+    private volatile PriorityAging priorityAging = PriorityAging.none();
+    private volatile long defaultTimeoutNanos = 0; // 0 means no timeout
+    private volatile boolean virtualThreadsEnabled = false;
+    private Limit maxQueuedTasks = Limit.noLimit();
+    private QueueFullPolicy queueFullPolicy = QueueFullPolicy.REJECT;
+    private final Deque<PendingOffer> pendingOffers = new ArrayDeque<>(); // Asynchronous offers waiting for space in the queue
+    private final List<CompletableFuture<Void>> acceptedOffers = new ArrayList<>(); // Completed by a draining call, outside the lock
+    private int blockedProducers = 0;
+    private final Deque<TaskSource> taskSources = new ArrayDeque<>(); // Pulled from in order, as slots free up
+    private final List<TaskSource> endedTaskSources = new ArrayList<>(); // Completed by a draining call, outside the lock
+    private volatile int tasksDropped = 0;
+    private volatile int queuedTasksSnapshot = 0; // As of the last notification of listeners, for reading without the lock
+    private ObjectName mBeanName; // Null if not registered
 
     private volatile int tasksStarted = 0;
     private volatile int tasksFinished = 0;
@@ -31,102 +74,1108 @@ public class ConcurrentTaskDriver {
 
     /**
      * Limits the number of tasks allowed to run simultaneously.
+     * If the limit {@link Limit#isAdaptive()}, this driver provides it feedback of tasks as they are done.
+     * Synchronous tasks throwing and asynchronous tasks timing out count as failed.
      * @param maxRunningTasks limit to set
      */
     public void setMaxRunningTasks(final Limit maxRunningTasks) {
-        synchronized (this) {
+        TaskEvents.limitChanged(this, "maxRunningTasks", maxRunningTasks);
+        lock.lock();
+        try {
             this.maxRunningTasks = maxRunningTasks;
+            if (!tryStartDraining()) return;
+        } finally {
+            lock.unlock();
         }
-        updateTasks();
+        drain();
     }
 
     /**
-     * Queues one of more asynchronous tasks.
-     * @param tasks tasks to queue
+     * Gets the limit of the number of tasks allowed to run simultaneously.
+     * @return the limit
+     */
+    public Limit getMaxRunningTasks() {
+        return maxRunningTasks;
+    }
+
+    /**
+     * Limits the sum of weights of tasks allowed to run simultaneously.
+     * Tasks queued without a weight weigh 1.
+     * <p>
+     * Tasks are started in queue order, so a task not fitting within the remaining weight holds back the tasks after it, until enough running tasks are done.
+     * This prevents light tasks from starving heavy ones.
+     * Tasks weighing more than the limit are handled by the {@link OversizedTaskPolicy}.
+     * @param maxRunningWeight limit to set
      */
-    public void queue(final AsynchronousTask... tasks) {
-        synchronized (this) {
-            Collections.addAll(fifoQueue, tasks);
+    public void setMaxRunningWeight(final Limit maxRunningWeight) {
+        TaskEvents.limitChanged(this, "maxRunningWeight", maxRunningWeight);
+        lock.lock();
+        try {
+            this.maxRunningWeight = maxRunningWeight;
+            if (!tryStartDraining()) return;
+        } finally {
+            lock.unlock();
         }
+        drain();
+    }
+
+    /**
+     * Limits the rate of starting tasks, in addition to the other limits.
+     * <p>
+     * When a task is held back for lack of tokens, this driver wakes up when a token is available, using a thread shared by all drivers.
+     * Tasks started then are started on that thread, so synchronous tasks should be short, or the rate limits of other drivers may lag.
+     * @param rateLimit rate limit to set
+     */
+    public void setRateLimit(final RateLimit rateLimit) {
+        lock.lock();
+        try {
+            this.rateLimit = rateLimit;
+            if (!tryStartDraining()) return;
+        } finally {
+            lock.unlock();
+        }
+        drain();
+    }
+
+    /**
+     * Sets what to do with tasks weighing more than the max running weight.
+     * Defaults to {@link OversizedTaskPolicy#RUN_ALONE}.
+     * @param oversizedTaskPolicy policy to set
+     */
+    public void setOversizedTaskPolicy(final OversizedTaskPolicy oversizedTaskPolicy) {
+        lock.lock();
+        try {
+            this.oversizedTaskPolicy = oversizedTaskPolicy;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Limits the number of tasks waiting in queue, keeping memory use bounded when tasks are queued faster than they are done.
+     * Tasks queued when the queue is full are handled by the {@link QueueFullPolicy}.
+     * Lowering the limit does not remove tasks already queued.
+     * @param maxQueuedTasks limit to set
+     */
+    public void setMaxQueuedTasks(final Limit maxQueuedTasks) {
+        TaskEvents.limitChanged(this, "maxQueuedTasks", maxQueuedTasks);
+        lock.lock();
+        try {
+            this.maxQueuedTasks = maxQueuedTasks;
+            if (!tryStartDraining()) return;
+        } finally {
+            lock.unlock();
+        }
+        drain(); // Lets in waiting producers, if raised
+    }
+
+    /**
+     * Sets what to do with tasks queued when the queue is full.
+     * Defaults to {@link QueueFullPolicy#REJECT}.
+     * @param queueFullPolicy policy to set
+     */
+    public void setQueueFullPolicy(final QueueFullPolicy queueFullPolicy) {
+        lock.lock();
+        try {
+            this.queueFullPolicy = queueFullPolicy;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Queues an asynchronous task.
+     * @param task task to queue
+     * @return handle for cancelling the task before it starts
+     * @throws RejectedExecutionException if the queue is full and the queue full policy is {@link QueueFullPolicy#REJECT}
+     */
+    public TaskHandle queue(final AsynchronousTask task) throws RejectedExecutionException {
+        return queueCancellable(new QueuedTask(task, null, false, 0, 1, getTimestamp()));
+    }
+
+    /**
+     * Queues an asynchronous task.
+     * @param priority priority, where lower values have higher priority
+     * @param task     task to queue
+     * @return handle for cancelling the task before it starts
+     * @throws RejectedExecutionException if the queue is full and the queue full policy is {@link QueueFullPolicy#REJECT}
+     */
+    public TaskHandle queue(final int priority, final AsynchronousTask task) throws RejectedExecutionException {
+        return queueCancellable(new QueuedTask(task, null, true, priority, 1, getTimestamp()));
+    }
+
+    /**
+     * Queues a synchronous task.
+     * @param task task to queue
+     * @return handle for cancelling the task before it starts
+     * @throws RejectedExecutionException if the queue is full and the queue full policy is {@link QueueFullPolicy#REJECT}
+     */
+    public TaskHandle queue(final SynchronousTask task) throws RejectedExecutionException {
+        return queueCancellable(new QueuedTask(null, task, false, 0, 1, getTimestamp()));
+    }
+
+    /**
+     * Queues a synchronous task.
+     * @param priority priority, where lower values have higher priority
+     * @param task     task to queue
+     * @return handle for cancelling the task before it starts
+     * @throws RejectedExecutionException if the queue is full and the queue full policy is {@link QueueFullPolicy#REJECT}
+     */
+    public TaskHandle queue(final int priority, final SynchronousTask task) throws RejectedExecutionException {
+        return queueCancellable(new QueuedTask(null, task, true, priority, 1, getTimestamp()));
+    }
+
+    /**
+     * Queues an asynchronous task, calling back if the task leaves the queue without starting.
+     * @param task      task to queue
+     * @param onRemoved called when the task is cancelled, dropped or cleared before it starts
+     * @return handle for cancelling the task before it starts
+     * @throws RejectedExecutionException if the queue is full and the queue full policy is {@link QueueFullPolicy#REJECT}
+     */
+    TaskHandle queueRemovable(final AsynchronousTask task, final Runnable onRemoved) throws RejectedExecutionException {
+        QueuedTask queuedTask = new QueuedTask(task, null, false, 0, 1, getTimestamp());
+        queuedTask.onRemoved = onRemoved;
+        return queueCancellable(queuedTask);
+    }
+
+    /**
+     * Queues a synchronous task, calling back if the task leaves the queue without starting.
+     * @param task      task to queue
+     * @param onRemoved called when the task is cancelled, dropped or cleared before it starts
+     * @return handle for cancelling the task before it starts
+     * @throws RejectedExecutionException if the queue is full and the queue full policy is {@link QueueFullPolicy#REJECT}
+     */
+    TaskHandle queueRemovable(final SynchronousTask task, final Runnable onRemoved) throws RejectedExecutionException {
+        QueuedTask queuedTask = new QueuedTask(null, task, false, 0, 1, getTimestamp());
+        queuedTask.onRemoved = onRemoved;
+        return queueCancellable(queuedTask);
+    }
 
-        updateTasks();
+    private TaskHandle queueCancellable(final QueuedTask task) throws RejectedExecutionException {
+        task.driver = this; // The task is its own handle, so queueing a single task allocates nothing beyond it
+        queueTasks(null, task);
+        return task;
+    }
+
+    /**
+     * Submits an asynchronous task producing a value.
+     * <p>
+     * The task is given the returned future to complete, and is done when the future is completed, by the task or by anyone else.
+     * Completing the future exceptionally counts as failed, and so does timing out, which completes the future with a {@link java.util.concurrent.TimeoutException}.
+     * Completing or cancelling the future before the task starts removes the task from the queue.
+     * @param task task to submit
+     * @param <T>  type of value
+     * @return future of the value
+     * @throws RejectedExecutionException if the queue is full and the queue full policy is {@link QueueFullPolicy#REJECT}
+     */
+    public <T> CompletableFuture<T> submit(final AsynchronousValueTask<T> task) throws RejectedExecutionException {
+        SubmittedTask<T> submittedTask = new SubmittedTask<>(task, null);
+        return submit(submittedTask, queueCancellable(new QueuedTask(submittedTask, null, false, 0, 1, getTimestamp())));
+    }
+
+    /**
+     * Submits an asynchronous task producing a value, as {@link #submit(AsynchronousValueTask)}.
+     * @param priority priority, where lower values have higher priority
+     * @param task     task to submit
+     * @param <T>      type of value
+     * @return future of the value
+     * @throws RejectedExecutionException if the queue is full and the queue full policy is {@link QueueFullPolicy#REJECT}
+     */
+    public <T> CompletableFuture<T> submit(final int priority, final AsynchronousValueTask<T> task) throws RejectedExecutionException {
+        SubmittedTask<T> submittedTask = new SubmittedTask<>(task, null);
+        return submit(submittedTask, queueCancellable(new QueuedTask(submittedTask, null, true, priority, 1, getTimestamp())));
+    }
+
+    /**
+     * Submits a synchronous task producing a value.
+     * <p>
+     * The returned future is completed with the value returned, or exceptionally with the exception thrown, which counts as failed.
+     * Unlike tasks queued by {@link #queue(SynchronousTask)}, exceptions are not thrown to the thread running the task.
+     * Completing or cancelling the future before the task starts removes the task from the queue.
+     * @param task task to submit
+     * @param <T>  type of value
+     * @return future of the value
+     * @throws RejectedExecutionException if the queue is full and the queue full policy is {@link QueueFullPolicy#REJECT}
+     */
+    public <T> CompletableFuture<T> submit(final Callable<? extends T> task) throws RejectedExecutionException {
+        SubmittedTask<T> submittedTask = new SubmittedTask<>(null, task);
+        return submit(submittedTask, queueCancellable(new QueuedTask(null, submittedTask, false, 0, 1, getTimestamp())));
+    }
+
+    /**
+     * Submits a synchronous task producing a value, as {@link #submit(Callable)}.
+     * @param priority priority, where lower values have higher priority
+     * @param task     task to submit
+     * @param <T>      type of value
+     * @return future of the value
+     * @throws RejectedExecutionException if the queue is full and the queue full policy is {@link QueueFullPolicy#REJECT}
+     */
+    public <T> CompletableFuture<T> submit(final int priority, final Callable<? extends T> task) throws RejectedExecutionException {
+        SubmittedTask<T> submittedTask = new SubmittedTask<>(null, task);
+        return submit(submittedTask, queueCancellable(new QueuedTask(null, submittedTask, true, priority, 1, getTimestamp())));
+    }
+
+    private static <T> CompletableFuture<T> submit(final SubmittedTask<T> task, final TaskHandle handle) {
+        task.cancelWhenCompletedEarly(handle);
+        return task.getResult();
+    }
+
+    /**
+     * Cancels a queued task by marking it, leaving it in the queue until it reaches the head, where it is discarded.
+     * If cancelled tasks take up most of the queues, they are removed right away, keeping cancellation amortised O(1).
+     * @param task task to cancel
+     * @return true if and only if cancelled by this call
+     */
+    boolean cancel(final QueuedTask task) {
+        boolean mustDrain;
+        lock.lock();
+        try {
+            if (task.dequeued || task.cancelled) return false;
+
+            task.cancelled = true;
+            cancelledQueuedTasks++;
+            trace(TaskTraceRecorder.REMOVED, task);
+            if (cancelledQueuedTasks > MIN_CANCELLED_TASKS_TO_COMPACT && cancelledQueuedTasks > (fifoQueue.size() + priorityQueue.size()) / 2) {
+                compactQueues();
+            }
+            mustDrain = tryStartDraining(); // Else the draining call notifies listeners
+        } finally {
+            lock.unlock();
+        }
+
+        try {
+            if (mustDrain) drain(); // Notifies listeners, and starts tasks if the cancelled task held back others by its weight
+        } finally {
+            if (task.onRemoved != null) task.onRemoved.run();
+        }
+        return true;
+    }
+
+    /**
+     * Gets if a queued task was cancelled.
+     * @param task task to check
+     * @return true if and only if cancelled
+     */
+    boolean isCancelled(final QueuedTask task) {
+        lock.lock();
+        try {
+            return task.cancelled;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Removes cancelled tasks from the queues.
+     * Must be called while holding the lock.
+     */
+    private void compactQueues() {
+        for (int i = fifoQueue.size(); i > 0; i--) { // Rotate through the queue once, in place
+            QueuedTask task = fifoQueue.pollFirst();
+            if (!task.cancelled) fifoQueue.addLast(task);
+        }
+        priorityQueue.removeCancelled();
+        cancelledQueuedTasks = 0;
     }
 
     /**
      * Queues one of more asynchronous tasks.
      * @param tasks tasks to queue
+     * @throws RejectedExecutionException if the queue is full and the queue full policy is {@link QueueFullPolicy#REJECT}
      */
-    public void queue(final int priority, final AsynchronousTask... tasks) {
-        synchronized (this) {
-            for (AsynchronousTask task : tasks) {
-                priorityQueue.add(new PriorityAsynchronousTask(task, priority));
-            }
+    public void queue(final AsynchronousTask... tasks) throws RejectedExecutionException {
+        long queuedNanos = getTimestamp();
+        QueuedTask[] queuedTasks = new QueuedTask[tasks.length];
+        for (int i = 0; i < tasks.length; i++) {
+            queuedTasks[i] = new QueuedTask(tasks[i], null, false, 0, 1, queuedNanos);
         }
+        queueTasks(queuedTasks);
+    }
 
-        updateTasks();
+    /**
+     * Queues one of more asynchronous tasks.
+     * @param tasks tasks to queue
+     * @throws RejectedExecutionException if the queue is full and the queue full policy is {@link QueueFullPolicy#REJECT}
+     */
+    public void queue(final int priority, final AsynchronousTask... tasks) throws RejectedExecutionException {
+        long queuedNanos = getTimestamp();
+        QueuedTask[] queuedTasks = new QueuedTask[tasks.length];
+        for (int i = 0; i < tasks.length; i++) {
+            queuedTasks[i] = new QueuedTask(tasks[i], null, true, priority, 1, queuedNanos);
+        }
+        queueTasks(queuedTasks);
     }
 
     /**
      * Queues one or more synchronous tasks.
      * @param tasks tasks to queue
+     * @throws RejectedExecutionException if the queue is full and the queue full policy is {@link QueueFullPolicy#REJECT}
      */
-    public void queue(final SynchronousTask... tasks) {
-        queue(Arrays.stream(tasks).map(TaskConverter::toAsynchronous).toArray(AsynchronousTask[]::new)); // Treat as asynchronous to only handle one type of tasks
+    public void queue(final SynchronousTask... tasks) throws RejectedExecutionException {
+        long queuedNanos = getTimestamp();
+        QueuedTask[] queuedTasks = new QueuedTask[tasks.length];
+        for (int i = 0; i < tasks.length; i++) {
+            queuedTasks[i] = new QueuedTask(null, tasks[i], false, 0, 1, queuedNanos);
+        }
+        queueTasks(queuedTasks);
     }
 
     /**
      * Queues one or more synchronous tasks.
      * @param tasks tasks to queue
+     * @throws RejectedExecutionException if the queue is full and the queue full policy is {@link QueueFullPolicy#REJECT}
+     */
+    public void queue(final int priority, final SynchronousTask... tasks) throws RejectedExecutionException {
+        long queuedNanos = getTimestamp();
+        QueuedTask[] queuedTasks = new QueuedTask[tasks.length];
+        for (int i = 0; i < tasks.length; i++) {
+            queuedTasks[i] = new QueuedTask(null, tasks[i], true, priority, 1, queuedNanos);
+        }
+        queueTasks(queuedTasks);
+    }
+
+    /**
+     * Queues one of more asynchronous tasks with a timeout, overriding the default timeout.
+     * If a task is not done within the timeout after it is started, it is counted as done and failed, and {@link CancellableTask#cancel()} is called if implemented.
+     * @param timeout timeout of each task
+     * @param unit    unit of timeout
+     * @param tasks   tasks to queue
+     * @throws IllegalArgumentException   if timeout is non-positive
+     * @throws RejectedExecutionException if the queue is full and the queue full policy is {@link QueueFullPolicy#REJECT}
+     */
+    public void queueWithTimeout(final long timeout, final TimeUnit unit, final AsynchronousTask... tasks) throws IllegalArgumentException, RejectedExecutionException {
+        long timeoutNanos = unit.toNanos(timeout);
+        if (timeoutNanos < 1) throw new IllegalArgumentException("Timeout must be positive, but was " + timeout + " " + unit + ".");
+
+        long queuedNanos = getTimestamp();
+        QueuedTask[] queuedTasks = new QueuedTask[tasks.length];
+        for (int i = 0; i < tasks.length; i++) {
+            queuedTasks[i] = new QueuedTask(tasks[i], null, false, 0, 1, queuedNanos);
+            queuedTasks[i].timeoutNanos = timeoutNanos;
+        }
+        queueTasks(queuedTasks);
+    }
+
+    /**
+     * Sets the timeout of asynchronous tasks queued without one, applying to tasks started afterwards.
+     * If a task is not done within the timeout after it is started, it is counted as done and failed, and {@link CancellableTask#cancel()} is called if implemented.
+     * This prevents tasks that never call {@code onDone} from taking up a slot forever.
+     * <p>
+     * Timeouts are tracked by {@link HashedWheelTimer#getShared()}, so they may expire up to its tick late, and tasks started when a timeout expires are started on its thread.
+     * Synchronous tasks are not timed, as they block the thread running them.
+     * @param timeout timeout, or 0 for no timeout
+     * @param unit    unit of timeout
+     * @throws IllegalArgumentException if timeout is negative
+     */
+    public void setDefaultTimeout(final long timeout, final TimeUnit unit) throws IllegalArgumentException {
+        if (timeout < 0) throw new IllegalArgumentException("Timeout must be non-negative, but was " + timeout + " " + unit + ".");
+
+        defaultTimeoutNanos = unit.toNanos(timeout);
+    }
+
+    /**
+     * Sets if synchronous tasks run on virtual threads, one new thread per task, rather than on the thread starting them.
+     * Disabled by default.
+     * <p>
+     * This suits blocking tasks, with the max number of running tasks bounding the number of threads, rather than the size of a pool.
+     * The thread queueing or finishing a task is then never blocked by starting synchronous tasks.
+     * Exceptions thrown by tasks on virtual threads are passed to the uncaught exception handler of the thread, rather than thrown to the caller.
+     * Applies to tasks started afterwards.
+     * @param enabled true to enable, false to disable
+     * @throws UnsupportedOperationException if enabling when running on Java older than 21
+     */
+    public void setVirtualThreadsEnabled(final boolean enabled) throws UnsupportedOperationException {
+        if (enabled && !VirtualThreads.isSupported()) throw new UnsupportedOperationException("Virtual threads require Java 21 or newer.");
+
+        virtualThreadsEnabled = enabled;
+    }
+
+    /**
+     * Queues one of more asynchronous tasks with a weight.
+     * @param weight weight of each task, counted against the limit set by {@link #setMaxRunningWeight(Limit)}
+     * @param tasks  tasks to queue
+     * @throws IllegalArgumentException   if weight is negative, or if it exceeds the max running weight and oversized tasks are rejected
+     * @throws RejectedExecutionException if the queue is full and the queue full policy is {@link QueueFullPolicy#REJECT}
+     */
+    public void queueWeighted(final int weight, final AsynchronousTask... tasks) throws IllegalArgumentException, RejectedExecutionException {
+        lock.lock();
+        try {
+            validateWeight(weight);
+        } finally {
+            lock.unlock();
+        }
+
+        long queuedNanos = getTimestamp();
+        QueuedTask[] queuedTasks = new QueuedTask[tasks.length];
+        for (int i = 0; i < tasks.length; i++) {
+            queuedTasks[i] = new QueuedTask(tasks[i], null, false, 0, weight, queuedNanos);
+        }
+        queueTasks(queuedTasks);
+    }
+
+    /**
+     * Queues one of more synchronous tasks with a weight.
+     * @param weight weight of each task, counted against the limit set by {@link #setMaxRunningWeight(Limit)}
+     * @param tasks  tasks to queue
+     * @throws IllegalArgumentException   if weight is negative, or if it exceeds the max running weight and oversized tasks are rejected
+     * @throws RejectedExecutionException if the queue is full and the queue full policy is {@link QueueFullPolicy#REJECT}
+     */
+    public void queueWeighted(final int weight, final SynchronousTask... tasks) throws IllegalArgumentException, RejectedExecutionException {
+        lock.lock();
+        try {
+            validateWeight(weight);
+        } finally {
+            lock.unlock();
+        }
+
+        long queuedNanos = getTimestamp();
+        QueuedTask[] queuedTasks = new QueuedTask[tasks.length];
+        for (int i = 0; i < tasks.length; i++) {
+            queuedTasks[i] = new QueuedTask(null, tasks[i], false, 0, weight, queuedNanos);
+        }
+        queueTasks(queuedTasks);
+    }
+
+    /**
+     * Checks a weight is valid to queue.
+     * Must be called while holding the lock.
+     * @param weight weight to check
+     * @throws IllegalArgumentException if weight is negative, or if it exceeds the max running weight and oversized tasks are rejected
+     */
+    private void validateWeight(final int weight) throws IllegalArgumentException {
+        if (weight < 0) throw new IllegalArgumentException("Weight must be non-negative, but was " + weight + ".");
+        if (oversizedTaskPolicy == OversizedTaskPolicy.REJECT && maxRunningWeight.isLessThan(weight)) {
+            throw new IllegalArgumentException("Weight " + weight + " exceeds the max running weight of " + maxRunningWeight.get() + ".");
+        }
+    }
+
+    /**
+     * Queues a batch of asynchronous tasks.
+     * The whole batch is queued and admitted at once, and listeners are notified once for the batch,
+     * making this cheaper than queueing the tasks one at a time.
+     * @param tasks tasks to queue
+     * @throws RejectedExecutionException if the queue is full and the queue full policy is {@link QueueFullPolicy#REJECT}
+     */
+    public void queueAll(final Iterable<? extends AsynchronousTask> tasks) throws RejectedExecutionException {
+        long queuedNanos = getTimestamp();
+        List<QueuedTask> queuedTasks = new ArrayList<>();
+        for (AsynchronousTask task : tasks) {
+            queuedTasks.add(new QueuedTask(task, null, false, 0, 1, queuedNanos));
+        }
+        queueTasks(queuedTasks.toArray(new QueuedTask[0]));
+    }
+
+    /**
+     * Queues a batch of asynchronous tasks with the same priority.
+     * The whole batch is queued and admitted at once, and listeners are notified once for the batch,
+     * making this cheaper than queueing the tasks one at a time.
+     * @param priority priority, where lower values have higher priority
+     * @param tasks    tasks to queue
+     * @throws RejectedExecutionException if the queue is full and the queue full policy is {@link QueueFullPolicy#REJECT}
+     */
+    public void queueAll(final int priority, final Iterable<? extends AsynchronousTask> tasks) throws RejectedExecutionException {
+        long queuedNanos = getTimestamp();
+        List<QueuedTask> queuedTasks = new ArrayList<>();
+        for (AsynchronousTask task : tasks) {
+            queuedTasks.add(new QueuedTask(task, null, true, priority, 1, queuedNanos));
+        }
+        queueTasks(queuedTasks.toArray(new QueuedTask[0]));
+    }
+
+    /**
+     * Queues tasks lazily, pulling each task from the iterator only when a slot is free to start it.
+     * This keeps memory bounded by the max number of running tasks rather than the number of tasks,
+     * and creates each task just before it starts.
+     * See {@link #queueLazily(Supplier, int)}.
+     * @param tasks tasks to queue
+     * @return future completed when the iterator has no more tasks
+     */
+    public CompletableFuture<Void> queueLazily(final Iterator<? extends AsynchronousTask> tasks) {
+        return queueLazily(TaskSource.of(tasks, 0));
+    }
+
+    /**
+     * Queues tasks lazily, keeping up to a number of tasks pulled from the iterator in the queue ahead of free slots.
+     * See {@link #queueLazily(Supplier, int)}.
+     * @param tasks    tasks to queue
+     * @param prefetch max number of tasks to pull into the queue before slots are free
+     * @return future completed when the iterator has no more tasks
+     * @throws IllegalArgumentException if prefetch is negative
+     */
+    public CompletableFuture<Void> queueLazily(final Iterator<? extends AsynchronousTask> tasks, final int prefetch) throws IllegalArgumentException {
+        return queueLazily(TaskSource.of(tasks, prefetch));
+    }
+
+    /**
+     * Queues tasks lazily, pulling each task from the spliterator only when a slot is free to start it.
+     * See {@link #queueLazily(Supplier, int)}.
+     * @param tasks tasks to queue
+     * @return future completed when the spliterator has no more tasks
+     */
+    public CompletableFuture<Void> queueLazily(final Spliterator<? extends AsynchronousTask> tasks) {
+        return queueLazily(TaskSource.of(tasks, 0));
+    }
+
+    /**
+     * Queues tasks lazily, keeping up to a number of tasks pulled from the spliterator in the queue ahead of free slots.
+     * See {@link #queueLazily(Supplier, int)}.
+     * @param tasks    tasks to queue
+     * @param prefetch max number of tasks to pull into the queue before slots are free
+     * @return future completed when the spliterator has no more tasks
+     * @throws IllegalArgumentException if prefetch is negative
+     */
+    public CompletableFuture<Void> queueLazily(final Spliterator<? extends AsynchronousTask> tasks, final int prefetch) throws IllegalArgumentException {
+        return queueLazily(TaskSource.of(tasks, prefetch));
+    }
+
+    /**
+     * Queues tasks lazily, getting each task from the supplier only when a slot is free to start it.
+     * See {@link #queueLazily(Supplier, int)}.
+     * @param tasks supplier of tasks to queue, giving null when there are no more tasks
+     * @return future completed when the supplier has no more tasks
+     */
+    public CompletableFuture<Void> queueLazily(final Supplier<? extends AsynchronousTask> tasks) {
+        return queueLazily(new TaskSource(tasks, 0));
+    }
+
+    /**
+     * Queues tasks lazily, keeping up to a number of tasks from the supplier in the queue ahead of free slots.
+     * With a prefetch of 0, a task is only pulled when the queue is empty and a slot is free.
+     * Tasks are pulled without priority, and are only pulled while the queue has space.
+     * Sources queued lazily are pulled from one at a time, in the order queued.
+     * <p>
+     * Tasks are pulled while holding the lock of this driver, so pulling should be quick.
+     * If pulling throws, the source is ended and the returned future completes exceptionally.
+     * Cancelling the returned future stops pulling, and {@link #clearQueue()} cancels it.
+     * @param tasks    supplier of tasks to queue, giving null when there are no more tasks
+     * @param prefetch max number of tasks to pull into the queue before slots are free
+     * @return future completed when the supplier has no more tasks, which may still be queued or running
+     * @throws IllegalArgumentException if prefetch is negative
+     */
+    public CompletableFuture<Void> queueLazily(final Supplier<? extends AsynchronousTask> tasks, final int prefetch) throws IllegalArgumentException {
+        return queueLazily(new TaskSource(tasks, prefetch));
+    }
+
+    private CompletableFuture<Void> queueLazily(final TaskSource source) {
+        lock.lock();
+        try {
+            taskSources.add(source);
+            if (!tryStartDraining()) return source.getCompletion();
+        } finally {
+            lock.unlock();
+        }
+        drain();
+        return source.getCompletion();
+    }
+
+    /**
+     * Queues an asynchronous task if the queue has space.
+     * @param task task to queue
+     * @return true if queued, false if the queue is full
+     */
+    public boolean offer(final AsynchronousTask task) {
+        return offer(new QueuedTask(task, null, false, 0, 1, getTimestamp()));
+    }
+
+    /**
+     * Queues a synchronous task if the queue has space.
+     * @param task task to queue
+     * @return true if queued, false if the queue is full
+     */
+    public boolean offer(final SynchronousTask task) {
+        return offer(new QueuedTask(null, task, false, 0, 1, getTimestamp()));
+    }
+
+    private boolean offer(final QueuedTask task) {
+        lock.lock();
+        try {
+            if (!hasSpace(1)) return false;
+
+            enqueue(task);
+            if (!tryStartDraining()) return true;
+        } finally {
+            lock.unlock();
+        }
+        drain();
+        return true;
+    }
+
+    /**
+     * Queues an asynchronous task, waiting for space in the queue if full.
+     * Must not be called by a task of this, as that may prevent the tasks it waits for from starting.
+     * @param task    task to queue
+     * @param timeout max time to wait
+     * @param unit    unit of timeout
+     * @return true if queued, false if the queue was still full after the timeout
+     * @throws InterruptedException if interrupted while waiting
+     */
+    public boolean offer(final AsynchronousTask task, final long timeout, final TimeUnit unit) throws InterruptedException {
+        return offer(new QueuedTask(task, null, false, 0, 1, getTimestamp()), unit.toNanos(timeout));
+    }
+
+    /**
+     * Queues a synchronous task, waiting for space in the queue if full.
+     * Must not be called by a task of this, as that may prevent the tasks it waits for from starting.
+     * @param task    task to queue
+     * @param timeout max time to wait
+     * @param unit    unit of timeout
+     * @return true if queued, false if the queue was still full after the timeout
+     * @throws InterruptedException if interrupted while waiting
+     */
+    public boolean offer(final SynchronousTask task, final long timeout, final TimeUnit unit) throws InterruptedException {
+        return offer(new QueuedTask(null, task, false, 0, 1, getTimestamp()), unit.toNanos(timeout));
+    }
+
+    private boolean offer(final QueuedTask task, final long timeoutNanos) throws InterruptedException {
+        long deadline = System.nanoTime() + timeoutNanos;
+        lock.lock();
+        try {
+            while (!hasSpace(1)) {
+                long remainingNanos = deadline - System.nanoTime();
+                if (remainingNanos <= 0) return false;
+
+                blockedProducers++;
+                try {
+                    spaceAvailable.awaitNanos(remainingNanos); // Signalled by acceptWaitingProducers()
+                } finally {
+                    blockedProducers--;
+                }
+            }
+
+            enqueue(task);
+            if (!tryStartDraining()) return true;
+        } finally {
+            lock.unlock();
+        }
+        drain();
+        return true;
+    }
+
+    /**
+     * Queues an asynchronous task when the queue has space, without blocking.
+     * Tasks offered this way are queued in the order offered, as soon as tasks leave the queue.
+     * @param task task to queue
+     * @return future completed when the task is queued, or cancelled if {@link #clearQueue()} is called first
+     */
+    public CompletableFuture<Void> offerAsync(final AsynchronousTask task) {
+        return offerAsync(new QueuedTask(task, null, false, 0, 1, getTimestamp()));
+    }
+
+    /**
+     * Queues a synchronous task when the queue has space, without blocking.
+     * Tasks offered this way are queued in the order offered, as soon as tasks leave the queue.
+     * @param task task to queue
+     * @return future completed when the task is queued, or cancelled if {@link #clearQueue()} is called first
+     */
+    public CompletableFuture<Void> offerAsync(final SynchronousTask task) {
+        return offerAsync(new QueuedTask(null, task, false, 0, 1, getTimestamp()));
+    }
+
+    private CompletableFuture<Void> offerAsync(final QueuedTask task) {
+        CompletableFuture<Void> future = new CompletableFuture<>();
+        lock.lock();
+        try {
+            if (!pendingOffers.isEmpty() || !hasSpace(1)) {
+                pendingOffers.add(new PendingOffer(task, future));
+                return future;
+            }
+
+            enqueue(task);
+            if (!tryStartDraining()) {
+                acceptedOffers.add(future); // Completed by the draining call
+                return future;
+            }
+        } finally {
+            lock.unlock();
+        }
+        drain();
+        future.complete(null);
+        return future;
+    }
+
+    /**
+     * Queues tasks, applying the queue full policy to each task not fitting, and starts the tasks allowed to start.
+     * Tasks to be run by the caller are run afterwards, outside the lock.
+     * @param tasks tasks to queue
+     * @throws RejectedExecutionException if not all tasks fit and the queue full policy is {@link QueueFullPolicy#REJECT}, in which case none are queued
      */
-    public void queue(final int priority, final SynchronousTask... tasks) {
-        queue(priority, Arrays.stream(tasks).map(TaskConverter::toAsynchronous).toArray(AsynchronousTask[]::new)); // Treat as asynchronous to only handle one type of tasks
+    private void queueTasks(final QueuedTask... tasks) throws RejectedExecutionException {
+        queueTasks(tasks, null);
     }
 
-    private void startTask(final AsynchronousTask task) {
-        task.run(new SingleRunnable(this::onTaskDone));
+    /**
+     * Queues tasks, as {@link #queueTasks(QueuedTask...)}, or a single task without allocating an array for it.
+     * @param tasks      tasks to queue, or null to queue the single task
+     * @param singleTask task to queue if tasks is null
+     * @throws RejectedExecutionException if not all tasks fit and the queue full policy is {@link QueueFullPolicy#REJECT}, in which case none are queued
+     */
+    private void queueTasks(final QueuedTask[] tasks, final QueuedTask singleTask) throws RejectedExecutionException {
+        int numberOfTasks = tasks == null ? 1 : tasks.length;
+        List<QueuedTask> callerRunsTasks = null;
+        List<QueuedTask> droppedTasks = null; // Dropped tasks to tell about it
+        boolean mustDrain;
+        lock.lock();
+        try {
+            if (queueFullPolicy == QueueFullPolicy.REJECT && !hasSpace(numberOfTasks)) {
+                throw new RejectedExecutionException("Queue is full with " + getNumberOfQueuedTasks() + " of max " + maxQueuedTasks.get() + " tasks.");
+            }
+
+            for (int i = 0; i < numberOfTasks; i++) {
+                QueuedTask task = tasks == null ? singleTask : tasks[i];
+                if (hasSpace(1)) {
+                    enqueue(task);
+                } else if (queueFullPolicy == QueueFullPolicy.CALLER_RUNS) {
+                    task.dequeued = true;
+                    if (callerRunsTasks == null) callerRunsTasks = new ArrayList<>();
+                    callerRunsTasks.add(task);
+                } else {
+                    QueuedTask dropped = enqueueDroppingOther(task);
+                    if (dropped.getSubmittedTask() != null || dropped.onRemoved != null) {
+                        if (droppedTasks == null) droppedTasks = new ArrayList<>();
+                        droppedTasks.add(dropped);
+                    }
+                }
+            }
+            mustDrain = tryStartDraining();
+        } finally {
+            lock.unlock();
+        }
+
+        try {
+            if (mustDrain) drain();
+        } finally {
+            if (droppedTasks != null) {
+                for (QueuedTask task : droppedTasks) {
+                    if (task.getSubmittedTask() != null) task.getSubmittedTask().getResult().completeExceptionally(new RejectedExecutionException("Task was dropped from a full queue."));
+                    if (task.onRemoved != null) task.onRemoved.run();
+                }
+            }
+            if (callerRunsTasks != null) runOnCaller(callerRunsTasks);
+        }
     }
 
     /**
-     * Clears the queue of tasks not yet started.
+     * Queues a task in a full queue, dropping the task chosen by the queue full policy, which may be the task itself.
+     * Must be called while holding the lock.
+     * @param task task to queue
+     * @return the task dropped
+     */
+    private QueuedTask enqueueDroppingOther(final QueuedTask task) {
+        QueuedTask dropped;
+        if (queueFullPolicy == QueueFullPolicy.DROP_OLDEST) {
+            dropped = pollLive(priorityQueue, false);
+            if (dropped == null) dropped = pollLive(fifoQueue, false);
+        } else if (!task.prioritised) {
+            dropped = null; // The task starts after all queued tasks
+        } else {
+            dropped = pollLive(fifoQueue, true);
+            if (dropped == null) {
+                dropped = pollLive(priorityQueue, true);
+                if (dropped != null && dropped.priority <= task.priority) { // It starts before the task
+                    priorityQueue.add(dropped);
+                    dropped = null;
+                }
+            }
+        }
+
+        if (dropped == null) {
+            dropped = task;
+        } else {
+            enqueue(task);
+        }
+        dropped.dequeued = true; // So handles cannot cancel dropped tasks
+        tasksDropped++;
+        trace(TaskTraceRecorder.REMOVED, dropped);
+        return dropped;
+    }
+
+    /**
+     * Takes the first or last task of a queue, discarding cancelled tasks on the way.
+     * Must be called while holding the lock.
+     * @param queue queue to take from, either of the queues of this
+     * @param last  true to take the last task, false to take the first
+     * @return the task, or null if the queue has no tasks but cancelled ones
+     */
+    private QueuedTask pollLive(final Queue<QueuedTask> queue, final boolean last) {
+        while (true) {
+            QueuedTask task;
+            if (!last) task = queue.poll();
+            else if (queue == fifoQueue) task = fifoQueue.pollLast();
+            else task = priorityQueue.pollLast();
+            if (task == null || !task.cancelled) return task;
+
+            cancelledQueuedTasks--;
+        }
+    }
+
+    private static void runOnCaller(final List<QueuedTask> tasks) {
+        for (QueuedTask task : tasks) {
+            if (task.synchronousTask == null) task.asynchronousTask.run(new SingleRunnable(() -> {
+            }));
+            else task.synchronousTask.run();
+        }
+    }
+
+    /**
+     * Checks if tasks fit in the queue.
+     * Must be called while holding the lock.
+     * @param numberOfTasks number of tasks to queue
+     * @return true if and only if the tasks fit
+     */
+    private boolean hasSpace(final int numberOfTasks) {
+        return !maxQueuedTasks.hasLimit() || (long) getNumberOfQueuedTasks() + numberOfTasks <= maxQueuedTasks.get();
+    }
+
+    /**
+     * Adds a task to the queue it belongs in.
+     * Must be called while holding the lock.
+     * @param task task to add
+     */
+    private void enqueue(final QueuedTask task) {
+        if (task.prioritised) priorityQueue.add(task);
+        else fifoQueue.add(task);
+        TaskEvents.taskQueued(this, task.prioritised, task.priority, task.weight);
+        trace(TaskTraceRecorder.QUEUED, task);
+    }
+
+    private void startTask(final QueuedTask task) {
+        TaskStatistics currentStatistics = statistics;
+        if (currentStatistics != null || maxRunningTasks.isAdaptive() || TaskEvents.isEnabled()) {
+            task.startedNanos = System.nanoTime();
+            if (currentStatistics != null && task.queuedNanos != QueuedTask.UNMEASURED) {
+                currentStatistics.getQueueWaitTimes().record(task.startedNanos - task.queuedNanos);
+            }
+            TaskEvents.taskStarted(this, getWaitNanos(task));
+        }
+        trace(TaskTraceRecorder.STARTED, task);
+
+        task.driver = this; // The task is its own runnable to call when done
+        if (task.synchronousTask == null) {
+            long timeoutNanos = task.timeoutNanos != 0 ? task.timeoutNanos : defaultTimeoutNanos;
+            if (timeoutNanos != 0) {
+                task.timeout = HashedWheelTimer.getShared().schedule(() -> task.run(() -> onTaskTimedOut(task)), timeoutNanos, TimeUnit.NANOSECONDS); // Only the first of done and timed out has effect
+            }
+            task.asynchronousTask.run(task);
+            return;
+        }
+
+        if (virtualThreadsEnabled) {
+            VirtualThreads.start(() -> runSynchronousTask(task));
+        } else {
+            runSynchronousTask(task);
+        }
+    }
+
+    private static void runSynchronousTask(final QueuedTask task) {
+        try {
+            task.synchronousTask.run();
+        } catch (final RuntimeException | Error e) {
+            task.failed = true;
+            throw e;
+        } finally {
+            task.run();
+        }
+    }
+
+    /**
+     * Clears the queue of tasks not yet started, and cancels the futures of tasks offered by {@code offerAsync} and not yet queued.
+     * Futures of cleared tasks queued by {@code submit} are cancelled too.
+     * Sources queued by {@code queueLazily} are not pulled from anymore, and their futures are cancelled.
      * Already running tasks are unaffected.
      */
     public void clearQueue() {
-        synchronized (this) {
+        List<PendingOffer> cancelledOffers;
+        List<TaskSource> cancelledSources;
+        List<SubmittedTask<?>> clearedSubmittedTasks = new ArrayList<>();
+        List<Runnable> clearedCallbacks = new ArrayList<>();
+        boolean mustDrain;
+        lock.lock();
+        try {
+            for (Queue<QueuedTask> queue : Arrays.asList(fifoQueue, priorityQueue)) {
+                for (QueuedTask task : queue) {
+                    task.dequeued = true; // So handles cannot cancel cleared tasks
+                    if (task.cancelled) continue;
+
+                    trace(TaskTraceRecorder.REMOVED, task);
+                    if (task.getSubmittedTask() != null) clearedSubmittedTasks.add(task.getSubmittedTask());
+                    if (task.onRemoved != null) clearedCallbacks.add(task.onRemoved);
+                }
+            }
             fifoQueue.clear();
             priorityQueue.clear();
+            cancelledQueuedTasks = 0;
+            cancelledOffers = new ArrayList<>(pendingOffers);
+            pendingOffers.clear();
+            cancelledSources = new ArrayList<>(taskSources);
+            taskSources.clear();
+            mustDrain = tryStartDraining(); // Wakes up blocked producers, and notifies listeners
+        } finally {
+            lock.unlock();
+        }
+
+        try {
+            if (mustDrain) drain();
+        } finally {
+            for (PendingOffer offer : cancelledOffers) offer.future.cancel(false);
+            for (TaskSource source : cancelledSources) source.getCompletion().cancel(false);
+            for (SubmittedTask<?> task : clearedSubmittedTasks) task.getResult().cancel(false);
+            for (Runnable callback : clearedCallbacks) callback.run();
+        }
+    }
+
+    private static long getWaitNanos(final QueuedTask task) {
+        return task.queuedNanos == QueuedTask.UNMEASURED ? Long.MIN_VALUE : task.startedNanos - task.queuedNanos;
+    }
+
+    private void onTaskTimedOut(final QueuedTask task) {
+        task.failed = true;
+        try {
+            if (task.asynchronousTask instanceof CancellableTask) ((CancellableTask) task.asynchronousTask).cancel();
+        } finally {
+            onTaskDone(task);
         }
-        notifyListeners();
     }
 
-    private void onTaskDone() {
-        synchronized (this) {
+    /**
+     * Called by a started task when it is done.
+     * @param task task done
+     */
+    void onTaskDone(final QueuedTask task) {
+        if (task.timeout != null) task.timeout.cancel();
+        trace(TaskTraceRecorder.FINISHED, task);
+        if (task.startedNanos != QueuedTask.UNMEASURED) {
+            long runNanos = System.nanoTime() - task.startedNanos;
+            TaskStatistics currentStatistics = statistics;
+            if (currentStatistics != null) currentStatistics.getRunTimes().record(runNanos);
+
+            Limit currentMaxRunningTasks = maxRunningTasks;
+            if (currentMaxRunningTasks.isAdaptive()) currentMaxRunningTasks.onTaskDone(runNanos, task.hasFailed(), tasksStarted - tasksFinished);
+
+            TaskEvents.taskFinished(this, getWaitNanos(task), runNanos, task.hasFailed());
+        }
+
+        lock.lock();
+        try {
             tasksFinished++;
+            runningWeight -= task.weight;
+            if (!tryStartDraining()) return;
+        } finally {
+            lock.unlock();
         }
-        updateTasks();
+        drain();
     }
 
-    public synchronized int getNumberOfQueuedTasks() {
-        return fifoQueue.size() + priorityQueue.size();
+    public int getNumberOfQueuedTasks() {
+        lock.lock();
+        try {
+            return fifoQueue.size() + priorityQueue.size() - cancelledQueuedTasks;
+        } finally {
+            lock.unlock();
+        }
     }
 
     /**
      * Gets the number of tasks currently running.
      * @return the number of tasks running
      */
-    public synchronized int getNumberOfRunningTasks() {
-        return tasksStarted - tasksFinished;
+    public int getNumberOfRunningTasks() {
+        lock.lock();
+        try {
+            return tasksStarted - tasksFinished;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int getNumberOfFinishedTasks() {
+        lock.lock();
+        try {
+            return tasksFinished;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    int getNumberOfQueuedTasksWithoutLock() {
+        return queuedTasksSnapshot;
     }
 
-    public synchronized int getNumberOfFinishedTasks() {
+    int getNumberOfStartedTasksWithoutLock() {
+        return tasksStarted;
+    }
+
+    int getNumberOfFinishedTasksWithoutLock() {
         return tasksFinished;
     }
 
+    int getNumberOfDroppedTasksWithoutLock() {
+        return tasksDropped;
+    }
+
+    /**
+     * Registers a {@link ConcurrentTaskDriverMXBean} of this in the platform MBean server,
+     * under the name {@code com.github.trosenkrantz.sync.util:type=ConcurrentTaskDriver,name=<name>}.
+     * @param name name telling this apart from other drivers
+     * @return the object name registered
+     * @throws IllegalStateException if already registered
+     * @throws JMException           if the name is malformed or taken
+     */
+    public ObjectName registerMBean(final String name) throws IllegalStateException, JMException {
+        lock.lock();
+        try {
+            if (mBeanName != null) throw new IllegalStateException("Already registered as " + mBeanName + ".");
+
+            ObjectName objectName = new ObjectName("com.github.trosenkrantz.sync.util:type=ConcurrentTaskDriver,name=" + ObjectName.quote(name));
+            ManagementFactory.getPlatformMBeanServer().registerMBean(new ConcurrentTaskDriverManagement(this), objectName);
+            mBeanName = objectName;
+            return objectName;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Unregisters the MBean registered by {@link #registerMBean(String)}, if registered.
+     * @throws JMException if unregistering fails
+     */
+    public void unregisterMBean() throws JMException {
+        lock.lock();
+        try {
+            if (mBeanName == null) return;
+
+            ManagementFactory.getPlatformMBeanServer().unregisterMBean(mBeanName);
+            mBeanName = null;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Gets the number of tasks dropped from or not let into a full queue, by the queue full policy.
+     * @return the number of tasks dropped
+     */
+    public int getNumberOfDroppedTasks() {
+        lock.lock();
+        try {
+            return tasksDropped;
+        } finally {
+            lock.unlock();
+        }
+    }
+
     /**
      * Adds listener to be notified of updates.
      * @param listener listener to be notified
      */
     public void addListener(final ConcurrentTasksListener listener) {
-        listeners.add(listener);
+        lock.lock();
+        try {
+            ConcurrentTasksListener[] newListeners = Arrays.copyOf(listeners, listeners.length + 1);
+            newListeners[listeners.length] = listener;
+            listeners = newListeners;
+        } finally {
+            lock.unlock();
+        }
     }
 
     /**
@@ -134,14 +1183,26 @@ public class ConcurrentTaskDriver {
      * @param listener listener to remove
      */
     public void removeListener(final ConcurrentTasksListener listener) {
-        listeners.remove(listener);
+        lock.lock();
+        try {
+            List<ConcurrentTasksListener> newListeners = new ArrayList<>(Arrays.asList(listeners));
+            if (newListeners.remove(listener)) listeners = newListeners.toArray(new ConcurrentTasksListener[0]);
+        } finally {
+            lock.unlock();
+        }
     }
 
     /**
      * Prevents starting new tasks until {@link #resume()} is called.
      */
-    public synchronized void suspend() {
-        suspended = true;
+    public void suspend() {
+        TaskEvents.suspensionChanged(this, true);
+        lock.lock();
+        try {
+            suspended = true;
+        } finally {
+            lock.unlock();
+        }
     }
 
     /**
@@ -150,7 +1211,8 @@ public class ConcurrentTaskDriver {
      */
     public void suspend(final Runnable whenIdle) {
         boolean isAlreadyIdle = false;
-        synchronized (this) {
+        lock.lock();
+        try {
             suspend();
             if (getNumberOfRunningTasks() <= 0) {
                 isAlreadyIdle = true;
@@ -166,9 +1228,11 @@ public class ConcurrentTaskDriver {
                     }
                 });
             }
+        } finally {
+            lock.unlock();
         }
 
-        // Run the Runnable outside the synchronized block
+        // Run the Runnable outside the lock
         if (isAlreadyIdle) whenIdle.run();
     }
 
@@ -176,10 +1240,15 @@ public class ConcurrentTaskDriver {
      * Removes the prevention of starting new tasks caused by {@link #suspend()} or {@link #suspend(Runnable)}.
      */
     public void resume() {
-        synchronized (this) {
+        TaskEvents.suspensionChanged(this, false);
+        lock.lock();
+        try {
             suspended = false;
+            if (!tryStartDraining()) return;
+        } finally {
+            lock.unlock();
         }
-        updateTasks();
+        drain();
     }
 
     public boolean isSuspended() {
@@ -187,42 +1256,372 @@ public class ConcurrentTaskDriver {
     }
 
     /**
-     * Updates what tasks to run, runs them and notifies listeners.
+     * Gets the sum of weights of tasks currently running.
+     * @return the running weight
+     */
+    public long getRunningWeight() {
+        lock.lock();
+        try {
+            return runningWeight;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Enables or disables recording of how long tasks wait in queue and how long they run.
+     * Recording is disabled by default, and then it costs nothing.
+     * Wait times are recorded for tasks queued while enabled, and run times for tasks started while enabled.
+     * @param enabled true to enable, false to disable and discard the statistics
+     */
+    public void setStatisticsEnabled(final boolean enabled) {
+        lock.lock();
+        try {
+            if (enabled) {
+                if (statistics == null) statistics = new TaskStatistics();
+            } else {
+                statistics = null;
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Sets how tasks queued with a priority improve their priority while waiting.
+     * Defaults to {@link PriorityAging#none()}.
+     * <p>
+     * The policy applies to tasks already queued, but tasks queued while aging was disabled keep their priority, as their time of queueing is unknown.
+     * Finding the next task compares one task per distinct priority queued, so it stays cheap regardless of the number of tasks queued.
+     * @param priorityAging policy to set
+     */
+    public void setPriorityAging(final PriorityAging priorityAging) {
+        lock.lock();
+        try {
+            this.priorityAging = priorityAging;
+            priorityQueue.setAging(priorityAging);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Gets the statistics of tasks, if enabled by {@link #setStatisticsEnabled(boolean)}.
+     * @return the statistics, or null if disabled
+     */
+    public TaskStatistics getStatistics() {
+        return statistics;
+    }
+
+    /**
+     * Sets the recorder of the lifecycle events of tasks, replacing any previous recorder.
+     * Recording is disabled by default, and then it costs a single volatile read per event.
+     * Tasks running when set are recorded as finished, but not as started, so export ignores them.
+     * @param recorder recorder to record to, or null to disable recording
+     */
+    public void setTraceRecorder(final TaskTraceRecorder recorder) {
+        traceRecorder = recorder;
+    }
+
+    /**
+     * Gets the recorder of the lifecycle events of tasks, if set by {@link #setTraceRecorder(TaskTraceRecorder)}.
+     * @return the recorder, or null if disabled
+     */
+    public TaskTraceRecorder getTraceRecorder() {
+        return traceRecorder;
+    }
+
+    private void trace(final int type, final QueuedTask task) {
+        TaskTraceRecorder recorder = traceRecorder;
+        if (recorder == null) return;
+
+        if (task.traceId == 0) task.traceId = TaskTraceRecorder.newTaskId();
+        recorder.record(type, task.traceId, task.prioritised, task.priority);
+    }
+
+    private long getTimestamp() {
+        return statistics != null || priorityAging.isEnabled() || TaskEvents.isEnabled() ? System.nanoTime() : QueuedTask.UNMEASURED;
+    }
+
+    /**
+     * Starts draining on the calling thread, if no call further up its stack is draining, and admits the tasks to start.
+     * Otherwise, asks that call to do another round.
+     * Must be called while holding the lock.
+     * @return true if the caller must call {@link #drain()}
+     */
+    private boolean tryStartDraining() {
+        Drain drain = drains.get();
+        if (drain.draining) {
+            drain.updateRequested = true;
+            return false;
+        }
+
+        drain.draining = true;
+        boolean admitted = false;
+        try {
+            admitTasks(drain.admittedTasks);
+            admitted = true;
+        } finally {
+            if (!admitted) abortDraining(drain, 0); // A throwing limit or source must not leave the thread draining forever
+        }
+        return true;
+    }
+
+    /**
+     * Starts the tasks admitted on the calling thread and notifies listeners, in rounds until no more updates are requested.
+     * Must only be called after {@link #tryStartDraining()} returned true on the same thread.
+     */
+    private void drain() {
+        Drain drain = drains.get();
+        List<QueuedTask> admittedTasks = drain.admittedTasks;
+        RuntimeException failure = null;
+        int nextTaskIndex = 0;
+        boolean hasStoppedDraining = false;
+        try {
+            do {
+                // Start tasks outside the lock, since we do not control what they do
+                while (nextTaskIndex < admittedTasks.size()) {
+                    QueuedTask task = admittedTasks.get(nextTaskIndex++);
+                    try {
+                        startTask(task);
+                    } catch (final RuntimeException e) {
+                        // Keep draining, so other tasks are not stuck, and throw afterwards
+                        if (failure == null) failure = e;
+                        else failure.addSuppressed(e);
+                    }
+                }
+                admittedTasks.clear();
+                nextTaskIndex = 0;
+
+                int numberOfQueuedTasks;
+                int numberOfRunningTasks;
+                int numberOfFinishedTasks;
+                List<CompletableFuture<Void>> offersToComplete = null;
+                List<TaskSource> sourcesToComplete = null;
+                lock.lock();
+                try {
+                    if (drain.updateRequested) {
+                        drain.updateRequested = false;
+                        admitTasks(admittedTasks);
+                    } else {
+                        drain.draining = false;
+                        hasStoppedDraining = true;
+                    }
+                    numberOfQueuedTasks = getNumberOfQueuedTasks();
+                    queuedTasksSnapshot = numberOfQueuedTasks;
+                    numberOfRunningTasks = getNumberOfRunningTasks();
+                    numberOfFinishedTasks = tasksFinished;
+                    if (!acceptedOffers.isEmpty()) {
+                        offersToComplete = new ArrayList<>(acceptedOffers);
+                        acceptedOffers.clear();
+                    }
+                    if (!endedTaskSources.isEmpty()) {
+                        sourcesToComplete = new ArrayList<>(endedTaskSources);
+                        endedTaskSources.clear();
+                    }
+                } finally {
+                    lock.unlock();
+                }
+
+                notifyListeners(numberOfQueuedTasks, numberOfRunningTasks, numberOfFinishedTasks);
+                if (offersToComplete != null) {
+                    for (CompletableFuture<Void> future : offersToComplete) future.complete(null);
+                }
+                if (sourcesToComplete != null) {
+                    for (TaskSource source : sourcesToComplete) source.complete();
+                }
+            } while (!hasStoppedDraining);
+        } finally {
+            if (!hasStoppedDraining) abortDraining(drain, nextTaskIndex);
+        }
+
+        if (failure != null) throw failure;
+    }
+
+    /**
+     * Stops draining after an error, putting admitted tasks not yet started back in front of the queue.
+     * @param drain               drain of the calling thread
+     * @param firstUnstartedIndex index of the first admitted task not started
      */
-    private void updateTasks() {
-        Optional<AsynchronousTask> nextTask;
-        while ((nextTask = getNextTask()).isPresent()) {
-            startTask(nextTask.get());
+    private void abortDraining(final Drain drain, final int firstUnstartedIndex) {
+        List<QueuedTask> admittedTasks = drain.admittedTasks;
+        lock.lock();
+        try {
+            for (int i = admittedTasks.size() - 1; i >= firstUnstartedIndex; i--) {
+                QueuedTask task = admittedTasks.get(i);
+                task.dequeued = false;
+                if (task.prioritised) priorityQueue.addFirst(task);
+                else fifoQueue.addFirst(task);
+                tasksStarted--;
+                runningWeight -= task.weight;
+            }
+            admittedTasks.clear();
+            drain.draining = false;
+            drain.updateRequested = false;
+        } finally {
+            lock.unlock();
         }
+    }
+
+    private void notifyListeners(final int queued, final int running, final int finished) {
+        for (ConcurrentTasksListener listener : listeners) { // Iterates the array at the start, so listeners may remove themselves
+            listener.onProgress(queued, running, finished);
+        }
+    }
 
-        notifyListeners();
+    /**
+     * Takes all tasks allowed to start now and counts them as started.
+     * Must be called while holding the lock.
+     * @param admittedTasks list to add the tasks to
+     */
+    private void admitTasks(final List<QueuedTask> admittedTasks) {
+        QueuedTask nextTask;
+        do {
+            while ((nextTask = getNextTask()) != null) {
+                admittedTasks.add(nextTask);
+            }
+        } while (acceptWaitingProducers() || pullFromTaskSources()); // Tasks let in may be allowed to start too
+    }
+
+    /**
+     * Pulls tasks from the task sources into the queue, as far as they are wanted, ending sources with no more tasks.
+     * Must be called while holding the lock.
+     * @return true if any tasks were pulled
+     */
+    private boolean pullFromTaskSources() {
+        boolean pulled = false;
+        TaskSource source;
+        while ((source = taskSources.peek()) != null && wantsTaskFrom(source)) {
+            AsynchronousTask task = source.next();
+            if (task == null) {
+                taskSources.poll();
+                endedTaskSources.add(source);
+            } else {
+                enqueue(new QueuedTask(task, null, false, 0, 1, getTimestamp()));
+                pulled = true;
+            }
+        }
+        return pulled;
     }
 
-    private void notifyListeners() {
-        // Copy listeners to allow modification while iterating, e.g., allow listeners to remove themselves while being notified
-        List<ConcurrentTasksListener> listenersCopy = new ArrayList<>(listeners);
-        if (listenersCopy.isEmpty()) return;
+    /**
+     * Checks if a task should be pulled from a source now, being within its prefetch, or having a free slot with nothing queued.
+     * Must be called while holding the lock.
+     * @param source source to pull from
+     * @return true if and only if a task should be pulled
+     */
+    private boolean wantsTaskFrom(final TaskSource source) {
+        if (!hasSpace(1)) return false;
 
         int numberOfQueuedTasks = getNumberOfQueuedTasks();
-        int numberOfRunningTasks = getNumberOfRunningTasks();
-        int numberOfFinishedTasks = getNumberOfFinishedTasks();
+        if (numberOfQueuedTasks < source.getPrefetch()) return true;
+        return numberOfQueuedTasks == 0 && !isSuspended() && !maxRunningTasks.isLessThanOrEquals(getNumberOfRunningTasks());
+    }
 
-        listenersCopy.forEach(listener -> listener.onProgress(numberOfQueuedTasks, numberOfRunningTasks, numberOfFinishedTasks));
+    /**
+     * Queues tasks of asynchronous offers and wakes up producers blocked on a full queue, as far as the queue has space.
+     * Must be called while holding the lock.
+     * @return true if any offered tasks were queued
+     */
+    private boolean acceptWaitingProducers() {
+        boolean accepted = false;
+        while (!pendingOffers.isEmpty() && hasSpace(1)) {
+            PendingOffer offer = pendingOffers.poll();
+            enqueue(offer.task);
+            acceptedOffers.add(offer.future);
+            accepted = true;
+        }
+        if (blockedProducers > 0 && hasSpace(1)) spaceAvailable.signalAll();
+        return accepted;
     }
 
-    private synchronized Optional<AsynchronousTask> getNextTask() {
+    /**
+     * Takes the next task to start, if any, and counts it as started.
+     * @return the task, or null if no task should be started
+     */
+    private QueuedTask getNextTask() {
         if (isSuspended()) {
-            return Optional.empty();
+            return null;
         } else if (maxRunningTasks.isLessThanOrEquals(getNumberOfRunningTasks())) { // We are already running max allowed running tasks
-            return Optional.empty();
-        } else if (!priorityQueue.isEmpty()) {
-            tasksStarted++;
-            return Optional.of(priorityQueue.remove().getTask());
-        } else if (!fifoQueue.isEmpty()) {
-            tasksStarted++;
-            return Optional.of(fifoQueue.remove());
-        } else {
-            return Optional.empty();
+            return null;
         }
+
+        Queue<QueuedTask> queue;
+        QueuedTask nextTask;
+        while (true) {
+            queue = priorityQueue.isEmpty() ? fifoQueue : priorityQueue;
+            nextTask = queue.peek();
+            if (nextTask == null || !nextTask.cancelled) break;
+
+            queue.remove(); // Discard cancelled task
+            cancelledQueuedTasks--;
+        }
+        if (nextTask == null || !fitsWeight(nextTask.weight)) return null; // Hold back later tasks, so they do not starve this one
+        if (!tryAcquireRateToken()) return null;
+
+        queue.remove();
+        nextTask.dequeued = true;
+        tasksStarted++;
+        runningWeight += nextTask.weight;
+        return nextTask;
+    }
+
+    /**
+     * Takes a token from the rate limit, or schedules a wake-up for when a token is available.
+     * Must be called while holding the lock.
+     * @return true if and only if a task may start
+     */
+    private boolean tryAcquireRateToken() {
+        if (!rateLimit.hasLimit()) return true;
+
+        long now = System.nanoTime();
+        if (rateLimit.tryAcquire(now)) return true;
+
+        if (!refillWakeUpScheduled) {
+            refillWakeUpScheduled = true;
+            SharedScheduler.schedule(this::onRateLimitRefilled, rateLimit.getNanosUntilAvailable(now));
+        }
+        return false;
+    }
+
+    private void onRateLimitRefilled() {
+        lock.lock();
+        try {
+            refillWakeUpScheduled = false;
+            if (!tryStartDraining()) return;
+        } finally {
+            lock.unlock();
+        }
+        drain();
+    }
+
+    /**
+     * Checks if a task fits within the max running weight now.
+     * Must be called while holding the lock.
+     * @param weight weight of the task
+     * @return true if and only if the task may start
+     */
+    private boolean fitsWeight(final int weight) {
+        if (!maxRunningWeight.hasLimit() || runningWeight + weight <= maxRunningWeight.get()) return true;
+        return maxRunningWeight.isLessThan(weight) && runningWeight == 0; // Oversized tasks run alone
+    }
+
+    private static class PendingOffer {
+        private final QueuedTask task;
+        private final CompletableFuture<Void> future;
+
+        private PendingOffer(final QueuedTask task, final CompletableFuture<Void> future) {
+            this.task = task;
+            this.future = future;
+        }
+    }
+
+    /**
+     * Draining state of a thread, only used by that thread.
+     */
+    private static class Drain {
+        private final List<QueuedTask> admittedTasks = new ArrayList<>();
+        private boolean draining = false;
+        private boolean updateRequested = false;
     }
 }
@@ -0,0 +1,57 @@
+package com.github.trosenkrantz.sync.util.concurrency;
+
+/**
+ * Management interface of a {@link ConcurrentTaskDriver}, registered by {@link ConcurrentTaskDriver#registerMBean(String)}.
+ * <p>
+ * Counts are read without taking the lock of the driver, so monitoring does not slow down the driver.
+ * The number of queued tasks is as of the last notification of listeners.
+ * Rates are per second, measured over the time since the previous sample, taken at most once per second.
+ * Percentiles are in milliseconds, and NaN while statistics are disabled.
+ */
+public interface ConcurrentTaskDriverMXBean {
+    int getQueuedTasks();
+
+    int getRunningTasks();
+
+    int getFinishedTasks();
+
+    int getDroppedTasks();
+
+    double getStartRate();
+
+    double getCompletionRate();
+
+    boolean isStatisticsEnabled();
+
+    double getQueueWaitP50Millis();
+
+    double getQueueWaitP99Millis();
+
+    double getQueueWaitP999Millis();
+
+    double getRunTimeP50Millis();
+
+    double getRunTimeP99Millis();
+
+    double getRunTimeP999Millis();
+
+    /**
+     * Gets the current max number of running tasks.
+     * @return the limit, or -1 if there is no limit
+     */
+    int getMaxRunningTasks();
+
+    /**
+     * Sets a fixed max number of running tasks, replacing any adaptive limit.
+     * @param maxRunningTasks the limit, or a negative value for no limit
+     */
+    void setMaxRunningTasks(int maxRunningTasks);
+
+    boolean isSuspended();
+
+    void suspend();
+
+    void resume();
+
+    void clearQueue();
+}
@@ -0,0 +1,149 @@
+package com.github.trosenkrantz.sync.util.concurrency;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+/**
+ * The {@link ConcurrentTaskDriverMXBean} of a driver.
+ */
+final class ConcurrentTaskDriverManagement implements ConcurrentTaskDriverMXBean {
+    private static final long MIN_SAMPLE_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+    private final ConcurrentTaskDriver driver;
+    private Sample previousSample; // Guarded by this, as is latestSample
+    private Sample latestSample;
+
+    ConcurrentTaskDriverManagement(final ConcurrentTaskDriver driver) {
+        this.driver = driver;
+        this.previousSample = new Sample(System.nanoTime(), driver.getNumberOfStartedTasksWithoutLock(), driver.getNumberOfFinishedTasksWithoutLock());
+        this.latestSample = previousSample;
+    }
+
+    @Override
+    public int getQueuedTasks() {
+        return driver.getNumberOfQueuedTasksWithoutLock();
+    }
+
+    @Override
+    public int getRunningTasks() {
+        int finished = driver.getNumberOfFinishedTasksWithoutLock(); // Before started, so a task is not counted as finished but not started
+        return Math.max(0, driver.getNumberOfStartedTasksWithoutLock() - finished);
+    }
+
+    @Override
+    public int getFinishedTasks() {
+        return driver.getNumberOfFinishedTasksWithoutLock();
+    }
+
+    @Override
+    public int getDroppedTasks() {
+        return driver.getNumberOfDroppedTasksWithoutLock();
+    }
+
+    @Override
+    public double getStartRate() {
+        return getRate(true);
+    }
+
+    @Override
+    public double getCompletionRate() {
+        return getRate(false);
+    }
+
+    private synchronized double getRate(final boolean started) {
+        long now = System.nanoTime();
+        if (now - latestSample.nanos >= MIN_SAMPLE_NANOS) {
+            previousSample = latestSample;
+            latestSample = new Sample(now, driver.getNumberOfStartedTasksWithoutLock(), driver.getNumberOfFinishedTasksWithoutLock());
+        }
+        if (latestSample == previousSample) return 0;
+
+        long count = started ? latestSample.started - previousSample.started : latestSample.finished - previousSample.finished;
+        return count * (double) TimeUnit.SECONDS.toNanos(1) / (latestSample.nanos - previousSample.nanos);
+    }
+
+    @Override
+    public boolean isStatisticsEnabled() {
+        return driver.getStatistics() != null;
+    }
+
+    @Override
+    public double getQueueWaitP50Millis() {
+        return getPercentileMillis(TaskStatistics::getQueueWaitTimes, 50);
+    }
+
+    @Override
+    public double getQueueWaitP99Millis() {
+        return getPercentileMillis(TaskStatistics::getQueueWaitTimes, 99);
+    }
+
+    @Override
+    public double getQueueWaitP999Millis() {
+        return getPercentileMillis(TaskStatistics::getQueueWaitTimes, 99.9);
+    }
+
+    @Override
+    public double getRunTimeP50Millis() {
+        return getPercentileMillis(TaskStatistics::getRunTimes, 50);
+    }
+
+    @Override
+    public double getRunTimeP99Millis() {
+        return getPercentileMillis(TaskStatistics::getRunTimes, 99);
+    }
+
+    @Override
+    public double getRunTimeP999Millis() {
+        return getPercentileMillis(TaskStatistics::getRunTimes, 99.9);
+    }
+
+    private double getPercentileMillis(final Function<TaskStatistics, LatencyHistogram> histogram, final double percentile) {
+        TaskStatistics statistics = driver.getStatistics();
+        if (statistics == null) return Double.NaN;
+
+        return histogram.apply(statistics).snapshot().getValueAtPercentile(percentile) / (double) TimeUnit.MILLISECONDS.toNanos(1);
+    }
+
+    @Override
+    public int getMaxRunningTasks() {
+        Limit limit = driver.getMaxRunningTasks();
+        return limit.hasLimit() ? limit.get() : -1;
+    }
+
+    @Override
+    public void setMaxRunningTasks(final int maxRunningTasks) {
+        driver.setMaxRunningTasks(maxRunningTasks < 0 ? Limit.noLimit() : Limit.of(maxRunningTasks));
+    }
+
+    @Override
+    public boolean isSuspended() {
+        return driver.isSuspended();
+    }
+
+    @Override
+    public void suspend() {
+        driver.suspend();
+    }
+
+    @Override
+    public void resume() {
+        driver.resume();
+    }
+
+    @Override
+    public void clearQueue() {
+        driver.clearQueue();
+    }
+
+    private static class Sample {
+        private final long nanos;
+        private final int started;
+        private final int finished;
+
+        private Sample(final long nanos, final int started, final int finished) {
+            this.nanos = nanos;
+            this.started = started;
+            this.finished = finished;
+        }
+    }
+}
@@ -36,10 +36,18 @@ public class DependentTask extends NotifyingTask {
         }
 
         AtomicInteger countDown = new AtomicInteger(dependentTasks.length);
+        long scheduledNanos = TaskEvents.isEnabled() ? System.nanoTime() : Long.MIN_VALUE;
+        TaskTraceRecorder recorder = driver.getTraceRecorder();
+        long traceId = recorder == null ? 0 : TaskTraceRecorder.newTaskId();
+        if (recorder != null) recorder.record(TaskTraceRecorder.DEPENDENCIES_WAITING, traceId, false, dependentTasks.length);
 
         for (NotifyingTask task : dependentTasks) {
             task.subscribe(new SingleRunnable(() -> {
-                if (countDown.decrementAndGet() == 0) driver.queue(this);
+                if (countDown.decrementAndGet() != 0) return;
+
+                TaskEvents.dependenciesFinished(this, dependentTasks.length, scheduledNanos == Long.MIN_VALUE ? Long.MIN_VALUE : System.nanoTime() - scheduledNanos);
+                if (recorder != null) recorder.record(TaskTraceRecorder.DEPENDENCIES_FINISHED, traceId, false, dependentTasks.length);
+                driver.queue(this);
             }));
         }
     }
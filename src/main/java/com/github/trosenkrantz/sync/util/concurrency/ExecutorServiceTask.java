@@ -22,6 +22,17 @@ public class ExecutorServiceTask implements AsynchronousTask {
         this.executorService = executorService;
     }
 
+    /**
+     * Creates a task running the inner task on a new virtual thread.
+     * Queued at a {@link ConcurrentTaskDriver}, the max number of running tasks of the driver bounds the number of threads, rather than the size of a pool.
+     * @param task inner task
+     * @return the task
+     * @throws UnsupportedOperationException if running on Java older than 21
+     */
+    public static ExecutorServiceTask onVirtualThread(final SynchronousTask task) throws UnsupportedOperationException {
+        return new ExecutorServiceTask(task, VirtualThreads.getExecutor());
+    }
+
     @Override
     public void run(final SingleRunnable onDone) {
         executorService.execute(() -> {
@@ -0,0 +1,80 @@
+package com.github.trosenkrantz.sync.util.concurrency;
+
+/**
+ * An adaptive limit following the gradient of round trip times, in the style of TCP Vegas.
+ * <p>
+ * This tracks a long-term average of round trip times as the latency without queueing, and a short-term average as the current latency.
+ * Their ratio is the gradient:
+ * While the current latency stays flat, the limit grows by the square root of itself, allowing a small queue to probe for more capacity.
+ * When the current latency rises beyond a tolerance, the limit shrinks proportionally, by at most half.
+ * Failed tasks shrink the limit as if the gradient was at its minimum.
+ * Changes are smoothed, so a single slow task does not collapse the limit.
+ */
+public class GradientLimit extends AdaptiveLimit {
+    private static final double MIN_GRADIENT = 0.5;
+    private static final double SHORT_TERM_WEIGHT = 2.0 / (10 + 1); // Exponential moving average of about 10 tasks
+    private static final double LONG_TERM_WEIGHT = 2.0 / (600 + 1); // Exponential moving average of about 600 tasks
+
+    private final double tolerance;
+    private final double smoothing;
+
+    private double estimate;
+    private double shortTermRoundTripNanos = 0;
+    private double longTermRoundTripNanos = 0;
+
+    /**
+     * Constructs with a tolerance of 1.5 and smoothing of 0.2.
+     * @param initial initial value
+     * @param min     minimum value
+     * @param max     maximum value
+     * @throws IllegalArgumentException if not {@code 1 <= min <= initial <= max}
+     */
+    public GradientLimit(final int initial, final int min, final int max) throws IllegalArgumentException {
+        this(initial, min, max, 1.5, 0.2);
+    }
+
+    /**
+     * Constructs this.
+     * @param initial   initial value
+     * @param min       minimum value
+     * @param max       maximum value
+     * @param tolerance factor the current latency may rise compared to the long-term latency before the limit shrinks, at least 1
+     * @param smoothing weight of each new estimate of the limit, between 0 and 1, where 1 means no smoothing
+     * @throws IllegalArgumentException if not {@code 1 <= min <= initial <= max}, or if tolerance or smoothing are out of range
+     */
+    public GradientLimit(final int initial, final int min, final int max, final double tolerance, final double smoothing) throws IllegalArgumentException {
+        super(initial, min, max);
+        if (tolerance < 1) throw new IllegalArgumentException("Tolerance must be at least 1, but was " + tolerance + ".");
+        if (smoothing <= 0 || smoothing > 1) throw new IllegalArgumentException("Smoothing must be between 0 and 1, but was " + smoothing + ".");
+
+        this.tolerance = tolerance;
+        this.smoothing = smoothing;
+        this.estimate = initial;
+    }
+
+    @Override
+    protected int computeValue(final int current, final long roundTripNanos, final boolean failed, final int running) {
+        if (shortTermRoundTripNanos == 0) {
+            shortTermRoundTripNanos = roundTripNanos;
+            longTermRoundTripNanos = roundTripNanos;
+        }
+        shortTermRoundTripNanos += (roundTripNanos - shortTermRoundTripNanos) * SHORT_TERM_WEIGHT;
+        longTermRoundTripNanos += (roundTripNanos - longTermRoundTripNanos) * LONG_TERM_WEIGHT;
+        if (longTermRoundTripNanos > 2 * shortTermRoundTripNanos) {
+            longTermRoundTripNanos *= 0.95; // Latency has dropped, so let the long-term average catch up faster
+        }
+
+        double gradient;
+        if (failed) {
+            gradient = MIN_GRADIENT;
+        } else if (running * 2 < current) {
+            return current; // Too little of the limit is in use to learn anything about the capacity
+        } else {
+            gradient = Math.max(MIN_GRADIENT, Math.min(1, tolerance * longTermRoundTripNanos / Math.max(shortTermRoundTripNanos, 1)));
+        }
+
+        double newEstimate = failed ? estimate * gradient : estimate * gradient + Math.sqrt(estimate);
+        estimate = Math.max(getMin(), Math.min(getMax(), estimate * (1 - smoothing) + newEstimate * smoothing));
+        return (int) estimate;
+    }
+}
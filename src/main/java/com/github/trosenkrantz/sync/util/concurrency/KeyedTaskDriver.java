@@ -0,0 +1,318 @@
+package com.github.trosenkrantz.sync.util.concurrency;
+
+import com.github.trosenkrantz.sync.util.runnable.SingleRunnable;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * Driver running tasks of the same key one at a time and in the order queued, while tasks of different keys run concurrently.
+ * <p>
+ * Tasks are run by an underlying {@link ConcurrentTaskDriver}, so its max number of running tasks caps the total across keys,
+ * and its listeners, suspension and statistics apply.
+ * Only the first task of each key is queued at the underlying driver;
+ * the following tasks of the key wait here until the task before them is done, and are not counted by the underlying driver meanwhile.
+ * <p>
+ * State of a key is created when a task of the key is queued and removed when the last task of the key is done,
+ * so memory use depends on the number of keys with tasks, not on the number of keys ever used.
+ * @param <K> type of keys, compared with {@link Object#equals(Object)}
+ */
+public class KeyedTaskDriver<K> {
+    private static final Deque<?> NONE_WAITING = new ArrayDeque<>(0); // Never modified, avoids creating a deque for keys with a single task
+
+    private final ConcurrentTaskDriver driver;
+    private final Map<K, Deque<KeyedTask>> waitingTasks = new HashMap<>(); // Has an entry for each key with a task queued at or running by the driver
+
+    /**
+     * Constructs this.
+     * @param driver driver to run tasks with
+     */
+    public KeyedTaskDriver(final ConcurrentTaskDriver driver) {
+        this.driver = driver;
+    }
+
+    /**
+     * Queues an asynchronous task, to run after previously queued tasks of the same key are done.
+     * <p>
+     * The next task of the key is let through when the task is done, throws before calling {@code onDone}, or times out,
+     * and when the task is cancelled, rejected, dropped or cleared before it starts.
+     * @param key  key of task
+     * @param task task to queue
+     * @return handle for cancelling the task before it starts, and for telling if the driver rejected it later
+     * @throws RejectedExecutionException if queued at the driver right away, and its queue full policy rejects the task
+     */
+    public KeyedTaskHandle queue(final K key, final AsynchronousTask task) throws RejectedExecutionException {
+        return submit(new KeyedTask(key, task, null));
+    }
+
+    /**
+     * Queues a synchronous task, to run after previously queued tasks of the same key are done.
+     * <p>
+     * The next task of the key is let through when the task has run, even if throwing,
+     * and when the task is cancelled, rejected, dropped or cleared before it starts.
+     * @param key  key of task
+     * @param task task to queue
+     * @return handle for cancelling the task before it starts, and for telling if the driver rejected it later
+     * @throws RejectedExecutionException if queued at the driver right away, and its queue full policy rejects the task
+     */
+    public KeyedTaskHandle queue(final K key, final SynchronousTask task) throws RejectedExecutionException {
+        return submit(new KeyedTask(key, null, task));
+    }
+
+    /**
+     * Queues one or more asynchronous tasks, to run after previously queued tasks of the same key are done.
+     * @param key   key of tasks
+     * @param tasks tasks to queue
+     * @throws RejectedExecutionException if a task is queued at the driver right away, and its queue full policy rejects the task
+     */
+    public void queue(final K key, final AsynchronousTask... tasks) throws RejectedExecutionException {
+        for (AsynchronousTask task : tasks) {
+            queue(key, task);
+        }
+    }
+
+    /**
+     * Queues one or more synchronous tasks, to run after previously queued tasks of the same key are done.
+     * @param key   key of tasks
+     * @param tasks tasks to queue
+     * @throws RejectedExecutionException if a task is queued at the driver right away, and its queue full policy rejects the task
+     */
+    public void queue(final K key, final SynchronousTask... tasks) throws RejectedExecutionException {
+        for (SynchronousTask task : tasks) {
+            queue(key, task);
+        }
+    }
+
+    /**
+     * Gets the driver running the tasks.
+     * @return the driver
+     */
+    public ConcurrentTaskDriver getDriver() {
+        return driver;
+    }
+
+    /**
+     * Gets the number of keys with tasks queued or running.
+     * @return the number of keys
+     */
+    public synchronized int getNumberOfActiveKeys() {
+        return waitingTasks.size();
+    }
+
+    /**
+     * Gets the number of tasks waiting for a task of the same key to be done.
+     * These are not yet queued at the driver.
+     * @return the number of tasks waiting
+     */
+    public synchronized int getNumberOfWaitingTasks() {
+        int waiting = 0;
+        for (Deque<KeyedTask> tasks : waitingTasks.values()) {
+            waiting += tasks.size();
+        }
+        return waiting;
+    }
+
+    /**
+     * Queues a task at the driver, or lets it wait if the key already has a task queued at or running by the driver.
+     * @param task task to queue
+     * @return handle of the task
+     * @throws RejectedExecutionException if queued at the driver right away, and its queue full policy rejects the task
+     */
+    private KeyedTaskHandle submit(final KeyedTask task) {
+        synchronized (this) {
+            Deque<KeyedTask> waiting = waitingTasks.get(task.key);
+            if (waiting == null) {
+                waitingTasks.put(task.key, noneWaiting());
+            } else {
+                if (waiting == NONE_WAITING) {
+                    waiting = new ArrayDeque<>();
+                    waitingTasks.put(task.key, waiting);
+                }
+                waiting.add(task);
+                return task.handle;
+            }
+        }
+        RejectedExecutionException rejection = tryQueueAtDriver(task); // Outside the lock, as the driver may run the task right away
+        if (rejection != null) {
+            onTaskDone(task.key);
+            throw rejection;
+        }
+        return task.handle;
+    }
+
+    /**
+     * Queues a task at the driver, marking it removed if the driver rejects it.
+     * @param task task to queue
+     * @return null if queued, or the rejection, in which case the caller must let through the next task of the key
+     */
+    private RejectedExecutionException tryQueueAtDriver(final KeyedTask task) {
+        TaskHandle handle;
+        try {
+            handle = task.synchronousTask == null ? driver.queueRemovable((AsynchronousTask) task, task::onRemoved) : driver.queueRemovable((SynchronousTask) task, task::onRemoved);
+        } catch (final RejectedExecutionException e) {
+            synchronized (this) {
+                task.removed = true;
+                task.rejection = e;
+            }
+            return e;
+        }
+        synchronized (this) {
+            task.driverHandle = handle;
+        }
+        return null;
+    }
+
+    /**
+     * Queues the next task of a key at the driver, or removes the state of the key if it has no more tasks.
+     * Tasks the driver rejects are skipped, as this is called on the path of ending another task, which should not fail by it.
+     * The rejection is told by the handle of the task instead.
+     * @param key key of the task done
+     */
+    private void onTaskDone(final K key) {
+        KeyedTask next;
+        do {
+            synchronized (this) {
+                next = waitingTasks.get(key).poll();
+                if (next == null) {
+                    waitingTasks.remove(key);
+                    return;
+                }
+            }
+        } while (tryQueueAtDriver(next) != null);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <K> Deque<K> noneWaiting() {
+        return (Deque<K>) NONE_WAITING;
+    }
+
+    /**
+     * A task of a key, wrapping the task of the user.
+     * It lets through the next task of the key once, on whichever path the task ends by.
+     */
+    private final class KeyedTask implements CancellableTask, SynchronousTask {
+        private final K key;
+        private final AsynchronousTask asynchronousTask;
+        private final SynchronousTask synchronousTask;
+        private final SingleRunnable release;
+        private final KeyedTaskHandle handle = new KeyedTaskHandle() {
+            @Override
+            public boolean cancel() {
+                return cancelBeforeStart();
+            }
+
+            @Override
+            public boolean isCancelled() {
+                synchronized (KeyedTaskDriver.this) {
+                    return cancelled;
+                }
+            }
+
+            @Override
+            public boolean isRemoved() {
+                synchronized (KeyedTaskDriver.this) {
+                    return removed;
+                }
+            }
+
+            @Override
+            public RejectedExecutionException getRejection() {
+                synchronized (KeyedTaskDriver.this) {
+                    return rejection;
+                }
+            }
+        };
+
+        // Guarded by the keyed driver
+        private TaskHandle driverHandle; // Null until queued at the driver
+        private boolean started = false;
+        private boolean cancelled = false; // By the handle of this
+        private boolean removed = false; // By the driver, rejecting, dropping or clearing this
+        private RejectedExecutionException rejection; // Null unless rejected by the driver
+
+        private KeyedTask(final K key, final AsynchronousTask asynchronousTask, final SynchronousTask synchronousTask) {
+            this.key = key;
+            this.asynchronousTask = asynchronousTask;
+            this.synchronousTask = synchronousTask;
+            this.release = new SingleRunnable(() -> onTaskDone(key));
+        }
+
+        /**
+         * Marks this started, unless cancelled while the driver started it.
+         * @return true if and only if the task of the user should run
+         */
+        private boolean start() {
+            synchronized (KeyedTaskDriver.this) {
+                if (cancelled) return false;
+
+                started = true;
+                return true;
+            }
+        }
+
+        @Override
+        public void run(final SingleRunnable onDone) {
+            if (!start()) {
+                release.run();
+                onDone.run();
+                return;
+            }
+
+            try {
+                asynchronousTask.run(new SingleRunnable(() -> {
+                    try {
+                        release.run(); // Queue the next task of the key before releasing the slot, so it competes for the slot in queue order
+                    } finally {
+                        onDone.run();
+                    }
+                }));
+            } catch (final RuntimeException | Error e) {
+                release.run(); // The driver keeps counting the task as running, but the key moves on
+                throw e;
+            }
+        }
+
+        @Override
+        public void run() {
+            try {
+                if (start()) synchronousTask.run();
+            } finally {
+                release.run();
+            }
+        }
+
+        @Override
+        public void cancel() { // Timed out by the driver
+            try {
+                if (asynchronousTask instanceof CancellableTask) ((CancellableTask) asynchronousTask).cancel();
+            } finally {
+                release.run();
+            }
+        }
+
+        private void onRemoved() {
+            synchronized (KeyedTaskDriver.this) {
+                removed = true;
+            }
+            release.run();
+        }
+
+        private boolean cancelBeforeStart() {
+            TaskHandle queuedHandle;
+            synchronized (KeyedTaskDriver.this) {
+                if (started || cancelled || removed) return false;
+
+                cancelled = true;
+                Deque<KeyedTask> waiting = waitingTasks.get(key);
+                if (waiting != null && waiting.remove(this)) return true; // Never queued at the driver
+
+                queuedHandle = driverHandle;
+            }
+            if (queuedHandle != null) queuedHandle.cancel(); // Lets through the next task, else this does so when the driver starts it
+            return true;
+        }
+    }
+}
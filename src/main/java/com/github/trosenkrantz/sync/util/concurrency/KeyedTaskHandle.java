@@ -0,0 +1,21 @@
+package com.github.trosenkrantz.sync.util.concurrency;
+
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * A handle to a task queued at a {@link KeyedTaskDriver}, also telling if the task left without running.
+ */
+public interface KeyedTaskHandle extends TaskHandle {
+    /**
+     * Gets if the task was removed by the driver before starting, by rejecting, dropping or clearing it.
+     * @return true if and only if removed
+     */
+    boolean isRemoved();
+
+    /**
+     * Gets why the driver rejected the task, when let through after the task before it of the same key.
+     * Tasks rejected when queued are rejected by throwing instead.
+     * @return the rejection, or null if not rejected
+     */
+    RejectedExecutionException getRejection();
+}
@@ -0,0 +1,166 @@
+package com.github.trosenkrantz.sync.util.concurrency;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Histogram of durations in nanoseconds.
+ * <p>
+ * Buckets are log-linear: Each power of two is split into 32 linear sub-buckets,
+ * so values read from the histogram are within about 3% of the recorded values, no matter their magnitude.
+ * Recording is lock-free and does not allocate, so it can be done from any thread on hot paths.
+ */
+public class LatencyHistogram {
+    private static final int SUB_BUCKET_BITS = 5;
+    private static final int SUB_BUCKET_COUNT = 1 << SUB_BUCKET_BITS;
+    private static final int BUCKET_COUNT = SUB_BUCKET_COUNT * (Long.SIZE - SUB_BUCKET_BITS);
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKET_COUNT);
+    private final LongAdder sum = new LongAdder();
+    private final AtomicLong max = new AtomicLong();
+
+    /**
+     * Records a duration.
+     * @param nanos duration in nanoseconds, negative values are recorded as 0
+     */
+    public void record(final long nanos) {
+        long value = Math.max(nanos, 0);
+        counts.incrementAndGet(getIndex(value));
+        sum.add(value);
+
+        long currentMax;
+        while (value > (currentMax = max.get()) && !max.compareAndSet(currentMax, value)) {
+            // Retry, another thread updated max
+        }
+    }
+
+    /**
+     * Removes all recorded values.
+     * Values recorded while resetting may or may not be removed.
+     */
+    public void reset() {
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            counts.set(i, 0);
+        }
+        sum.reset();
+        max.set(0);
+    }
+
+    /**
+     * Takes a snapshot of the recorded values.
+     * @return the snapshot
+     */
+    public Snapshot snapshot() {
+        long[] snapshotCounts = new long[BUCKET_COUNT];
+        long count = 0;
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            snapshotCounts[i] = counts.get(i);
+            count += snapshotCounts[i];
+        }
+        return new Snapshot(snapshotCounts, count, sum.sum(), max.get());
+    }
+
+    private static int getIndex(final long value) {
+        if (value < SUB_BUCKET_COUNT) return (int) value; // Linear for small values
+
+        int shift = (Long.SIZE - 1 - Long.numberOfLeadingZeros(value)) - SUB_BUCKET_BITS;
+        int subBucket = (int) (value >>> shift) - SUB_BUCKET_COUNT;
+        return SUB_BUCKET_COUNT + shift * SUB_BUCKET_COUNT + subBucket;
+    }
+
+    /**
+     * Gets the highest value recorded into the same bucket as another value.
+     * @param index index of the bucket
+     * @return the highest value of the bucket
+     */
+    private static long getHighestValue(final int index) {
+        if (index < SUB_BUCKET_COUNT) return index;
+
+        int shift = (index - SUB_BUCKET_COUNT) / SUB_BUCKET_COUNT;
+        long subBucket = (index - SUB_BUCKET_COUNT) % SUB_BUCKET_COUNT;
+        return ((SUB_BUCKET_COUNT + subBucket) << shift) + (1L << shift) - 1;
+    }
+
+    /**
+     * Values recorded in a {@link LatencyHistogram} at some point in time.
+     */
+    public static class Snapshot {
+        private final long[] counts;
+        private final long count;
+        private final long sum;
+        private final long max;
+
+        private Snapshot(final long[] counts, final long count, final long sum, final long max) {
+            this.counts = counts;
+            this.count = count;
+            this.sum = sum;
+            this.max = max;
+        }
+
+        /**
+         * Gets the number of recorded values.
+         * @return the number of values
+         */
+        public long getCount() {
+            return count;
+        }
+
+        /**
+         * Gets the highest recorded value.
+         * @return the highest value in nanoseconds, or 0 if nothing is recorded
+         */
+        public long getMax() {
+            return max;
+        }
+
+        /**
+         * Gets the mean of the recorded values.
+         * @return the mean in nanoseconds, or 0 if nothing is recorded
+         */
+        public double getMean() {
+            return count == 0 ? 0 : (double) sum / count;
+        }
+
+        /**
+         * Gets the value that a specified percentage of the recorded values are less than or equal to.
+         * @param percentile percentage between 0 and 100
+         * @return the value in nanoseconds, or 0 if nothing is recorded
+         */
+        public long getValueAtPercentile(final double percentile) {
+            if (count == 0) return 0;
+
+            long rank = Math.max(1, (long) Math.ceil(Math.min(percentile, 100) / 100 * count));
+            long cumulativeCount = 0;
+            for (int i = 0; i < counts.length; i++) {
+                cumulativeCount += counts[i];
+                if (cumulativeCount >= rank) return Math.min(getHighestValue(i), max);
+            }
+            return max; // Only reached if values are recorded while taking the snapshot
+        }
+
+        /**
+         * Gets the median.
+         * @return the 50th percentile in nanoseconds
+         */
+        public long getP50() {
+            return getValueAtPercentile(50);
+        }
+
+        /**
+         * Gets the 99th percentile.
+         * @return the 99th percentile in nanoseconds
+         */
+        public long getP99() {
+            return getValueAtPercentile(99);
+        }
+
+        /**
+         * Gets the 99.9th percentile.
+         * @return the 99.9th percentile in nanoseconds
+         */
+        public long getP999() {
+            return getValueAtPercentile(99.9);
+        }
+    }
+}
@@ -4,14 +4,26 @@ import java.util.NoSuchElementException;
 
 /**
  * A representation of some positive limit, or a limitless representation.
+ * <p>
+ * Limits created by {@link #of(int)} and {@link #noLimit()} are fixed.
+ * Subclasses, such as {@link AdaptiveLimit}, may change their value over time based on feedback from drivers about the tasks they limit.
  */
 public class Limit {
-    private final Integer value; // Null means no limit
+    private static final int NO_LIMIT = 0;
 
-    private Limit(final Integer value) {
+    private final int value; // NO_LIMIT means no limit
+
+    private Limit(final int value) {
         this.value = value;
     }
 
+    /**
+     * Constructs a limit for subclasses, which must override {@link #hasLimit()} and {@link #getValue()}.
+     */
+    protected Limit() {
+        this(NO_LIMIT);
+    }
+
     /**
      * Creates a positive limit.
      * @param value value of limit
@@ -29,7 +41,7 @@ public class Limit {
      * @return the limit
      */
     public static Limit noLimit() {
-        return new Limit(null);
+        return new Limit(NO_LIMIT);
     }
 
     /**
@@ -37,7 +49,16 @@ public class Limit {
      * @return true if and only if a concrete limit
      */
     public boolean hasLimit() {
-        return value != null;
+        return value != NO_LIMIT;
+    }
+
+    /**
+     * Gets the current value of this limit.
+     * Must only be called if {@link #hasLimit()}.
+     * @return the limit value
+     */
+    protected int getValue() {
+        return value;
     }
 
     /**
@@ -46,8 +67,8 @@ public class Limit {
      * @throws NoSuchElementException if this is limitless
      */
     public Integer get() throws NoSuchElementException {
-        if (value == null) throw new NoSuchElementException("There is No limit.");
-        return value;
+        if (!hasLimit()) throw new NoSuchElementException("There is No limit.");
+        return getValue();
     }
 
     /**
@@ -57,7 +78,7 @@ public class Limit {
      * @return true if and only if this limit is greater than the specified value
      */
     public boolean isGreaterThan(final int value) {
-        return this.value == null || this.value > value;
+        return !hasLimit() || getValue() > value;
     }
 
     /**
@@ -67,7 +88,7 @@ public class Limit {
      * @return true if and only if this limit is less than the specified value
      */
     public boolean isLessThan(final int value) {
-        return this.value != null && this.value < value;
+        return hasLimit() && getValue() < value;
     }
 
     /**
@@ -77,7 +98,7 @@ public class Limit {
      * @return true if and only if this limit is greater than or equal to the specified value
      */
     public boolean isGreaterThanOrEquals(final int value) {
-        return this.value == null || this.value >= value;
+        return !hasLimit() || getValue() >= value;
     }
 
     /**
@@ -87,6 +108,25 @@ public class Limit {
      * @return true if and only if this limit is less than or equal to the specified value
      */
     public boolean isLessThanOrEquals(final int value) {
-        return this.value != null && this.value <= value;
+        return hasLimit() && getValue() <= value;
+    }
+
+    /**
+     * Gets if this limit wants feedback through {@link #onTaskDone(long, boolean, int)}.
+     * Drivers only measure round trip times of tasks if so.
+     * @return true if and only if this adapts to feedback
+     */
+    public boolean isAdaptive() {
+        return false;
+    }
+
+    /**
+     * Called by a driver when a task limited by this is done, if this {@link #isAdaptive()}.
+     * Fixed limits ignore this.
+     * @param roundTripNanos time in nanoseconds from the task started until it was done
+     * @param failed         true if the task failed
+     * @param running        number of running tasks, including the task that is done
+     */
+    public void onTaskDone(final long roundTripNanos, final boolean failed, final int running) {
     }
 }
@@ -0,0 +1,68 @@
+package com.github.trosenkrantz.sync.util.concurrency;
+
+import com.github.trosenkrantz.sync.util.runnable.SingleRunnable;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Driver for managing tasks that run concurrently, without using locks.
+ * It has the same API as {@link ConcurrentTaskDriver}, but is built for many threads queueing and finishing tasks at the same time.
+ * <p>
+ * Producers and finishing tasks never block each other.
+ * Admission of tasks is done with compare-and-set on a single state word holding both the number of running tasks and the suspension flag,
+ * and tasks are queued in lock-free queues.
+ * <p>
+ * As with {@link ConcurrentTaskDriver}, this driver does not use threading.
+ * Tasks are started by the thread queueing or finishing a task.
+ * Only one thread starts tasks at a time; if another thread queues or finishes a task meanwhile,
+ * it leaves the work to the starting thread and returns immediately.
+ * The same goes for tasks done within their own {@link AsynchronousTask#run(SingleRunnable)}, so the stack depth stays constant.
+ */
+public class LockFreeConcurrentTaskDriver extends AbstractLockFreeTaskDriver {
+    private static final long RUNNING_MASK = 0xFFFFFFFFL; // Lower 32 bits are the number of running tasks
+    private static final long SUSPENDED_BIT = 1L << 32;
+
+    private final AtomicLong state = new AtomicLong();
+
+    /**
+     * Constructs with no limit to number of running tasks.
+     */
+    public LockFreeConcurrentTaskDriver() {
+        super(1);
+    }
+
+    @Override
+    boolean tryAcquireSlot(final Lane lane) {
+        while (true) {
+            long current = state.get();
+            if ((current & SUSPENDED_BIT) != 0) return false;
+            if (maxRunningTasks.isLessThanOrEquals((int) (current & RUNNING_MASK))) return false; // We are already running max allowed running tasks
+            if (state.compareAndSet(current, current + 1)) return true;
+        }
+    }
+
+    @Override
+    void releaseSlot(final Lane lane) {
+        state.decrementAndGet();
+    }
+
+    @Override
+    public int getNumberOfRunningTasks() {
+        return (int) (state.get() & RUNNING_MASK);
+    }
+
+    @Override
+    public void suspend() {
+        state.getAndUpdate(current -> current | SUSPENDED_BIT);
+    }
+
+    @Override
+    void allowStarting() {
+        state.getAndUpdate(current -> current & ~SUSPENDED_BIT);
+    }
+
+    @Override
+    public boolean isSuspended() {
+        return (state.get() & SUSPENDED_BIT) != 0;
+    }
+}
@@ -0,0 +1,120 @@
+package com.github.trosenkrantz.sync.util.concurrency;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Lock-free queues of tasks, one in FIFO order and one in priority order, where prioritised tasks are taken first.
+ * <p>
+ * Each queue has a size counter, incremented after adding a task.
+ * A consumer reserves a task by decrementing the counter before polling, so a reserved task is always present in the queue,
+ * and consumers never poll an empty queue.
+ */
+final class LockFreeTaskQueue {
+    private final Queue<AsynchronousTask> fifoQueue = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger fifoQueueSize = new AtomicInteger();
+    private final ConcurrentSkipListSet<Entry> priorityQueue = new ConcurrentSkipListSet<>();
+    private final AtomicInteger priorityQueueSize = new AtomicInteger();
+    private final AtomicLong sequence = new AtomicLong(); // Keeps tasks of same priority in order
+
+    void add(final AsynchronousTask task) {
+        fifoQueue.add(task);
+        fifoQueueSize.incrementAndGet(); // Increment after adding, so a reserved task is always present in the queue
+    }
+
+    void add(final int priority, final AsynchronousTask task) {
+        priorityQueue.add(new Entry(task, priority, sequence.getAndIncrement()));
+        priorityQueueSize.incrementAndGet(); // Increment after adding, so a reserved task is always present in the queue
+    }
+
+    /**
+     * Adds a batch of tasks, making them available to consumers at once.
+     * @param tasks tasks to add
+     */
+    void addAll(final Iterable<? extends AsynchronousTask> tasks) {
+        int count = 0;
+        for (AsynchronousTask task : tasks) {
+            fifoQueue.add(task);
+            count++;
+        }
+        fifoQueueSize.addAndGet(count); // Increment after adding, so a reserved task is always present in the queue
+    }
+
+    /**
+     * Adds a batch of tasks with the same priority, making them available to consumers at once.
+     * @param priority priority, where lower values have higher priority
+     * @param tasks    tasks to add
+     */
+    void addAll(final int priority, final Iterable<? extends AsynchronousTask> tasks) {
+        int count = 0;
+        for (AsynchronousTask task : tasks) {
+            priorityQueue.add(new Entry(task, priority, sequence.getAndIncrement()));
+            count++;
+        }
+        priorityQueueSize.addAndGet(count); // Increment after adding, so a reserved task is always present in the queue
+    }
+
+    /**
+     * Takes the next task, prioritised tasks first.
+     * @return the task, or null if empty
+     */
+    AsynchronousTask poll() {
+        AsynchronousTask task = pollPrioritised();
+        return task != null ? task : pollFifo();
+    }
+
+    /**
+     * Takes the prioritised task of highest priority.
+     * @return the task, or null if there are no prioritised tasks
+     */
+    AsynchronousTask pollPrioritised() {
+        return tryReserve(priorityQueueSize) ? priorityQueue.pollFirst().task : null;
+    }
+
+    /**
+     * Takes the first task queued without priority.
+     * @return the task, or null if there are no such tasks
+     */
+    AsynchronousTask pollFifo() {
+        return tryReserve(fifoQueueSize) ? fifoQueue.poll() : null;
+    }
+
+    int size() {
+        return fifoQueueSize.get() + priorityQueueSize.get();
+    }
+
+    /**
+     * Reserves one task from a queue by decrementing its size, if positive.
+     * As sizes are incremented after adding to a queue, a reserved task is always present in the queue.
+     * @param queueSize size of the queue
+     * @return true if and only if a task was reserved
+     */
+    private static boolean tryReserve(final AtomicInteger queueSize) {
+        while (true) {
+            int current = queueSize.get();
+            if (current <= 0) return false;
+            if (queueSize.compareAndSet(current, current - 1)) return true;
+        }
+    }
+
+    private static class Entry implements Comparable<Entry> {
+        private final AsynchronousTask task;
+        private final int priority;
+        private final long sequence;
+
+        private Entry(final AsynchronousTask task, final int priority, final long sequence) {
+            this.task = task;
+            this.priority = priority;
+            this.sequence = sequence;
+        }
+
+        @Override
+        public int compareTo(final Entry other) {
+            int result = Integer.compare(this.priority, other.priority);
+            return result != 0 ? result : Long.compare(this.sequence, other.sequence);
+        }
+    }
+}
@@ -4,6 +4,7 @@ import com.github.trosenkrantz.sync.util.runnable.SingleRunnable;
 
 import java.util.HashSet;
 import java.util.Set;
+import java.util.concurrent.locks.ReentrantLock;
 
 /**
  * A tasks you that notifies you when done.
@@ -11,6 +12,7 @@ import java.util.Set;
  * When using this class, you should queue this instance and not the inner task.
  */
 public class NotifyingTask implements AsynchronousTask {
+    private final ReentrantLock lock = new ReentrantLock();
     private final Set<Runnable> subscribers;
     protected final AsynchronousTask innerTask;
 
@@ -59,23 +61,29 @@ public class NotifyingTask implements AsynchronousTask {
      */
     public void subscribe(final Runnable subscriber) {
         boolean hasRunLocal;
-        synchronized (this) { // Run in synchronized block to avoid race conditions with the onDone
+        lock.lock(); // Lock to avoid race conditions with the onDone
+        try {
             subscribers.add(subscriber);
             hasRunLocal = hasFinished;
+        } finally {
+            lock.unlock();
         }
 
-        if (hasRunLocal) subscriber.run(); // Run out of synchronous block, since we do not control what the subscriber does here
+        if (hasRunLocal) subscriber.run(); // Run outside the lock, since we do not control what the subscriber does here
     }
 
     @Override
     public void run(final SingleRunnable onDone) {
         innerTask.run(new SingleRunnable(() -> {
             HashSet<Runnable> subscribersCopy; // Use a copy to avoid race conditions with subscribe
-            synchronized (this) {
+            lock.lock();
+            try {
                 subscribersCopy = new HashSet<>(subscribers);
                 hasFinished = true;
+            } finally {
+                lock.unlock();
             }
-            subscribersCopy.forEach(Runnable::run); // Run out of synchronous block, since we do not control what the subscriber does here
+            subscribersCopy.forEach(Runnable::run); // Run outside the lock, since we do not control what the subscriber does here
             onDone.run();
         }));
     }
@@ -0,0 +1,17 @@
+package com.github.trosenkrantz.sync.util.concurrency;
+
+/**
+ * What a {@link ConcurrentTaskDriver} does with a task weighing more than its max running weight.
+ */
+public enum OversizedTaskPolicy {
+    /**
+     * Run the task when no other tasks are running, and run no other tasks until it is done.
+     */
+    RUN_ALONE,
+
+    /**
+     * Reject the task by throwing an {@link IllegalArgumentException} when queued.
+     * Tasks already queued when the max running weight is lowered are run alone.
+     */
+    REJECT
+}
@@ -0,0 +1,65 @@
+package com.github.trosenkrantz.sync.util.concurrency;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A policy improving the priority of queued tasks the longer they wait, so a steady stream of high priority tasks cannot starve tasks of lower priority.
+ * <p>
+ * For every interval a task waits, its effective priority improves by one, that is, decreases by one, until reaching a ceiling.
+ * Tasks queued with a priority better than the ceiling are unaffected.
+ * Among tasks of equal effective priority, the task with the best original priority starts first.
+ */
+public class PriorityAging {
+    private final long intervalNanos; // 0 means no aging
+    private final int ceiling;
+
+    private PriorityAging(final long intervalNanos, final int ceiling) {
+        this.intervalNanos = intervalNanos;
+        this.ceiling = ceiling;
+    }
+
+    /**
+     * Creates a policy improving priority by one for every interval a task waits.
+     * @param interval time a task must wait for each improvement
+     * @param unit     unit of the interval
+     * @param ceiling  best effective priority a task can reach by aging
+     * @return the policy
+     * @throws IllegalArgumentException if interval is non-positive
+     */
+    public static PriorityAging of(final long interval, final TimeUnit unit, final int ceiling) throws IllegalArgumentException {
+        long intervalNanos = unit.toNanos(interval);
+        if (intervalNanos < 1) throw new IllegalArgumentException("Interval must be positive, but was " + interval + " " + unit + ".");
+
+        return new PriorityAging(intervalNanos, ceiling);
+    }
+
+    /**
+     * Creates a policy without aging, so tasks keep the priority they were queued with.
+     * @return the policy
+     */
+    public static PriorityAging none() {
+        return new PriorityAging(0, 0);
+    }
+
+    /**
+     * Gets if this ages tasks.
+     * @return true if and only if priorities improve with time waited
+     */
+    public boolean isEnabled() {
+        return intervalNanos != 0;
+    }
+
+    /**
+     * Computes the effective priority of a queued task.
+     * @param priority    priority the task was queued with
+     * @param queuedNanos {@link System#nanoTime()} when the task was queued, or {@link QueuedTask#UNMEASURED} if unknown
+     * @param nowNanos    {@link System#nanoTime()} now
+     * @return the effective priority
+     */
+    int getEffectivePriority(final int priority, final long queuedNanos, final long nowNanos) {
+        if (!isEnabled() || priority <= ceiling || queuedNanos == QueuedTask.UNMEASURED) return priority;
+
+        long improvement = (nowNanos - queuedNanos) / intervalNanos;
+        return (int) Math.max(ceiling, priority - improvement);
+    }
+}
@@ -2,7 +2,9 @@ package com.github.trosenkrantz.sync.util.concurrency;
 
 /**
  * Wrapper of an {@link AsynchronousTask} and a priority.
+ * @deprecated Unused by the drivers, which queue prioritised tasks with {@link ConcurrentTaskDriver#queue(int, AsynchronousTask...)} and order them internally.
  */
+@Deprecated
 public class PriorityAsynchronousTask implements Comparable<PriorityAsynchronousTask>{
     private final AsynchronousTask task;
     private final int priority;
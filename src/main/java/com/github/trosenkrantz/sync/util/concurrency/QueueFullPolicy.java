@@ -0,0 +1,36 @@
+package com.github.trosenkrantz.sync.util.concurrency;
+
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * What a {@link ConcurrentTaskDriver} does with a task queued when its queue holds the max number of queued tasks.
+ * <p>
+ * This applies to the {@code queue} methods.
+ * The {@code offer} methods instead return false, block or complete later when the queue is full.
+ */
+public enum QueueFullPolicy {
+    /**
+     * Reject the tasks by throwing a {@link RejectedExecutionException}.
+     * If tasks queued together do not all fit, none of them are queued.
+     */
+    REJECT,
+
+    /**
+     * Drop the task that would start next, making room for the new task, like a bounded buffer of the latest tasks.
+     */
+    DROP_OLDEST,
+
+    /**
+     * Drop the task that would start last, which may be the new task.
+     * Tasks queued without a priority start after prioritised tasks, and tasks of equal priority in the order queued,
+     * so the latest task of the lowest priority is dropped, ignoring {@link PriorityAging}.
+     */
+    DROP_LOWEST_PRIORITY,
+
+    /**
+     * Run the task right away on the thread queueing it, after queueing its other tasks, which slows down the producer.
+     * The task does not count towards the limits of the driver and is not reported to listeners,
+     * and asynchronous tasks are only started, not waited for.
+     */
+    CALLER_RUNS
+}
@@ -0,0 +1,88 @@
+package com.github.trosenkrantz.sync.util.concurrency;
+
+import com.github.trosenkrantz.sync.util.runnable.SingleRunnable;
+import com.github.trosenkrantz.sync.util.timer.Timeout;
+
+/**
+ * A task in a {@link ConcurrentTaskDriver}, from it is queued until it is done.
+ * It holds either an asynchronous or a synchronous task.
+ * <p>
+ * This is also the runnable the task is given to call when done, and the handle returned when queued,
+ * so queueing and starting a single task allocates nothing beyond this.
+ * Instances are not reused for later tasks, although pooling would save allocating this too.
+ * A task may keep its runnable and call it after being done, for instance after timing out,
+ * which would then count a later task using the same instance as done.
+ * A generation counter cannot tell such calls apart, as the runnable is the same object for both tasks.
+ */
+final class QueuedTask extends SingleRunnable implements TaskHandle {
+    static final long UNMEASURED = Long.MIN_VALUE;
+
+    final AsynchronousTask asynchronousTask;
+    final SynchronousTask synchronousTask;
+    final boolean prioritised;
+    final int priority;
+    final int weight;
+    final long queuedNanos;
+    long startedNanos = UNMEASURED;
+    long timeoutNanos = 0; // 0 means the default timeout of the driver
+    Timeout timeout; // Null if not timed
+    boolean failed = false;
+    boolean dequeued = false; // True when started or cleared, unless put back in the queue
+    boolean cancelled = false; // Cancelled tasks stay in the queue until reaching its head or the queue is compacted
+    ConcurrentTaskDriver driver; // Set when queued with a handle, or else when started
+    Runnable onRemoved; // Called when cancelled, dropped or cleared before starting, or null
+    long traceId = 0; // Id in the trace recorder of the driver, or 0 until first recorded
+
+    /**
+     * Constructs this.
+     * @param asynchronousTask asynchronous task, or null if synchronous
+     * @param synchronousTask  synchronous task, or null if asynchronous
+     * @param prioritised      true if queued with a priority
+     * @param priority         priority, where lower values have higher priority
+     * @param weight           weight counted against the max running weight
+     * @param queuedNanos      {@link System#nanoTime()} when queued, or {@link #UNMEASURED}
+     */
+    QueuedTask(final AsynchronousTask asynchronousTask, final SynchronousTask synchronousTask, final boolean prioritised, final int priority, final int weight, final long queuedNanos) {
+        this.asynchronousTask = asynchronousTask;
+        this.synchronousTask = synchronousTask;
+        this.prioritised = prioritised;
+        this.priority = priority;
+        this.weight = weight;
+        this.queuedNanos = queuedNanos;
+    }
+
+    @Override
+    protected void runOnce() {
+        driver.onTaskDone(this);
+    }
+
+    @Override
+    public boolean cancel() {
+        return driver.cancel(this);
+    }
+
+    @Override
+    public boolean isCancelled() {
+        return driver.isCancelled(this);
+    }
+
+    /**
+     * Gets if the task failed, by throwing, timing out, or completing its future exceptionally if submitted.
+     * @return true if and only if failed
+     */
+    boolean hasFailed() {
+        if (failed) return true;
+
+        SubmittedTask<?> submittedTask = getSubmittedTask();
+        return submittedTask != null && submittedTask.hasFailed();
+    }
+
+    /**
+     * Gets the task as submitted with a future.
+     * @return the submitted task, or null if queued without a future
+     */
+    SubmittedTask<?> getSubmittedTask() {
+        Object task = synchronousTask != null ? synchronousTask : asynchronousTask;
+        return task instanceof SubmittedTask ? (SubmittedTask<?>) task : null;
+    }
+}
@@ -0,0 +1,104 @@
+package com.github.trosenkrantz.sync.util.concurrency;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A limit to the rate of starting tasks, as a token bucket.
+ * <p>
+ * The bucket holds up to a burst size of tokens and refills continuously at the rate.
+ * Starting a task takes a token, so up to burst size tasks may start at once after a quiet period, after which tasks start at the rate.
+ * A burst size of 1 smooths starts, spacing them evenly.
+ * <p>
+ * An instance may be shared between drivers to limit their combined rate.
+ */
+public class RateLimit {
+    private final double permitsPerNano; // 0 means no limit
+    private final double burstSize;
+
+    private double tokens;
+    private long lastRefillNanos;
+
+    private RateLimit(final double permitsPerNano, final double burstSize) {
+        this.permitsPerNano = permitsPerNano;
+        this.burstSize = burstSize;
+        this.tokens = burstSize;
+        this.lastRefillNanos = System.nanoTime();
+    }
+
+    /**
+     * Creates a rate limit allowing bursts.
+     * @param permits   number of task starts per unit of time
+     * @param unit      unit of time
+     * @param burstSize max number of tasks to start at once
+     * @return the rate limit
+     * @throws IllegalArgumentException if permits is not positive, or if burst size is less than 1
+     */
+    public static RateLimit of(final double permits, final TimeUnit unit, final int burstSize) throws IllegalArgumentException {
+        if (!(permits > 0) || Double.isInfinite(permits)) throw new IllegalArgumentException("Permits must be positive, but was " + permits + ".");
+        if (burstSize < 1) throw new IllegalArgumentException("Burst size must be at least 1, but was " + burstSize + ".");
+
+        return new RateLimit(permits / unit.toNanos(1), burstSize);
+    }
+
+    /**
+     * Creates a rate limit spacing task starts evenly, without bursts.
+     * @param permits number of task starts per unit of time
+     * @param unit    unit of time
+     * @return the rate limit
+     * @throws IllegalArgumentException if permits is not positive
+     */
+    public static RateLimit smooth(final double permits, final TimeUnit unit) throws IllegalArgumentException {
+        return of(permits, unit, 1);
+    }
+
+    /**
+     * Creates a limitless representation.
+     * @return the rate limit
+     */
+    public static RateLimit noLimit() {
+        return new RateLimit(0, 0);
+    }
+
+    /**
+     * Gets if this is a concrete limit (not limitless).
+     * @return true if and only if a concrete limit
+     */
+    public boolean hasLimit() {
+        return permitsPerNano != 0;
+    }
+
+    /**
+     * Takes a token if available.
+     * @param nowNanos {@link System#nanoTime()} now
+     * @return true if and only if a task may start
+     */
+    synchronized boolean tryAcquire(final long nowNanos) {
+        if (!hasLimit()) return true;
+
+        refill(nowNanos);
+        if (tokens < 1) return false;
+
+        tokens--;
+        return true;
+    }
+
+    /**
+     * Gets the time until a token is available.
+     * @param nowNanos {@link System#nanoTime()} now
+     * @return the time in nanoseconds, or 0 if a token is available now
+     */
+    synchronized long getNanosUntilAvailable(final long nowNanos) {
+        if (!hasLimit()) return 0;
+
+        refill(nowNanos);
+        return tokens >= 1 ? 0 : (long) Math.ceil((1 - tokens) / permitsPerNano);
+    }
+
+    private void refill(final long nowNanos) {
+        long elapsed = nowNanos - lastRefillNanos;
+        if (elapsed <= 0) return;
+
+        tokens = Math.min(burstSize, tokens + elapsed * permitsPerNano);
+        lastRefillNanos = nowNanos;
+    }
+}
@@ -52,7 +52,10 @@ public class RepeatingAsynchronousTask implements AsynchronousTask {
     }
 
     private void onInnerDone() {
-        if (shouldStop || !limit.isGreaterThan(count.incrementAndGet())) onOuterDone.run();
+        int repetitions = count.incrementAndGet();
+        boolean isDone = shouldStop || !limit.isGreaterThan(repetitions);
+        TaskEvents.repetitionDone(this, repetitions, isDone);
+        if (isDone) onOuterDone.run();
         else task.run(new SingleRunnable(this::onInnerDone));
     }
 }
@@ -0,0 +1,106 @@
+package com.github.trosenkrantz.sync.util.concurrency;
+
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+/**
+ * Driver for managing tasks that run concurrently, spreading its queue and its count of running tasks over shards to scale with the number of cores.
+ * It has the same API as {@link ConcurrentTaskDriver}.
+ * <p>
+ * Each thread queues tasks in its own shard, chosen by thread ID, so producers on different cores rarely touch the same queue.
+ * When a shard has no queued tasks, it steals tasks from the other shards, so no tasks wait while there is capacity to run them.
+ * <p>
+ * Running tasks are counted in a cell per shard, each on its own cache line, like a {@link java.util.concurrent.atomic.LongAdder},
+ * so starting and finishing tasks only write the cell of the shard of the thread.
+ * Without a limit, that is all admission does.
+ * With a limit, a thread takes a slot by incrementing its cell and then summing the cells,
+ * backing off if the sum exceeds the limit, so the limit holds across shards without a shared compare-and-set.
+ * The number of running tasks may briefly include threads about to back off.
+ * <p>
+ * Ordering is only kept within a shard:
+ * Prioritised tasks of all shards start before tasks queued without priority,
+ * but the priority order and the FIFO order of tasks queued by different threads are not guaranteed.
+ * <p>
+ * As with {@link ConcurrentTaskDriver}, this driver does not use threading.
+ * Tasks are started by the thread queueing or finishing a task.
+ * Only one thread starts tasks of a shard at a time; if another thread of the same shard queues or finishes a task meanwhile,
+ * it leaves the work to the starting thread and returns immediately, so the stack depth stays constant.
+ * Listeners may be notified from several threads at the same time.
+ */
+public class ShardedConcurrentTaskDriver extends AbstractLockFreeTaskDriver {
+    private static final int CELL_STRIDE = 16; // Ints from one cell to the next, keeping cells 64 bytes apart
+
+    private final AtomicIntegerArray runningCells; // Only the sum is meaningful, as a task may finish on another shard than it started
+    private volatile boolean suspended = false;
+
+    /**
+     * Constructs with a shard per available processor and no limit to number of running tasks.
+     */
+    public ShardedConcurrentTaskDriver() {
+        this(Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Constructs with no limit to number of running tasks.
+     * @param numberOfShards number of shards to spread queued tasks over
+     * @throws IllegalArgumentException if number of shards is non-positive
+     */
+    public ShardedConcurrentTaskDriver(final int numberOfShards) throws IllegalArgumentException {
+        super(requirePositive(numberOfShards));
+        this.runningCells = new AtomicIntegerArray(numberOfShards * CELL_STRIDE);
+    }
+
+    private static int requirePositive(final int numberOfShards) throws IllegalArgumentException {
+        if (numberOfShards < 1) throw new IllegalArgumentException("Number of shards must be positive, but was " + numberOfShards + ".");
+        return numberOfShards;
+    }
+
+    @Override
+    boolean tryAcquireSlot(final Lane lane) {
+        int cell = lane.index * CELL_STRIDE;
+        while (true) {
+            if (suspended) return false;
+
+            runningCells.incrementAndGet(cell);
+            Limit limit = maxRunningTasks;
+            // Checking after incrementing, a thread racing for the last slot sees either our increment or its own rejection
+            if (!suspended && (!limit.hasLimit() || !limit.isLessThanOrEquals(getNumberOfRunningTasks() - 1))) return true;
+
+            runningCells.decrementAndGet(cell);
+            // Threads racing for the last slot may all back off, so the last to back off, seeing the slot free, tries again
+            if (suspended || limit.isLessThanOrEquals(getNumberOfRunningTasks())) return false;
+        }
+    }
+
+    @Override
+    void releaseSlot(final Lane lane) {
+        runningCells.decrementAndGet(lane.index * CELL_STRIDE);
+    }
+
+    @Override
+    public int getNumberOfRunningTasks() {
+        int running = 0;
+        for (int i = 0; i < runningCells.length(); i += CELL_STRIDE) {
+            running += runningCells.get(i);
+        }
+        return running;
+    }
+
+    public int getNumberOfShards() {
+        return getNumberOfLanes();
+    }
+
+    @Override
+    public void suspend() {
+        suspended = true;
+    }
+
+    @Override
+    void allowStarting() {
+        suspended = false;
+    }
+
+    @Override
+    public boolean isSuspended() {
+        return suspended;
+    }
+}
@@ -0,0 +1,31 @@
+package com.github.trosenkrantz.sync.util.concurrency;
+
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A single daemon thread shared by all drivers for waking up at a later time, so drivers do not need a thread each.
+ * The thread is created when first used.
+ */
+final class SharedScheduler {
+    private SharedScheduler() {
+    }
+
+    /**
+     * Runs something on the shared thread after a delay.
+     * It should be short, as it delays everything else scheduled.
+     * @param runnable   what to run
+     * @param delayNanos delay in nanoseconds
+     */
+    static void schedule(final Runnable runnable, final long delayNanos) {
+        Holder.EXECUTOR.schedule(runnable, delayNanos, TimeUnit.NANOSECONDS);
+    }
+
+    private static class Holder { // Lazily initialised on first use
+        private static final ScheduledThreadPoolExecutor EXECUTOR = new ScheduledThreadPoolExecutor(1, runnable -> {
+            Thread thread = new Thread(runnable, "SyncUtil-scheduler");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+}
@@ -0,0 +1,79 @@
+package com.github.trosenkrantz.sync.util.concurrency;
+
+import com.github.trosenkrantz.sync.util.runnable.SingleRunnable;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * A task submitted to a {@link ConcurrentTaskDriver}, completing a future with its value.
+ * It holds either a value-producing asynchronous task, run as an {@link AsynchronousTask}, or a callable, run as a {@link SynchronousTask}.
+ * <p>
+ * The task is done when the future is completed, by the task or by anyone else, such as the caller cancelling it.
+ * @param <T> type of value
+ */
+final class SubmittedTask<T> implements CancellableTask, SynchronousTask {
+    private final AsynchronousValueTask<T> asynchronousTask;
+    private final Callable<? extends T> callable;
+    private final CompletableFuture<T> result = new CompletableFuture<>();
+    private volatile boolean started = false;
+
+    /**
+     * Constructs this.
+     * @param asynchronousTask asynchronous task, or null if callable
+     * @param callable         callable, or null if asynchronous
+     */
+    SubmittedTask(final AsynchronousValueTask<T> asynchronousTask, final Callable<? extends T> callable) {
+        this.asynchronousTask = asynchronousTask;
+        this.callable = callable;
+    }
+
+    CompletableFuture<T> getResult() {
+        return result;
+    }
+
+    /**
+     * Cancels the task in queue when the future is completed before the task is started.
+     * @param handle handle of the queued task
+     */
+    void cancelWhenCompletedEarly(final TaskHandle handle) {
+        result.whenComplete((value, exception) -> {
+            if (!started) handle.cancel();
+        });
+    }
+
+    boolean hasFailed() {
+        return result.isCompletedExceptionally();
+    }
+
+    @Override
+    public void run(final SingleRunnable onDone) {
+        started = true;
+        result.whenComplete((value, exception) -> onDone.run());
+        if (result.isDone()) return;
+
+        try {
+            asynchronousTask.run(result);
+        } catch (final RuntimeException | Error e) {
+            result.completeExceptionally(e);
+        }
+    }
+
+    @Override
+    public void run() {
+        started = true;
+        if (result.isDone()) return;
+
+        try {
+            result.complete(callable.call());
+        } catch (final Throwable e) {
+            result.completeExceptionally(e);
+        }
+    }
+
+    @Override
+    public void cancel() {
+        result.completeExceptionally(new TimeoutException("Task timed out."));
+    }
+}
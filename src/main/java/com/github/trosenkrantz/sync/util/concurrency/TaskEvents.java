@@ -0,0 +1,42 @@
+package com.github.trosenkrantz.sync.util.concurrency;
+
+/**
+ * Emits events of the lifecycle of tasks to Java Flight Recorder.
+ * <p>
+ * This version, for Java 8, does nothing, so the calls cost nothing once inlined.
+ * The multi-release JAR replaces it with a version emitting JFR events on Java 11 or newer.
+ * Durations are in nanoseconds, or {@link Long#MIN_VALUE} if not measured.
+ */
+final class TaskEvents {
+    private TaskEvents() {
+    }
+
+    /**
+     * Gets if any event measuring durations is enabled, so callers know to take timestamps.
+     * @return true if and only if enabled
+     */
+    static boolean isEnabled() {
+        return false;
+    }
+
+    static void taskQueued(final Object driver, final boolean prioritised, final int priority, final int weight) {
+    }
+
+    static void taskStarted(final Object driver, final long waitNanos) {
+    }
+
+    static void taskFinished(final Object driver, final long waitNanos, final long runNanos, final boolean failed) {
+    }
+
+    static void suspensionChanged(final Object driver, final boolean suspended) {
+    }
+
+    static void limitChanged(final Object driver, final String limitName, final Limit limit) {
+    }
+
+    static void repetitionDone(final Object task, final int repetitions, final boolean lastRepetition) {
+    }
+
+    static void dependenciesFinished(final Object task, final int dependencies, final long waitNanos) {
+    }
+}
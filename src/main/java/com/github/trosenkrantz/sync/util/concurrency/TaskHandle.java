@@ -0,0 +1,19 @@
+package com.github.trosenkrantz.sync.util.concurrency;
+
+/**
+ * A handle to a queued task, for removing it from the queue before it starts.
+ */
+public interface TaskHandle {
+    /**
+     * Removes the task from the queue, if not already started, cancelled or cleared.
+     * Running tasks are unaffected.
+     * @return true if and only if this call removed the task
+     */
+    boolean cancel();
+
+    /**
+     * Gets if the task was removed by {@link #cancel()}.
+     * @return true if and only if cancelled
+     */
+    boolean isCancelled();
+}
@@ -0,0 +1,67 @@
+package com.github.trosenkrantz.sync.util.concurrency;
+
+import java.util.Iterator;
+import java.util.Spliterator;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Supplier;
+
+/**
+ * Source of tasks that a {@link ConcurrentTaskDriver} pulls from as slots free up, rather than holding all tasks in its queue.
+ */
+final class TaskSource {
+    private final Supplier<? extends AsynchronousTask> supplier; // Gives null when there are no more tasks
+    private final int prefetch;
+    private final CompletableFuture<Void> completion = new CompletableFuture<>();
+    private Throwable failure = null;
+
+    TaskSource(final Supplier<? extends AsynchronousTask> supplier, final int prefetch) throws IllegalArgumentException {
+        if (prefetch < 0) throw new IllegalArgumentException("Prefetch must be non-negative, but was " + prefetch + ".");
+
+        this.supplier = supplier;
+        this.prefetch = prefetch;
+    }
+
+    static TaskSource of(final Iterator<? extends AsynchronousTask> tasks, final int prefetch) throws IllegalArgumentException {
+        return new TaskSource(() -> tasks.hasNext() ? tasks.next() : null, prefetch);
+    }
+
+    static TaskSource of(final Spliterator<? extends AsynchronousTask> tasks, final int prefetch) throws IllegalArgumentException {
+        AsynchronousTask[] next = new AsynchronousTask[1];
+        return new TaskSource(() -> {
+            next[0] = null;
+            return tasks.tryAdvance(task -> next[0] = task) ? next[0] : null;
+        }, prefetch);
+    }
+
+    int getPrefetch() {
+        return prefetch;
+    }
+
+    CompletableFuture<Void> getCompletion() {
+        return completion;
+    }
+
+    /**
+     * Pulls the next task.
+     * If pulling throws, even an {@link Error}, the source counts as ended, and the completion fails with the exception.
+     * @return the task, or null if the source has ended
+     */
+    AsynchronousTask next() {
+        if (completion.isDone()) return null; // Cancelled by the user
+        try {
+            return supplier.get();
+        } catch (final RuntimeException | Error e) { // Errors too, as the source would otherwise throw again on every pull
+            failure = e;
+            return null;
+        }
+    }
+
+    /**
+     * Completes the completion as the source has ended.
+     * Must be called without holding the lock of the driver.
+     */
+    void complete() {
+        if (failure == null) completion.complete(null);
+        else completion.completeExceptionally(failure);
+    }
+}
@@ -0,0 +1,33 @@
+package com.github.trosenkrantz.sync.util.concurrency;
+
+/**
+ * Statistics of how long tasks in a {@link ConcurrentTaskDriver} wait in queue and how long they run.
+ */
+public class TaskStatistics {
+    private final LatencyHistogram queueWaitTimes = new LatencyHistogram();
+    private final LatencyHistogram runTimes = new LatencyHistogram();
+
+    /**
+     * Gets the times from tasks were queued until they started.
+     * @return histogram of wait times
+     */
+    public LatencyHistogram getQueueWaitTimes() {
+        return queueWaitTimes;
+    }
+
+    /**
+     * Gets the times from tasks started until they were done.
+     * @return histogram of run times
+     */
+    public LatencyHistogram getRunTimes() {
+        return runTimes;
+    }
+
+    /**
+     * Removes all recorded values.
+     */
+    public void reset() {
+        queueWaitTimes.reset();
+        runTimes.reset();
+    }
+}
@@ -0,0 +1,206 @@
+package com.github.trosenkrantz.sync.util.concurrency;
+
+import com.github.trosenkrantz.sync.util.runnable.SingleRunnable;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.LongConsumer;
+
+/**
+ * Subscriber feeding a {@link ConcurrentTaskDriver} from a stream of tasks, pulling tasks only as the driver has room for them.
+ * <p>
+ * This follows the subscriber side of the Reactive Streams protocol with Java 8 types, so any publisher fits with a thin shim:
+ * <pre>{@code
+ * public void onSubscribe(Subscription subscription) {
+ *     taskStreamSubscriber.onSubscribe(subscription::request, subscription::cancel);
+ * }
+ * }</pre>
+ * On Java 9 or newer, {@code FlowTaskSubscriber} of the sync-util-flow artifact is such a shim for {@code java.util.concurrent.Flow}.
+ * <p>
+ * This requests as many tasks as the driver has free slots under its max number of running tasks, plus a prefetch window, minus tasks already queued or requested.
+ * The queue of the driver therefore holds at most the prefetch window, also counting tasks queued by others.
+ * When tasks are done, this requests more.
+ * Without a limit to the number of running tasks, up to the prefetch window of tasks are requested at a time.
+ */
+public class TaskStreamSubscriber {
+    private final ConcurrentTaskDriver driver;
+    private final int prefetch;
+    private final ConcurrentTasksListener listener = (queued, running, finished) -> requestMore(queued, running);
+    private final CompletableFuture<Void> completion = new CompletableFuture<>();
+    private final ReentrantLock lock = new ReentrantLock();
+
+    private LongConsumer request; // Null until subscribed
+    private Runnable cancelSubscription;
+    private long outstanding = 0; // Requested, but not yet received
+    private int tasksNotDone = 0;
+    private boolean streamDone = false;
+    private boolean cancelled = false;
+
+    /**
+     * Constructs this.
+     * @param driver   driver to queue tasks to
+     * @param prefetch number of tasks to keep queued or requested beyond the free slots, at least 1
+     * @throws IllegalArgumentException if prefetch is less than 1
+     */
+    public TaskStreamSubscriber(final ConcurrentTaskDriver driver, final int prefetch) throws IllegalArgumentException {
+        if (prefetch < 1) throw new IllegalArgumentException("Prefetch must be at least 1, but was " + prefetch + ".");
+
+        this.driver = driver;
+        this.prefetch = prefetch;
+    }
+
+    /**
+     * Starts receiving tasks from a stream.
+     * A stream subscribed after the first is cancelled right away.
+     * @param request            requests a number of tasks from the stream
+     * @param cancelSubscription cancels the subscription of the stream
+     */
+    public void onSubscribe(final LongConsumer request, final Runnable cancelSubscription) {
+        lock.lock();
+        try {
+            if (this.request != null || cancelled) {
+                cancelSubscription.run();
+                return;
+            }
+            this.request = request;
+            this.cancelSubscription = cancelSubscription;
+        } finally {
+            lock.unlock();
+        }
+
+        driver.addListener(listener);
+        requestMore(driver.getNumberOfQueuedTasks(), driver.getNumberOfRunningTasks());
+    }
+
+    /**
+     * Queues a task received from the stream.
+     * If the driver rejects the task, the subscription is cancelled, and the completion fails with the rejection.
+     * @param task task received
+     */
+    public void onNext(final AsynchronousTask task) {
+        lock.lock();
+        try {
+            if (cancelled) return;
+
+            outstanding--;
+            tasksNotDone++;
+        } finally {
+            lock.unlock();
+        }
+
+        try {
+            driver.queue(onDone -> task.run(new SingleRunnable(() -> {
+                try {
+                    onDone.run();
+                } finally {
+                    onTaskDone();
+                }
+            })));
+        } catch (final RejectedExecutionException e) {
+            cancel();
+            completion.completeExceptionally(e);
+        }
+    }
+
+    /**
+     * Stops receiving tasks, as the stream failed.
+     * Tasks already queued still run.
+     * @param error error of the stream
+     */
+    public void onError(final Throwable error) {
+        stop();
+        completion.completeExceptionally(error);
+    }
+
+    /**
+     * Stops receiving tasks, as the stream completed.
+     */
+    public void onComplete() {
+        boolean isDone;
+        lock.lock();
+        try {
+            streamDone = true;
+            isDone = tasksNotDone == 0;
+        } finally {
+            lock.unlock();
+        }
+
+        driver.removeListener(listener);
+        if (isDone) completion.complete(null);
+    }
+
+    /**
+     * Cancels the subscription of the stream.
+     * Tasks already queued still run.
+     */
+    public void cancel() {
+        Runnable cancelSubscriptionLocal = stop();
+        if (cancelSubscriptionLocal != null) cancelSubscriptionLocal.run();
+        completion.cancel(false);
+    }
+
+    /**
+     * Gets a future completed when the stream has completed and all its tasks are done,
+     * or completed exceptionally if the stream fails, and cancelled if this is cancelled.
+     * @return the future
+     */
+    public CompletableFuture<Void> getCompletion() {
+        return completion;
+    }
+
+    /**
+     * Stops requesting tasks.
+     * @return the cancellation of the subscription, or null if not subscribed or already stopped
+     */
+    private Runnable stop() {
+        Runnable cancelSubscriptionLocal;
+        lock.lock();
+        try {
+            if (cancelled) return null;
+
+            cancelled = true;
+            cancelSubscriptionLocal = cancelSubscription;
+        } finally {
+            lock.unlock();
+        }
+
+        driver.removeListener(listener);
+        return cancelSubscriptionLocal;
+    }
+
+    private void onTaskDone() {
+        boolean isDone;
+        lock.lock();
+        try {
+            tasksNotDone--;
+            isDone = streamDone && tasksNotDone == 0;
+        } finally {
+            lock.unlock();
+        }
+
+        if (isDone) completion.complete(null);
+    }
+
+    private void requestMore(final int queued, final int running) {
+        Limit maxRunningTasks = driver.getMaxRunningTasks();
+        long freeSlots = maxRunningTasks.hasLimit() ? Math.max(0, maxRunningTasks.get() - running) : 0;
+
+        long wanted;
+        LongConsumer requestLocal;
+        lock.lock();
+        try {
+            if (request == null || cancelled || streamDone) return;
+
+            wanted = freeSlots + prefetch - queued - outstanding;
+            if (wanted <= 0) return;
+
+            outstanding += wanted;
+            requestLocal = request;
+        } finally {
+            lock.unlock();
+        }
+
+        requestLocal.accept(wanted); // Outside the lock, as the stream may deliver tasks right away
+    }
+}
@@ -0,0 +1,259 @@
+package com.github.trosenkrantz.sync.util.concurrency;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A fixed-size ring buffer of the lifecycle events of tasks in a {@link ConcurrentTaskDriver}, for debugging with a timeline of each task.
+ * Enable it by {@link ConcurrentTaskDriver#setTraceRecorder(TaskTraceRecorder)}, and export it by {@link #exportChromeTrace(Appendable)}.
+ * <p>
+ * Each event holds the id of the task, its priority, the thread and {@link System#nanoTime()}.
+ * Recording is lock-free and allocates nothing: A thread claims a slot by incrementing a sequence, and writes the event in place.
+ * When full, the oldest events are overwritten.
+ * Exporting skips events being written, and events overwritten while reading them.
+ * A writer lapped by the whole buffer while writing an event may garble that event.
+ */
+public class TaskTraceRecorder {
+    static final int QUEUED = 1;
+    static final int STARTED = 2;
+    static final int FINISHED = 3;
+    static final int REMOVED = 4; // Left the queue without starting, by cancellation, dropping or clearing
+    static final int DEPENDENCIES_WAITING = 5;
+    static final int DEPENDENCIES_FINISHED = 6;
+
+    // Each slot is a run of longs in the array: The sequence number of the event in it, or -1 while written, and the fields of the event
+    private static final int SEQUENCE = 0;
+    private static final int NANOS = 1;
+    private static final int TASK_ID = 2;
+    private static final int THREAD_ID = 3;
+    private static final int TYPE_AND_PRIORITY = 4; // Type, a flag for prioritised, and priority, packed
+    private static final int STRIDE = 5;
+
+    private final int mask;
+    private final AtomicLongArray slots;
+    private final AtomicLong sequence = new AtomicLong();
+    private static final AtomicLong NEXT_TASK_ID = new AtomicLong(1); // Shared, so ids stay unique when a driver changes recorder
+
+    /**
+     * Constructs this.
+     * @param capacity max number of events held, rounded up to a power of two
+     * @throws IllegalArgumentException if capacity is non-positive or too large
+     */
+    public TaskTraceRecorder(final int capacity) throws IllegalArgumentException {
+        if (capacity < 1 || capacity > (1 << 30) / STRIDE) throw new IllegalArgumentException("Capacity must be between 1 and " + (1 << 30) / STRIDE + ", but was " + capacity + ".");
+
+        int size = Integer.highestOneBit(capacity - 1) << 1;
+        if (capacity == 1) size = 1;
+        this.mask = size - 1;
+        this.slots = new AtomicLongArray(size * STRIDE);
+        for (int i = 0; i < size; i++) slots.set(i * STRIDE + SEQUENCE, -1);
+    }
+
+    /**
+     * Gets the max number of events held.
+     * @return the capacity
+     */
+    public int getCapacity() {
+        return mask + 1;
+    }
+
+    /**
+     * Gets the number of events recorded since constructed, including events since overwritten.
+     * @return the number of events
+     */
+    public long getNumberOfRecordedEvents() {
+        return sequence.get();
+    }
+
+    /**
+     * Gets a new id to record the events of a task by.
+     * @return the id, which is positive
+     */
+    static long newTaskId() {
+        return NEXT_TASK_ID.getAndIncrement();
+    }
+
+    /**
+     * Records an event, overwriting the oldest event if full.
+     * @param type        type of event, one of the constants of this
+     * @param taskId      id of the task, from {@link #newTaskId()}
+     * @param prioritised true if the task is queued with a priority
+     * @param priority    priority of the task, or the number of dependencies for dependency events
+     */
+    void record(final int type, final long taskId, final boolean prioritised, final int priority) {
+        long nanos = System.nanoTime();
+        long index = sequence.getAndIncrement();
+        int base = (int) (index & mask) * STRIDE;
+
+        // Ordered writes, so a reader seeing the final sequence number also sees the fields
+        slots.lazySet(base + SEQUENCE, -1);
+        slots.lazySet(base + NANOS, nanos);
+        slots.lazySet(base + TASK_ID, taskId);
+        slots.lazySet(base + THREAD_ID, Thread.currentThread().getId());
+        slots.lazySet(base + TYPE_AND_PRIORITY, ((long) type << 33) | (prioritised ? 1L << 32 : 0) | (priority & 0xFFFFFFFFL));
+        slots.lazySet(base + SEQUENCE, index);
+    }
+
+    /**
+     * Exports the events held in the Chrome Trace Event format, as read by trace viewers such as Perfetto and chrome://tracing.
+     * <p>
+     * The trace shows the time each task waits in the queue and waits for dependencies as asynchronous spans,
+     * each running task as a span on one of a number of slot tracks, one track per task running at the same time,
+     * and counters of queued and running tasks.
+     * Times are in microseconds from the first event held.
+     * Tasks started before the first event held are not shown, and tasks not finished by the last event are shown running until then.
+     * @param out where to write the JSON
+     * @throws IOException if writing fails
+     */
+    public void exportChromeTrace(final Appendable out) throws IOException {
+        List<Event> events = snapshot();
+        out.append("{\"displayTimeUnit\":\"ns\",\"traceEvents\":[\n");
+        out.append("{\"name\":\"process_name\",\"ph\":\"M\",\"pid\":1,\"args\":{\"name\":\"ConcurrentTaskDriver\"}}");
+        if (events.isEmpty()) {
+            out.append("\n]}\n");
+            return;
+        }
+
+        long originNanos = events.get(0).nanos;
+        long lastNanos = events.get(events.size() - 1).nanos;
+        Map<Long, Event> queuedEvents = new HashMap<>();
+        Map<Long, Event> startedEvents = new HashMap<>();
+        Map<Long, Integer> slotsOfTasks = new HashMap<>();
+        PriorityQueue<Integer> freeSlots = new PriorityQueue<>();
+        int numberOfSlots = 0;
+        int queued = 0;
+        int running = 0;
+
+        for (Event event : events) {
+            double ts = toMicros(event.nanos - originNanos);
+            switch (event.type) {
+                case QUEUED:
+                    queuedEvents.put(event.taskId, event);
+                    queued++;
+                    out.append(",\n{\"name\":\"Queued\",\"cat\":\"queue\",\"ph\":\"b\",\"id\":").append(Long.toString(event.taskId))
+                            .append(",\"ts\":").append(Double.toString(ts)).append(",\"pid\":1,\"tid\":0,\"args\":{\"task\":").append(Long.toString(event.taskId))
+                            .append(",\"priority\":").append(event.prioritised ? Integer.toString(event.priority) : "null").append(",\"thread\":").append(Long.toString(event.threadId)).append("}}");
+                    break;
+                case STARTED:
+                case REMOVED:
+                    if (queuedEvents.remove(event.taskId) != null) {
+                        queued--;
+                        out.append(",\n{\"name\":\"Queued\",\"cat\":\"queue\",\"ph\":\"e\",\"id\":").append(Long.toString(event.taskId))
+                                .append(",\"ts\":").append(Double.toString(ts)).append(",\"pid\":1,\"tid\":0,\"args\":{\"removed\":").append(Boolean.toString(event.type == REMOVED)).append("}}");
+                    }
+                    if (event.type == STARTED) {
+                        Integer slot = freeSlots.poll();
+                        if (slot == null) slot = ++numberOfSlots;
+                        slotsOfTasks.put(event.taskId, slot);
+                        startedEvents.put(event.taskId, event);
+                        running++;
+                    }
+                    break;
+                case FINISHED:
+                    Event started = startedEvents.remove(event.taskId);
+                    if (started == null) break; // Started before the first event held
+
+                    int slot = slotsOfTasks.remove(event.taskId);
+                    freeSlots.add(slot);
+                    running--;
+                    appendRun(out, started, slot, originNanos, event.nanos, event.threadId);
+                    break;
+                case DEPENDENCIES_WAITING:
+                case DEPENDENCIES_FINISHED:
+                    out.append(",\n{\"name\":\"Waiting for dependencies\",\"cat\":\"dependencies\",\"ph\":\"").append(event.type == DEPENDENCIES_WAITING ? "b" : "e")
+                            .append("\",\"id\":").append(Long.toString(event.taskId)).append(",\"ts\":").append(Double.toString(ts))
+                            .append(",\"pid\":1,\"tid\":0,\"args\":{\"dependencies\":").append(Integer.toString(event.priority)).append("}}");
+                    break;
+                default:
+                    break;
+            }
+            out.append(",\n{\"name\":\"Tasks\",\"ph\":\"C\",\"ts\":").append(Double.toString(ts)).append(",\"pid\":1,\"args\":{\"queued\":")
+                    .append(Integer.toString(Math.max(0, queued))).append(",\"running\":").append(Integer.toString(Math.max(0, running))).append("}}");
+        }
+
+        for (Event started : startedEvents.values()) { // Not finished within the events held
+            appendRun(out, started, slotsOfTasks.get(started.taskId), originNanos, lastNanos, -1);
+        }
+        for (int slot = 1; slot <= numberOfSlots; slot++) {
+            out.append(",\n{\"name\":\"thread_name\",\"ph\":\"M\",\"pid\":1,\"tid\":").append(Integer.toString(slot)).append(",\"args\":{\"name\":\"Slot ").append(Integer.toString(slot)).append("\"}}");
+        }
+        out.append("\n]}\n");
+    }
+
+    /**
+     * Exports the events held in the Chrome Trace Event format.
+     * See {@link #exportChromeTrace(Appendable)}.
+     * @return the JSON
+     */
+    public String toChromeTrace() {
+        StringBuilder builder = new StringBuilder();
+        try {
+            exportChromeTrace(builder);
+        } catch (final IOException e) {
+            throw new IllegalStateException("StringBuilder does not throw", e);
+        }
+        return builder.toString();
+    }
+
+    private static void appendRun(final Appendable out, final Event started, final int slot, final long originNanos, final long endNanos, final long finishThreadId) throws IOException {
+        out.append(",\n{\"name\":\"Task ").append(Long.toString(started.taskId)).append("\",\"cat\":\"run\",\"ph\":\"X\",\"ts\":").append(Double.toString(toMicros(started.nanos - originNanos)))
+                .append(",\"dur\":").append(Double.toString(toMicros(endNanos - started.nanos))).append(",\"pid\":1,\"tid\":").append(Integer.toString(slot))
+                .append(",\"args\":{\"task\":").append(Long.toString(started.taskId)).append(",\"priority\":").append(started.prioritised ? Integer.toString(started.priority) : "null")
+                .append(",\"startThread\":").append(Long.toString(started.threadId))
+                .append(",\"finishThread\":").append(finishThreadId < 0 ? "null" : Long.toString(finishThreadId))
+                .append(",\"finished\":").append(Boolean.toString(finishThreadId >= 0)).append("}}");
+    }
+
+    private static double toMicros(final long nanos) {
+        return nanos / 1000.0;
+    }
+
+    /**
+     * Reads the events held, skipping slots being written or overwritten while read.
+     * @return the events, ordered by time
+     */
+    private List<Event> snapshot() {
+        long end = sequence.get();
+        long start = Math.max(0, end - (mask + 1));
+        List<Event> events = new ArrayList<>((int) (end - start));
+        for (long index = start; index < end; index++) {
+            int base = (int) (index & mask) * STRIDE;
+            if (slots.get(base + SEQUENCE) != index) continue;
+
+            long nanos = slots.get(base + NANOS);
+            long taskId = slots.get(base + TASK_ID);
+            long threadId = slots.get(base + THREAD_ID);
+            long typeAndPriority = slots.get(base + TYPE_AND_PRIORITY);
+            if (slots.get(base + SEQUENCE) != index) continue; // Overwritten while read
+
+            events.add(new Event(nanos, taskId, threadId, (int) (typeAndPriority >>> 33), (typeAndPriority & 1L << 32) != 0, (int) typeAndPriority));
+        }
+        events.sort(Comparator.comparingLong(event -> event.nanos)); // Threads may claim slots in another order than they read the time
+        return events;
+    }
+
+    private static class Event {
+        private final long nanos;
+        private final long taskId;
+        private final long threadId;
+        private final int type;
+        private final boolean prioritised;
+        private final int priority;
+
+        private Event(final long nanos, final long taskId, final long threadId, final int type, final boolean prioritised, final int priority) {
+            this.nanos = nanos;
+            this.taskId = taskId;
+            this.threadId = threadId;
+            this.type = type;
+            this.prioritised = prioritised;
+            this.priority = priority;
+        }
+    }
+}
@@ -0,0 +1,44 @@
+package com.github.trosenkrantz.sync.util.concurrency;
+
+import java.util.concurrent.ExecutorService;
+
+/**
+ * Access to virtual threads, available from Java 21.
+ * <p>
+ * This is the implementation for older Java versions, where virtual threads are unsupported.
+ * The JAR is multi-release, and holds another implementation for Java 21 and newer.
+ */
+final class VirtualThreads {
+    private VirtualThreads() {
+    }
+
+    /**
+     * Gets if virtual threads are supported by the running Java version.
+     * @return true if and only if supported
+     */
+    static boolean isSupported() {
+        return false;
+    }
+
+    /**
+     * Starts a new virtual thread.
+     * @param task task for the thread to run
+     * @throws UnsupportedOperationException if virtual threads are unsupported
+     */
+    static void start(final Runnable task) throws UnsupportedOperationException {
+        throw unsupported();
+    }
+
+    /**
+     * Gets an executor service starting a new virtual thread for each task, shared by all users of this library.
+     * @return the executor service
+     * @throws UnsupportedOperationException if virtual threads are unsupported
+     */
+    static ExecutorService getExecutor() throws UnsupportedOperationException {
+        throw unsupported();
+    }
+
+    private static UnsupportedOperationException unsupported() {
+        return new UnsupportedOperationException("Virtual threads require Java 21 or newer, but running " + System.getProperty("java.version") + ".");
+    }
+}
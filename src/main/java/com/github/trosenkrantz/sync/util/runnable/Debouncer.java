@@ -0,0 +1,185 @@
+package com.github.trosenkrantz.sync.util.runnable;
+
+import com.github.trosenkrantz.sync.util.timer.HashedWheelTimer;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Collapses bursts of triggers into a single run of an action, once the triggers have been quiet for a delay.
+ * Unlike {@link SingleRunnableManager}, this is not one-shot: each burst of triggers gives a run, so one instance serves all bursts.
+ * <p>
+ * The action can run on the leading edge of a burst, on the first trigger, and on the trailing edge, after the delay without triggers.
+ * With both edges, the trailing run only happens if triggered again after the leading run.
+ * A max wait bounds how long a trigger may wait for the trailing run while triggers keep coming.
+ * <p>
+ * Triggering is lock-free, counting the trigger and joining or starting a burst by one compare-and-set of a state word.
+ * As a burst ends by a compare-and-set of the same word, each trigger belongs to exactly one burst,
+ * so a trigger racing the end of a burst is neither missed nor run for twice.
+ * Bursts are timed by a {@link HashedWheelTimer}, which runs trailing runs on its thread, so the action should be short or hand off its work.
+ * Leading runs happen on the thread triggering.
+ */
+public class Debouncer {
+    private static final long EPOCH_MASK = 0xFFFFFFFFL;
+    private static final long ONE_TRIGGER = 1L << 32;
+
+    /**
+     * When in a burst of triggers to run the action.
+     */
+    public enum Edge {
+        /**
+         * Run on the first trigger of a burst.
+         */
+        LEADING,
+
+        /**
+         * Run once the triggers have been quiet for the delay.
+         */
+        TRAILING,
+
+        /**
+         * Run on the first trigger of a burst, and once the triggers have been quiet for the delay, if triggered again.
+         */
+        BOTH
+    }
+
+    private final Runnable action;
+    private final long delayNanos;
+    private final long maxWaitNanos; // 0 means no max wait
+    private final boolean leading;
+    private final boolean trailing;
+    private final HashedWheelTimer timer;
+
+    private final AtomicLong state = new AtomicLong(); // Number of triggers ever in the high half, wrapping, and the epoch in the low half, odd while a burst is pending
+    private volatile long lastTriggerNanos;
+    private volatile long burstStartNanos; // Start of the burst, or of the wait since the last max wait run
+    private volatile long triggersWhenRun; // Number of triggers, when last run in the current burst
+
+    /**
+     * Constructs this, running the action on the trailing edge of bursts, timed by the shared timer.
+     * @param action action to run
+     * @param delay  duration without triggers ending a burst
+     * @param unit   unit of delay
+     * @throws IllegalArgumentException if delay is non-positive
+     */
+    public Debouncer(final Runnable action, final long delay, final TimeUnit unit) throws IllegalArgumentException {
+        this(action, delay, 0, unit, Edge.TRAILING, HashedWheelTimer.getShared());
+    }
+
+    /**
+     * Constructs this.
+     * @param action  action to run
+     * @param delay   duration without triggers ending a burst
+     * @param maxWait max duration from a trigger to a trailing run, or 0 for no max wait
+     * @param unit    unit of delay and max wait
+     * @param edge    when in a burst to run
+     * @param timer   timer timing bursts
+     * @throws IllegalArgumentException if delay is non-positive, max wait is negative, or max wait is given without running on the trailing edge
+     */
+    public Debouncer(final Runnable action, final long delay, final long maxWait, final TimeUnit unit, final Edge edge, final HashedWheelTimer timer) throws IllegalArgumentException {
+        if (delay <= 0) throw new IllegalArgumentException("Delay must be positive, but was " + delay + " " + unit + ".");
+        if (maxWait < 0) throw new IllegalArgumentException("Max wait must be non-negative, but was " + maxWait + " " + unit + ".");
+        if (maxWait > 0 && edge == Edge.LEADING) throw new IllegalArgumentException("Max wait requires running on the trailing edge.");
+
+        this.action = action;
+        this.delayNanos = unit.toNanos(delay);
+        this.maxWaitNanos = unit.toNanos(maxWait);
+        this.leading = edge != Edge.TRAILING;
+        this.trailing = edge != Edge.LEADING;
+        this.timer = timer;
+    }
+
+    /**
+     * Triggers the action, starting a burst if none is pending.
+     */
+    public void trigger() {
+        long now = System.nanoTime();
+        lastTriggerNanos = now; // Before counting the trigger, so a burst ending after it sees it as recent
+
+        long current;
+        long next;
+        do {
+            current = state.get();
+            next = current + ONE_TRIGGER;
+            if (!isPending(current)) next = withNextEpoch(next);
+        } while (!state.compareAndSet(current, next));
+        if (isPending(current)) return; // Part of the pending burst
+
+        long triggerCount = getTriggerCount(next);
+        burstStartNanos = now;
+        triggersWhenRun = leading ? triggerCount : triggerCount - 1;
+        schedule(next & EPOCH_MASK, delayNanos);
+        if (leading) action.run();
+    }
+
+    /**
+     * Ends the pending burst, if any, without its trailing run.
+     * The next trigger starts a new burst.
+     */
+    public void cancel() {
+        long current;
+        do {
+            current = state.get();
+            if (!isPending(current)) return;
+        } while (!state.compareAndSet(current, withNextEpoch(current))); // The scheduled check sees a new epoch and does nothing
+    }
+
+    /**
+     * Gets if a burst is pending.
+     * @return true if and only if triggered, and the burst has not ended
+     */
+    public boolean isPending() {
+        return isPending(state.get());
+    }
+
+    private static boolean isPending(final long state) {
+        return (state & 1) != 0;
+    }
+
+    private static long getTriggerCount(final long state) {
+        return state >>> 32;
+    }
+
+    private static long withNextEpoch(final long state) {
+        return (state & ~EPOCH_MASK) | ((state + 1) & EPOCH_MASK); // Wraps within the low half, leaving the trigger count as is
+    }
+
+    private void schedule(final long burstEpoch, final long delayNanos) {
+        timer.schedule(() -> onTimeout(burstEpoch), delayNanos, TimeUnit.NANOSECONDS);
+    }
+
+    private void onTimeout(final long burstEpoch) {
+        long current;
+        long now;
+        long quietNanos;
+        while (true) {
+            current = state.get(); // Before reading the time of the last trigger, which is written before counting it
+            if ((current & EPOCH_MASK) != burstEpoch) return; // Cancelled
+
+            now = System.nanoTime();
+            quietNanos = now - lastTriggerNanos;
+            if (quietNanos < delayNanos) break;
+
+            // Decide from the triggers of this burst, read before ending it, as a trigger afterwards starts a new burst and overwrites triggersWhenRun
+            boolean mustRun = trailing && getTriggerCount(current) != triggersWhenRun;
+            if (!state.compareAndSet(current, withNextEpoch(current))) continue; // Triggered or cancelled meanwhile, so check again
+            if (mustRun) action.run();
+            return;
+        }
+
+        long waitedNanos = now - burstStartNanos;
+        if (maxWaitNanos == 0 || waitedNanos < maxWaitNanos) {
+            long untilMaxWaitNanos = maxWaitNanos == 0 ? Long.MAX_VALUE : maxWaitNanos - waitedNanos;
+            schedule(burstEpoch, Math.min(delayNanos - quietNanos, untilMaxWaitNanos));
+            return;
+        }
+
+        // Max wait passed while triggers keep coming, so run without ending the burst
+        long triggerCount = getTriggerCount(current);
+        boolean mustRun = triggerCount != triggersWhenRun;
+        burstStartNanos = now;
+        triggersWhenRun = triggerCount;
+        schedule(burstEpoch, Math.min(delayNanos - quietNanos, maxWaitNanos));
+        if (mustRun) action.run();
+    }
+}
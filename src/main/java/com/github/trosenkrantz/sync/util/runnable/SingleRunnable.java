@@ -3,9 +3,11 @@ package com.github.trosenkrantz.sync.util.runnable;
 /**
  * An object that only runs a runnable a single time.
  * If calling {@link #run()} more than once, the subsequent calls does nothing.
+ * <p>
+ * Subclasses may override {@link #runOnce()} instead of giving a runnable, saving an object per instance.
  */
 public class SingleRunnable extends SingleRunnableManager implements Runnable {
-    private final Runnable runnable;
+    private final Runnable runnable; // Null if runOnce is overridden
 
     /**
      * Constructs this.
@@ -15,8 +17,29 @@ public class SingleRunnable extends SingleRunnableManager implements Runnable {
         this.runnable = runnable;
     }
 
+    /**
+     * Constructs this for a subclass overriding {@link #runOnce()}.
+     */
+    protected SingleRunnable() {
+        this(null);
+    }
+
     @Override
     public void run() {
         run(runnable);
     }
+
+    /**
+     * Runs what this runs only once.
+     * By default, runs the runnable given when constructed.
+     */
+    protected void runOnce() {
+        runnable.run();
+    }
+
+    @Override
+    void execute(final Runnable runnable) {
+        if (runnable == this.runnable) runOnce(); // Also when both are null, as run() passes the field
+        else runnable.run();
+    }
 }
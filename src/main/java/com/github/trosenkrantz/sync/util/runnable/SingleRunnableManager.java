@@ -1,5 +1,7 @@
 package com.github.trosenkrantz.sync.util.runnable;
 
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+
 /**
  * A handler to only run once.
  * You specify at run-time what {@link #run(Runnable)} to run.
@@ -7,10 +9,43 @@ package com.github.trosenkrantz.sync.util.runnable;
  * You can suspend this.
  * If you call {@link #run(Runnable)} while suspended, it will be scheduled to run once {@link #allow()} is called.
  * Only the first scheduled {@link Runnable} is run.
+ * <p>
+ * This is lock-free, changing its state by compare-and-set, so a call on an uncontended instance costs a single compare-and-set,
+ * and no call waits for another thread.
  */
 public class SingleRunnableManager {
-    private volatile RunnableState state;
-    private Runnable scheduledRunnable;
+    private static final AtomicIntegerFieldUpdater<SingleRunnableManager> STATE = AtomicIntegerFieldUpdater.newUpdater(SingleRunnableManager.class, "state");
+
+    private static final int IDLE = 0;
+
+    /**
+     * Running has not been attempted.
+     * If trying to run, we will schedule it.
+     */
+    private static final int SUSPENDED = 1;
+
+    /**
+     * Running has been attempted while suspended, and the runnable is being stored.
+     * The thread storing it finishes scheduling, or runs it if allowed meanwhile.
+     */
+    private static final int SCHEDULING = 2;
+
+    /**
+     * Allowed while scheduling.
+     * The thread scheduling runs the runnable.
+     */
+    private static final int SCHEDULING_ALLOWED = 3;
+
+    /**
+     * Running has been attempted, but is currently suspended.
+     * When allowed, we will run.
+     */
+    private static final int SCHEDULED = 4;
+
+    private static final int RUN = 5;
+
+    private volatile int state;
+    private Runnable scheduledRunnable; // Written before, and read after, volatile accesses of the state
 
     /**
      * Constructs this and sets it to not suspended.
@@ -24,7 +59,7 @@ public class SingleRunnableManager {
      * @param allowed true if allowed, false if suspended
      */
     public SingleRunnableManager(final boolean allowed) {
-        state = allowed ? RunnableState.IDLE : RunnableState.SUSPENDED;
+        state = allowed ? IDLE : SUSPENDED;
     }
 
     /**
@@ -32,25 +67,33 @@ public class SingleRunnableManager {
      * Otherwise, this method does nothing.
      * @param runnable the runnable
      */
-    public synchronized void run(final Runnable runnable) {
-        synchronized (this) {
-            switch (state) {
+    public void run(final Runnable runnable) {
+        while (true) {
+            int current = state;
+            switch (current) {
                 case IDLE:
-                    state = RunnableState.RUN;
-                    break; // Break in order to run
+                    if (!STATE.compareAndSet(this, IDLE, RUN)) continue;
+                    execute(runnable);
+                    return;
                 case SUSPENDED:
+                    if (!STATE.compareAndSet(this, SUSPENDED, SCHEDULING)) continue;
                     scheduledRunnable = runnable;
-                    state = RunnableState.SCHEDULED;
+                    if (STATE.compareAndSet(this, SCHEDULING, SCHEDULED)) return;
+
+                    // Allowed while scheduling, so we run it
+                    scheduledRunnable = null;
+                    state = RUN;
+                    execute(runnable);
                     return;
+                case SCHEDULING:
+                case SCHEDULING_ALLOWED:
                 case SCHEDULED:
                 case RUN:
                     return;
                 default:
-                    throw new IllegalStateException("Unexpected state " + state);
+                    throw new IllegalStateException("Unexpected state " + current);
             }
         }
-
-        runnable.run();
     }
 
     /**
@@ -58,42 +101,61 @@ public class SingleRunnableManager {
      * If a {@link Runnable} was scheduled, runs it.
      */
     public void allow() {
-        synchronized (this) {
-            switch (state) {
+        while (true) {
+            int current = state;
+            switch (current) {
                 case IDLE:
+                case SCHEDULING_ALLOWED:
                 case RUN:
                     return;
                 case SUSPENDED:
-                    state = RunnableState.IDLE;
-                    return;
+                    if (STATE.compareAndSet(this, SUSPENDED, IDLE)) return;
+                    continue;
+                case SCHEDULING:
+                    if (STATE.compareAndSet(this, SCHEDULING, SCHEDULING_ALLOWED)) return; // The scheduling thread runs it
+                    continue;
                 case SCHEDULED:
-                    state = RunnableState.RUN;
-                    break; // Break in order to run
+                    if (!STATE.compareAndSet(this, SCHEDULED, RUN)) continue;
+                    Runnable runnable = scheduledRunnable;
+                    scheduledRunnable = null;
+                    execute(runnable);
+                    return;
                 default:
-                    throw new IllegalStateException("Unexpected state " + state);
+                    throw new IllegalStateException("Unexpected state " + current);
             }
         }
-
-        scheduledRunnable.run();
     }
 
     /**
      * Suspends this, not allowing {@link Runnable}'s to run until {@link #allow()} is called.
      */
-    public synchronized void suspend() {
-        switch (state) {
-            case IDLE:
-                state = RunnableState.SUSPENDED;
-                break;
-            case SUSPENDED:
-            case RUN:
-            case SCHEDULED:
-                break;
-            default:
-                throw new IllegalStateException("Unexpected state " + state);
+    public void suspend() {
+        while (true) {
+            int current = state;
+            switch (current) {
+                case IDLE:
+                    if (STATE.compareAndSet(this, IDLE, SUSPENDED)) return;
+                    continue;
+                case SUSPENDED:
+                case SCHEDULING:
+                case SCHEDULING_ALLOWED:
+                case SCHEDULED:
+                case RUN:
+                    return;
+                default:
+                    throw new IllegalStateException("Unexpected state " + current);
+            }
         }
     }
 
+    /**
+     * Runs a runnable now allowed to run.
+     * @param runnable runnable given to {@link #run(Runnable)}
+     */
+    void execute(final Runnable runnable) {
+        runnable.run();
+    }
+
     /**
      * Wraps a runnable in this.
      * When the return value of this method is run, <code>runnable</code> is only run, if this has not already been run.
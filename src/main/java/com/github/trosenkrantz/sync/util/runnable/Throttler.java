@@ -0,0 +1,103 @@
+package com.github.trosenkrantz.sync.util.runnable;
+
+import com.github.trosenkrantz.sync.util.timer.HashedWheelTimer;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs an action at most once per interval, however often triggered.
+ * <p>
+ * A trigger while no interval is open runs the action right away, on the thread triggering, and opens an interval.
+ * Triggers within the interval are collapsed into a single run when it closes, which opens the next interval.
+ * An interval without triggers closes without running.
+ * <p>
+ * Triggering is lock-free, and while an interval is open and already triggered, costs a single volatile read.
+ * Intervals are timed by a {@link HashedWheelTimer}, which runs the collapsed runs on its thread, so the action should be short or hand off its work.
+ */
+public class Throttler {
+    private static final int IDLE = 0;
+    private static final int OPEN = 1; // Interval open, not triggered since the last run
+    private static final int TRIGGERED = 2; // Interval open, run when it closes
+
+    private final Runnable action;
+    private final long intervalNanos;
+    private final HashedWheelTimer timer;
+    private final AtomicInteger state = new AtomicInteger(IDLE);
+
+    /**
+     * Constructs this, timing intervals by the shared timer.
+     * @param action   action to run
+     * @param interval min duration between starts of runs
+     * @param unit     unit of interval
+     * @throws IllegalArgumentException if interval is non-positive
+     */
+    public Throttler(final Runnable action, final long interval, final TimeUnit unit) throws IllegalArgumentException {
+        this(action, interval, unit, HashedWheelTimer.getShared());
+    }
+
+    /**
+     * Constructs this.
+     * @param action   action to run
+     * @param interval min duration between starts of runs
+     * @param unit     unit of interval
+     * @param timer    timer timing intervals
+     * @throws IllegalArgumentException if interval is non-positive
+     */
+    public Throttler(final Runnable action, final long interval, final TimeUnit unit, final HashedWheelTimer timer) throws IllegalArgumentException {
+        if (interval <= 0) throw new IllegalArgumentException("Interval must be positive, but was " + interval + " " + unit + ".");
+
+        this.action = action;
+        this.intervalNanos = unit.toNanos(interval);
+        this.timer = timer;
+    }
+
+    /**
+     * Triggers the action, running it now if no interval is open, or when the open interval closes.
+     */
+    public void trigger() {
+        while (true) {
+            int current = state.get();
+            switch (current) {
+                case IDLE:
+                    if (!state.compareAndSet(IDLE, OPEN)) continue;
+                    runAndOpenInterval();
+                    return;
+                case OPEN:
+                    if (state.compareAndSet(OPEN, TRIGGERED)) return;
+                    continue;
+                default:
+                    return; // Already triggered
+            }
+        }
+    }
+
+    /**
+     * Discards the run pending for when the open interval closes, if any.
+     * The interval stays open.
+     */
+    public void cancel() {
+        state.compareAndSet(TRIGGERED, OPEN);
+    }
+
+    /**
+     * Gets if a run is pending for when the open interval closes.
+     * @return true if and only if triggered within the open interval
+     */
+    public boolean isPending() {
+        return state.get() == TRIGGERED;
+    }
+
+    private void runAndOpenInterval() {
+        timer.schedule(this::onIntervalClosed, intervalNanos, TimeUnit.NANOSECONDS);
+        action.run();
+    }
+
+    private void onIntervalClosed() {
+        while (true) {
+            if (state.compareAndSet(OPEN, IDLE)) return;
+            if (state.compareAndSet(TRIGGERED, OPEN)) break; // Else cancelled meanwhile, so try closing again
+        }
+        runAndOpenInterval();
+    }
+}
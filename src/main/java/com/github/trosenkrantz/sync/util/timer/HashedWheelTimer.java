@@ -0,0 +1,275 @@
+package com.github.trosenkrantz.sync.util.timer;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * A timer for many short-lived timeouts, most of which are cancelled before expiring.
+ * <p>
+ * Time is divided into ticks, and timeouts are placed in a wheel of buckets, one bucket per tick, wrapping around.
+ * Scheduling and cancelling a timeout are O(1), regardless of the number of timeouts.
+ * Timeouts expire on the tick after their deadline, so they may be up to one tick late.
+ * <p>
+ * A single daemon thread runs the wheel and the expired tasks, so tasks should be short.
+ * The thread is started when the first timeout is scheduled, and sleeps without ticking while no timeouts are pending.
+ * Exceptions thrown by tasks are passed to the uncaught exception handler of the thread, and do not stop the timer.
+ */
+public class HashedWheelTimer {
+    private static final int NOT_STARTED = 0;
+    private static final int STARTED = 1;
+    private static final int STOPPED = 2;
+    private static final AtomicIntegerFieldUpdater<Entry> STATE_UPDATER = AtomicIntegerFieldUpdater.newUpdater(Entry.class, "state");
+
+    private final long tickNanos;
+    private final Bucket[] wheel;
+    private final int mask;
+    private final long startNanos = System.nanoTime(); // Deadlines are relative to this, to avoid overflow issues of System.nanoTime()
+    private final Queue<Entry> scheduledEntries = new ConcurrentLinkedQueue<>(); // Waiting to be placed in the wheel by the worker
+    private final Queue<Entry> cancelledEntries = new ConcurrentLinkedQueue<>(); // Waiting to be removed from the wheel by the worker
+    private final AtomicInteger pendingTimeouts = new AtomicInteger();
+    private final AtomicInteger workerState = new AtomicInteger(NOT_STARTED);
+    private final boolean stoppable;
+    private final Thread worker;
+
+    private long tick = 0; // Only accessed by the worker
+
+    /**
+     * Constructs this.
+     * @param tickDuration  duration of a tick, the precision of timeouts
+     * @param unit          unit of tick duration
+     * @param ticksPerWheel number of buckets in the wheel, rounded up to a power of two
+     * @throws IllegalArgumentException if tick duration or ticks per wheel are non-positive
+     */
+    public HashedWheelTimer(final long tickDuration, final TimeUnit unit, final int ticksPerWheel) throws IllegalArgumentException {
+        this(tickDuration, unit, ticksPerWheel, true);
+    }
+
+    private HashedWheelTimer(final long tickDuration, final TimeUnit unit, final int ticksPerWheel, final boolean stoppable) throws IllegalArgumentException {
+        if (unit.toNanos(tickDuration) < 1) throw new IllegalArgumentException("Tick duration must be positive, but was " + tickDuration + " " + unit + ".");
+        if (ticksPerWheel < 1 || ticksPerWheel > 1 << 30) throw new IllegalArgumentException("Ticks per wheel must be between 1 and 2^30, but was " + ticksPerWheel + ".");
+
+        this.tickNanos = unit.toNanos(tickDuration);
+        int wheelSize = 1;
+        while (wheelSize < ticksPerWheel) wheelSize <<= 1; // A power of two, so the bucket of a tick is found by masking
+        this.wheel = new Bucket[wheelSize];
+        for (int i = 0; i < wheel.length; i++) {
+            wheel[i] = new Bucket();
+        }
+        this.mask = wheel.length - 1;
+        this.stoppable = stoppable;
+        this.worker = new Thread(this::runWorker, "SyncUtil-timer");
+        this.worker.setDaemon(true);
+    }
+
+    /**
+     * Gets the timer shared by all users of this library, with ticks of 10 milliseconds.
+     * It cannot be stopped.
+     * @return the shared timer
+     */
+    public static HashedWheelTimer getShared() {
+        return Holder.SHARED;
+    }
+
+    /**
+     * Schedules a task to run once after a delay.
+     * @param task  task to run
+     * @param delay delay before running
+     * @param unit  unit of delay
+     * @return handle for cancelling the task
+     * @throws IllegalStateException if this is stopped
+     */
+    public Timeout schedule(final Runnable task, final long delay, final TimeUnit unit) throws IllegalStateException {
+        if (workerState.get() == NOT_STARTED && workerState.compareAndSet(NOT_STARTED, STARTED)) worker.start();
+        if (workerState.get() == STOPPED) throw new IllegalStateException("Timer is stopped.");
+
+        long now = System.nanoTime() - startNanos;
+        long delayNanos = Math.max(0, unit.toNanos(delay));
+        Entry entry = new Entry(task, delayNanos > Long.MAX_VALUE - now ? Long.MAX_VALUE : now + delayNanos); // Saturate, so huge delays do not wrap into the past
+        scheduledEntries.add(entry);
+        if (pendingTimeouts.getAndIncrement() == 0) LockSupport.unpark(worker); // Wake up the worker, if sleeping while idle
+        return entry;
+    }
+
+    /**
+     * Gets the number of timeouts scheduled, but neither expired nor cancelled.
+     * @return the number of timeouts pending
+     */
+    public int getNumberOfPendingTimeouts() {
+        return pendingTimeouts.get();
+    }
+
+    /**
+     * Stops the worker thread.
+     * Pending timeouts never expire.
+     * @throws UnsupportedOperationException if this is the shared timer
+     */
+    public void stop() throws UnsupportedOperationException {
+        if (!stoppable) throw new UnsupportedOperationException("The shared timer cannot be stopped.");
+
+        if (workerState.getAndSet(STOPPED) == STARTED) LockSupport.unpark(worker);
+    }
+
+    private void runWorker() {
+        tick = (System.nanoTime() - startNanos) / tickNanos;
+        while (true) {
+            long now = waitForNextTick();
+            if (now < 0) return;
+
+            removeCancelledEntries();
+            placeScheduledEntries();
+            wheel[(int) (tick & mask)].expireEntries(now);
+            tick++;
+        }
+    }
+
+    /**
+     * Sleeps until the end of the current tick.
+     * While no timeouts are pending, sleeps until one is scheduled, skipping the ticks passed meanwhile.
+     * @return time relative to start, or -1 if stopped
+     */
+    private long waitForNextTick() {
+        while (true) {
+            if (workerState.get() == STOPPED) return -1;
+
+            if (pendingTimeouts.get() == 0) {
+                LockSupport.park(this);
+                tick = Math.max(tick, (System.nanoTime() - startNanos) / tickNanos); // The wheel is empty, so skipping ticks is safe
+                continue;
+            }
+
+            long now = System.nanoTime() - startNanos;
+            long sleepNanos = tickNanos * (tick + 1) - now;
+            if (sleepNanos <= 0) return now;
+            LockSupport.parkNanos(this, sleepNanos);
+        }
+    }
+
+    private void removeCancelledEntries() {
+        Entry entry;
+        while ((entry = cancelledEntries.poll()) != null) {
+            if (entry.bucket != null) entry.bucket.remove(entry);
+            pendingTimeouts.decrementAndGet();
+        }
+    }
+
+    private void placeScheduledEntries() {
+        Entry entry;
+        while ((entry = scheduledEntries.poll()) != null) {
+            if (entry.state != Entry.PENDING) continue; // Cancelled before placed
+
+            long expiryTick = Math.max(entry.deadlineNanos / tickNanos, tick); // Never place in a tick passed
+            entry.remainingRounds = (expiryTick - tick) / wheel.length;
+            wheel[(int) (expiryTick & mask)].add(entry);
+        }
+    }
+
+    private static class Holder { // Lazily initialised on first use
+        private static final HashedWheelTimer SHARED = new HashedWheelTimer(10, TimeUnit.MILLISECONDS, 512, false);
+    }
+
+    /**
+     * A doubly linked list of entries expiring on the same tick of the wheel, in some round.
+     * Only accessed by the worker.
+     */
+    private class Bucket {
+        private Entry head;
+        private Entry tail;
+
+        private void add(final Entry entry) {
+            entry.bucket = this;
+            if (head == null) {
+                head = entry;
+            } else {
+                tail.next = entry;
+                entry.previous = tail;
+            }
+            tail = entry;
+        }
+
+        private void remove(final Entry entry) {
+            if (entry.previous != null) entry.previous.next = entry.next;
+            else head = entry.next;
+            if (entry.next != null) entry.next.previous = entry.previous;
+            else tail = entry.previous;
+
+            entry.bucket = null;
+            entry.previous = null;
+            entry.next = null;
+        }
+
+        private void expireEntries(final long now) {
+            Entry entry = head;
+            while (entry != null) {
+                Entry next = entry.next;
+                if (entry.state == Entry.CANCELLED) {
+                    remove(entry); // Counted when taken from the cancelled queue
+                } else if (entry.remainingRounds <= 0 && entry.deadlineNanos <= now) {
+                    remove(entry);
+                    if (entry.expire()) pendingTimeouts.decrementAndGet();
+                } else if (entry.remainingRounds > 0) {
+                    entry.remainingRounds--;
+                }
+                entry = next;
+            }
+        }
+    }
+
+    private class Entry implements Timeout {
+        private static final int PENDING = 0;
+        private static final int CANCELLED = 1;
+        private static final int EXPIRED = 2;
+
+        private final Runnable task;
+        private final long deadlineNanos; // Relative to start
+        volatile int state = PENDING; // Not private, so the field updater of the outer class can access it
+
+        // Only accessed by the worker
+        private long remainingRounds;
+        private Bucket bucket;
+        private Entry previous;
+        private Entry next;
+
+        private Entry(final Runnable task, final long deadlineNanos) {
+            this.task = task;
+            this.deadlineNanos = deadlineNanos;
+        }
+
+        @Override
+        public boolean cancel() {
+            if (!STATE_UPDATER.compareAndSet(this, PENDING, CANCELLED)) return false;
+
+            cancelledEntries.add(this);
+            return true;
+        }
+
+        @Override
+        public boolean isCancelled() {
+            return state == CANCELLED;
+        }
+
+        @Override
+        public boolean isExpired() {
+            return state == EXPIRED;
+        }
+
+        /**
+         * Runs the task, unless cancelled.
+         * @return true if and only if run
+         */
+        private boolean expire() {
+            if (!STATE_UPDATER.compareAndSet(this, PENDING, EXPIRED)) return false;
+
+            try {
+                task.run();
+            } catch (final RuntimeException | Error e) {
+                Thread thread = Thread.currentThread();
+                thread.getUncaughtExceptionHandler().uncaughtException(thread, e);
+            }
+            return true;
+        }
+    }
+}
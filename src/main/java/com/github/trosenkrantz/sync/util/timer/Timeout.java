@@ -0,0 +1,24 @@
+package com.github.trosenkrantz.sync.util.timer;
+
+/**
+ * A handle to a task scheduled by a {@link HashedWheelTimer}.
+ */
+public interface Timeout {
+    /**
+     * Cancels the task, if not already run or cancelled.
+     * @return true if and only if this call prevented the task from running
+     */
+    boolean cancel();
+
+    /**
+     * Gets if the task is cancelled.
+     * @return true if and only if cancelled before running
+     */
+    boolean isCancelled();
+
+    /**
+     * Gets if the task is run or being run.
+     * @return true if and only if the deadline has passed and the task was not cancelled
+     */
+    boolean isExpired();
+}
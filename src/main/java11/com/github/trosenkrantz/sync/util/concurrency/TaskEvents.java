@@ -0,0 +1,226 @@
+package com.github.trosenkrantz.sync.util.concurrency;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+/**
+ * Emits events of the lifecycle of tasks to Java Flight Recorder.
+ * <p>
+ * This version, for Java 11 or newer, emits JFR events.
+ * Each call checks if its event is enabled before creating anything, so disabled events cost a check of a flag.
+ * Durations are in nanoseconds, or {@link Long#MIN_VALUE} if not measured.
+ */
+final class TaskEvents {
+    // Only used to check if enabled, never committed
+    private static final Event STARTED_PROBE = new TaskStarted();
+    private static final Event FINISHED_PROBE = new TaskFinished();
+    private static final Event DEPENDENCIES_PROBE = new DependenciesFinished();
+
+    private TaskEvents() {
+    }
+
+    /**
+     * Gets if any event measuring durations is enabled, so callers know to take timestamps.
+     * @return true if and only if enabled
+     */
+    static boolean isEnabled() {
+        return STARTED_PROBE.isEnabled() || FINISHED_PROBE.isEnabled() || DEPENDENCIES_PROBE.isEnabled();
+    }
+
+    static void taskQueued(final Object driver, final boolean prioritised, final int priority, final int weight) {
+        TaskQueued event = new TaskQueued();
+        if (!event.shouldCommit()) return;
+
+        event.driver = describe(driver);
+        event.prioritised = prioritised;
+        event.priority = priority;
+        event.weight = weight;
+        event.commit();
+    }
+
+    static void taskStarted(final Object driver, final long waitNanos) {
+        TaskStarted event = new TaskStarted();
+        if (!event.shouldCommit()) return;
+
+        event.driver = describe(driver);
+        event.waitTime = waitNanos;
+        event.commit();
+    }
+
+    static void taskFinished(final Object driver, final long waitNanos, final long runNanos, final boolean failed) {
+        TaskFinished event = new TaskFinished();
+        if (!event.shouldCommit()) return;
+
+        event.driver = describe(driver);
+        event.waitTime = waitNanos;
+        event.runTime = runNanos;
+        event.failed = failed;
+        event.commit();
+    }
+
+    static void suspensionChanged(final Object driver, final boolean suspended) {
+        SuspensionChanged event = new SuspensionChanged();
+        if (!event.shouldCommit()) return;
+
+        event.driver = describe(driver);
+        event.suspended = suspended;
+        event.commit();
+    }
+
+    static void limitChanged(final Object driver, final String limitName, final Limit limit) {
+        LimitChanged event = new LimitChanged();
+        if (!event.shouldCommit()) return;
+
+        event.driver = describe(driver);
+        event.limit = limitName;
+        event.value = limit.hasLimit() ? limit.get() : -1;
+        event.adaptive = limit.isAdaptive();
+        event.commit();
+    }
+
+    static void repetitionDone(final Object task, final int repetitions, final boolean lastRepetition) {
+        RepetitionDone event = new RepetitionDone();
+        if (!event.shouldCommit()) return;
+
+        event.task = describe(task);
+        event.repetitions = repetitions;
+        event.lastRepetition = lastRepetition;
+        event.commit();
+    }
+
+    static void dependenciesFinished(final Object task, final int dependencies, final long waitNanos) {
+        DependenciesFinished event = new DependenciesFinished();
+        if (!event.shouldCommit()) return;
+
+        event.task = describe(task);
+        event.dependencies = dependencies;
+        event.waitTime = waitNanos;
+        event.commit();
+    }
+
+    private static String describe(final Object object) {
+        return object.getClass().getSimpleName() + "@" + Integer.toHexString(System.identityHashCode(object));
+    }
+
+    @Name("com.github.trosenkrantz.sync.util.TaskQueued")
+    @Label("Task Queued")
+    @Category({"SyncUtil", "Tasks"})
+    @StackTrace(false)
+    static class TaskQueued extends Event {
+        @Label("Driver")
+        String driver;
+
+        @Label("Prioritised")
+        boolean prioritised;
+
+        @Label("Priority")
+        int priority;
+
+        @Label("Weight")
+        int weight;
+    }
+
+    @Name("com.github.trosenkrantz.sync.util.TaskStarted")
+    @Label("Task Started")
+    @Category({"SyncUtil", "Tasks"})
+    @StackTrace(false)
+    static class TaskStarted extends Event {
+        @Label("Driver")
+        String driver;
+
+        @Label("Wait Time")
+        @Description("Time from queued until started")
+        @Timespan
+        long waitTime;
+    }
+
+    @Name("com.github.trosenkrantz.sync.util.TaskFinished")
+    @Label("Task Finished")
+    @Category({"SyncUtil", "Tasks"})
+    @StackTrace(false)
+    static class TaskFinished extends Event {
+        @Label("Driver")
+        String driver;
+
+        @Label("Wait Time")
+        @Description("Time from queued until started")
+        @Timespan
+        long waitTime;
+
+        @Label("Run Time")
+        @Description("Time from started until done")
+        @Timespan
+        long runTime;
+
+        @Label("Failed")
+        @Description("Threw, timed out, or completed its future exceptionally")
+        boolean failed;
+    }
+
+    @Name("com.github.trosenkrantz.sync.util.SuspensionChanged")
+    @Label("Driver Suspended or Resumed")
+    @Category({"SyncUtil", "Drivers"})
+    static class SuspensionChanged extends Event {
+        @Label("Driver")
+        String driver;
+
+        @Label("Suspended")
+        boolean suspended;
+    }
+
+    @Name("com.github.trosenkrantz.sync.util.LimitChanged")
+    @Label("Driver Limit Changed")
+    @Category({"SyncUtil", "Drivers"})
+    static class LimitChanged extends Event {
+        @Label("Driver")
+        String driver;
+
+        @Label("Limit")
+        String limit;
+
+        @Label("Value")
+        @Description("Current value of the limit, or -1 for no limit")
+        int value;
+
+        @Label("Adaptive")
+        boolean adaptive;
+    }
+
+    @Name("com.github.trosenkrantz.sync.util.RepetitionDone")
+    @Label("Repetition Done")
+    @Category({"SyncUtil", "Tasks"})
+    @StackTrace(false)
+    static class RepetitionDone extends Event {
+        @Label("Task")
+        String task;
+
+        @Label("Repetitions")
+        @Description("Number of repetitions done so far")
+        int repetitions;
+
+        @Label("Last Repetition")
+        boolean lastRepetition;
+    }
+
+    @Name("com.github.trosenkrantz.sync.util.DependenciesFinished")
+    @Label("Dependencies Finished")
+    @Category({"SyncUtil", "Tasks"})
+    @StackTrace(false)
+    static class DependenciesFinished extends Event {
+        @Label("Task")
+        String task;
+
+        @Label("Dependencies")
+        int dependencies;
+
+        @Label("Wait Time")
+        @Description("Time from scheduled until all dependencies finished")
+        @Timespan
+        long waitTime;
+    }
+}
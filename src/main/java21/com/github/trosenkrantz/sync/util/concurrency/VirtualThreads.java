@@ -0,0 +1,33 @@
+package com.github.trosenkrantz.sync.util.concurrency;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Access to virtual threads, available from Java 21.
+ * <p>
+ * This is the implementation for Java 21 and newer, in the versioned part of the multi-release JAR.
+ */
+final class VirtualThreads {
+    private static final ThreadFactory FACTORY = Thread.ofVirtual().name("SyncUtil-virtual-", 0).factory();
+
+    private VirtualThreads() {
+    }
+
+    static boolean isSupported() {
+        return true;
+    }
+
+    static void start(final Runnable task) {
+        FACTORY.newThread(task).start();
+    }
+
+    static ExecutorService getExecutor() {
+        return Holder.EXECUTOR;
+    }
+
+    private static class Holder { // Lazily initialised on first use
+        private static final ExecutorService EXECUTOR = Executors.newThreadPerTaskExecutor(FACTORY);
+    }
+}
@@ -0,0 +1,132 @@
+package com.github.trosenkrantz.sync.util.concurrency;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+
+class AdaptiveLimitTest extends ConcurrentTaskDriverTest {
+    private static final long MILLISECOND = TimeUnit.MILLISECONDS.toNanos(1);
+
+    @Test
+    void cannotCreateWithInitialOutsideRange() {
+        Assertions.assertThrows(IllegalArgumentException.class, () -> new AimdLimit(0, 1, 10));
+        Assertions.assertThrows(IllegalArgumentException.class, () -> new AimdLimit(11, 1, 10));
+        Assertions.assertThrows(IllegalArgumentException.class, () -> new GradientLimit(5, 6, 10));
+    }
+
+    @Test
+    void adaptiveLimitHasLimit() {
+        AimdLimit limit = new AimdLimit(4, 1, 10);
+
+        Assertions.assertTrue(limit.hasLimit());
+        Assertions.assertTrue(limit.isAdaptive());
+        Assertions.assertEquals(4, limit.get());
+        Assertions.assertTrue(limit.isLessThanOrEquals(4));
+        Assertions.assertFalse(limit.isLessThanOrEquals(3));
+    }
+
+    @Test
+    void fixedLimitIsNotAdaptive() {
+        Assertions.assertFalse(Limit.of(4).isAdaptive());
+        Assertions.assertFalse(Limit.noLimit().isAdaptive());
+    }
+
+    @Test
+    void aimdIncreasesWhileInUse() {
+        AimdLimit limit = new AimdLimit(4, 1, 10);
+
+        limit.onTaskDone(MILLISECOND, false, 4);
+        Assertions.assertEquals(5, limit.get());
+
+        limit.onTaskDone(MILLISECOND, false, 1); // Less than half in use
+        Assertions.assertEquals(5, limit.get());
+    }
+
+    @Test
+    void aimdBacksOffOnFailure() {
+        AimdLimit limit = new AimdLimit(10, 1, 10, 0.5, 1, TimeUnit.SECONDS);
+
+        limit.onTaskDone(MILLISECOND, true, 10);
+        Assertions.assertEquals(5, limit.get());
+
+        limit.onTaskDone(TimeUnit.SECONDS.toNanos(2), false, 5); // Exceeding latency threshold
+        Assertions.assertEquals(2, limit.get());
+    }
+
+    @Test
+    void aimdStaysWithinRange() {
+        AimdLimit limit = new AimdLimit(2, 2, 3);
+
+        for (int i = 0; i < 5; i++) {
+            limit.onTaskDone(MILLISECOND, false, 3);
+        }
+        Assertions.assertEquals(3, limit.get());
+
+        for (int i = 0; i < 5; i++) {
+            limit.onTaskDone(MILLISECOND, true, 3);
+        }
+        Assertions.assertEquals(2, limit.get());
+    }
+
+    @Test
+    void gradientIncreasesWhileLatencyIsFlat() {
+        GradientLimit limit = new GradientLimit(10, 1, 100);
+
+        for (int i = 0; i < 100; i++) {
+            limit.onTaskDone(10 * MILLISECOND, false, limit.get());
+        }
+
+        Assertions.assertTrue(limit.get() > 20, "Limit was " + limit.get());
+    }
+
+    @Test
+    void gradientDecreasesWhenLatencyRises() {
+        GradientLimit limit = new GradientLimit(50, 1, 100);
+        for (int i = 0; i < 1000; i++) {
+            limit.onTaskDone(10 * MILLISECOND, false, limit.get());
+        }
+        int limitWithFlatLatency = limit.get();
+
+        for (int i = 0; i < 20; i++) {
+            limit.onTaskDone(100 * MILLISECOND, false, limit.get());
+        }
+
+        Assertions.assertTrue(limit.get() < limitWithFlatLatency / 2, "Limit was " + limit.get() + ", and " + limitWithFlatLatency + " before latency rose");
+    }
+
+    @Test
+    void gradientDecreasesOnFailure() {
+        GradientLimit limit = new GradientLimit(50, 1, 100);
+
+        limit.onTaskDone(10 * MILLISECOND, true, 50);
+
+        Assertions.assertTrue(limit.get() < 50, "Limit was " + limit.get());
+    }
+
+    @Test
+    void driverIncreasesRunningTasksAsLimitIncreases() {
+        driver = new ConcurrentTaskDriver();
+        driver.setMaxRunningTasks(new AimdLimit(1, 1, 10));
+
+        driver.queue(asynchronousTask, asynchronousTask, asynchronousTask, asynchronousTask);
+        assertTasks(3, 1, 0);
+
+        finishTask(); // Limit is now 2
+        assertTasks(1, 2, 1);
+    }
+
+    @Test
+    void driverReportsFailedSynchronousTasks() {
+        AimdLimit limit = new AimdLimit(10, 1, 10, 0.5, Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+        driver = new ConcurrentTaskDriver();
+        driver.setMaxRunningTasks(limit);
+
+        Assertions.assertThrows(RuntimeException.class, () -> driver.queue(() -> {
+            throw new RuntimeException();
+        }));
+
+        Assertions.assertEquals(5, limit.get());
+        assertTasks(0, 0, 1);
+    }
+}
@@ -0,0 +1,103 @@
+package com.github.trosenkrantz.sync.util.concurrency;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+class BucketPriorityQueueTest {
+    private static QueuedTask task(final int priority) {
+        return new QueuedTask(onDone -> {}, null, true, priority, 1, QueuedTask.UNMEASURED);
+    }
+
+    private static List<QueuedTask> pollAll(final BucketPriorityQueue queue) {
+        List<QueuedTask> tasks = new ArrayList<>();
+        QueuedTask task;
+        while ((task = queue.poll()) != null) tasks.add(task);
+        return tasks;
+    }
+
+    @Test
+    void ordersByPriority() {
+        BucketPriorityQueue queue = new BucketPriorityQueue();
+        QueuedTask task5 = task(5);
+        QueuedTask task0 = task(0);
+        QueuedTask task63 = task(63);
+        QueuedTask task2 = task(2);
+
+        queue.addAll(Arrays.asList(task5, task0, task63, task2));
+
+        Assertions.assertEquals(4, queue.size());
+        Assertions.assertEquals(Arrays.asList(task0, task2, task5, task63), pollAll(queue));
+        Assertions.assertTrue(queue.isEmpty());
+    }
+
+    @Test
+    void keepsOrderWithinPriority() {
+        BucketPriorityQueue queue = new BucketPriorityQueue();
+        List<QueuedTask> expected = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            QueuedTask task = task(3);
+            expected.add(task);
+            queue.add(task);
+        }
+
+        Assertions.assertEquals(expected, pollAll(queue));
+    }
+
+    @Test
+    void ordersPrioritiesOutsideBuckets() {
+        BucketPriorityQueue queue = new BucketPriorityQueue();
+        QueuedTask task100 = task(100);
+        QueuedTask task64 = task(64);
+        QueuedTask taskMinus1 = task(-1);
+        QueuedTask taskMin = task(Integer.MIN_VALUE);
+        QueuedTask task10 = task(10);
+        QueuedTask task64Again = task(64);
+
+        queue.addAll(Arrays.asList(task100, task64, taskMinus1, taskMin, task10, task64Again));
+
+        Assertions.assertEquals(Arrays.asList(taskMin, taskMinus1, task10, task64, task64Again, task100), pollAll(queue));
+    }
+
+    @Test
+    void addFirstPrecedesSamePriority() {
+        BucketPriorityQueue queue = new BucketPriorityQueue();
+        QueuedTask task1 = task(1);
+        QueuedTask task2 = task(1);
+        queue.add(task1);
+
+        queue.addFirst(task2);
+
+        Assertions.assertSame(task2, queue.peek());
+        Assertions.assertEquals(Arrays.asList(task2, task1), pollAll(queue));
+    }
+
+    @Test
+    void reusesEmptiedBuckets() {
+        BucketPriorityQueue queue = new BucketPriorityQueue();
+        queue.add(task(1));
+        queue.poll();
+        QueuedTask task2 = task(2);
+        QueuedTask task1 = task(1);
+
+        queue.add(task2);
+        queue.add(task1);
+
+        Assertions.assertEquals(Arrays.asList(task1, task2), pollAll(queue));
+    }
+
+    @Test
+    void clear() {
+        BucketPriorityQueue queue = new BucketPriorityQueue();
+        queue.addAll(Arrays.asList(task(1), task(70), task(-5)));
+
+        queue.clear();
+
+        Assertions.assertEquals(0, queue.size());
+        Assertions.assertNull(queue.peek());
+        Assertions.assertNull(queue.poll());
+    }
+}
@@ -0,0 +1,83 @@
+package com.github.trosenkrantz.sync.util.concurrency;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+class ConcurrentTaskDriverBatchTest extends ConcurrentTaskDriverTest {
+    @Test
+    void queueAllAdmitsUpToLimit() {
+        driver = new ConcurrentTaskDriver();
+        driver.setMaxRunningTasks(Limit.of(2));
+
+        driver.queueAll(Collections.nCopies(5, asynchronousTask));
+        assertTasks(3, 2, 0);
+
+        finishTask();
+        assertTasks(2, 2, 1);
+    }
+
+    @Test
+    void queueAllNotifiesOnce() {
+        driver = new ConcurrentTaskDriver();
+        driver.setMaxRunningTasks(Limit.of(2));
+        final int[] notificationCount = {0};
+        TestListener listener = new TestListener() {
+            @Override
+            public void onProgress(final int queued, final int running, final int finished) {
+                super.onProgress(queued, running, finished);
+                notificationCount[0]++;
+            }
+        };
+        driver.addListener(listener);
+
+        driver.queueAll(Collections.nCopies(1000, asynchronousTask));
+
+        Assertions.assertEquals(1, notificationCount[0]);
+        assertTasks(listener, 998, 2, 0);
+    }
+
+    @Test
+    void queueAllWithPriority() {
+        driver = new ConcurrentTaskDriver();
+        driver.setMaxRunningTasks(Limit.of(1));
+        driver.queue(asynchronousTask); // Dummy task to block driver from starting other tasks
+        List<String> executionOrder = new ArrayList<>();
+
+        driver.queueAll(Arrays.asList(
+                onDone -> {
+                    executionOrder.add("Task 1");
+                    onDone.run();
+                },
+                onDone -> {
+                    executionOrder.add("Task 2");
+                    onDone.run();
+                }
+        ));
+        driver.queueAll(1, Collections.singletonList(onDone -> {
+            executionOrder.add("Task 3");
+            onDone.run();
+        }));
+        assertTasks(3, 1, 0);
+
+        finishTask(); // Finish dummy task
+        Assertions.assertEquals(Arrays.asList("Task 3", "Task 1", "Task 2"), executionOrder);
+        assertTasks(0, 0, 4);
+    }
+
+    @Test
+    void queueAllWhileSuspended() {
+        driver = new ConcurrentTaskDriver();
+        driver.suspend();
+
+        driver.queueAll(Collections.nCopies(3, asynchronousTask));
+        assertTasks(3, 0, 0);
+
+        driver.resume();
+        assertTasks(0, 3, 0);
+    }
+}
@@ -0,0 +1,231 @@
+package com.github.trosenkrantz.sync.util.concurrency;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+class ConcurrentTaskDriverBoundedQueueTest extends ConcurrentTaskDriverTest {
+    private final List<String> executionOrder = new ArrayList<>();
+
+    private void setUpFullQueue(final QueueFullPolicy policy) {
+        driver = new ConcurrentTaskDriver();
+        driver.setMaxRunningTasks(Limit.of(1));
+        driver.setMaxQueuedTasks(Limit.of(2));
+        driver.setQueueFullPolicy(policy);
+        driver.queue(asynchronousTask); // Dummy task to block driver from starting other tasks
+        driver.queue(() -> executionOrder.add("Task 1"));
+        driver.queue(() -> executionOrder.add("Task 2"));
+        assertTasks(2, 1, 0);
+    }
+
+    @Test
+    void rejectWhenFull() {
+        setUpFullQueue(QueueFullPolicy.REJECT);
+
+        Assertions.assertThrows(RejectedExecutionException.class, () -> driver.queue(() -> executionOrder.add("Task 3")));
+        assertTasks(2, 1, 0);
+
+        finishTask(); // Finish dummy task
+        Assertions.assertEquals(Arrays.asList("Task 1", "Task 2"), executionOrder);
+    }
+
+    @Test
+    void rejectWholeBatchNotFitting() {
+        driver = new ConcurrentTaskDriver();
+        driver.suspend();
+        driver.setMaxQueuedTasks(Limit.of(2));
+        driver.queue(asynchronousTask);
+
+        Assertions.assertThrows(RejectedExecutionException.class, () -> driver.queue(asynchronousTask, asynchronousTask));
+        assertTasks(1, 0, 0);
+
+        driver.queue(asynchronousTask);
+        assertTasks(2, 0, 0);
+    }
+
+    @Test
+    void dropOldest() {
+        setUpFullQueue(QueueFullPolicy.DROP_OLDEST);
+        TaskHandle handle = driver.queue(() -> executionOrder.add("Task 3"));
+        assertTasks(2, 1, 0);
+        Assertions.assertEquals(1, driver.getNumberOfDroppedTasks());
+
+        finishTask(); // Finish dummy task
+        Assertions.assertEquals(Arrays.asList("Task 2", "Task 3"), executionOrder);
+        Assertions.assertFalse(handle.cancel());
+    }
+
+    @Test
+    void dropOldestTakesNextToStart() {
+        setUpFullQueue(QueueFullPolicy.DROP_OLDEST);
+        driver.queue(1, () -> executionOrder.add("Prioritised 1"));
+        driver.queue(2, () -> executionOrder.add("Prioritised 2"));
+        driver.queue(3, () -> executionOrder.add("Prioritised 3"));
+
+        finishTask(); // Finish dummy task
+        Assertions.assertEquals(Arrays.asList("Prioritised 3", "Task 2"), executionOrder);
+        Assertions.assertEquals(3, driver.getNumberOfDroppedTasks());
+    }
+
+    @Test
+    void dropLowestPriorityDropsNewTaskWithoutPriority() {
+        setUpFullQueue(QueueFullPolicy.DROP_LOWEST_PRIORITY);
+        driver.queue(() -> executionOrder.add("Task 3"));
+
+        finishTask(); // Finish dummy task
+        Assertions.assertEquals(Arrays.asList("Task 1", "Task 2"), executionOrder);
+        Assertions.assertEquals(1, driver.getNumberOfDroppedTasks());
+    }
+
+    @Test
+    void dropLowestPriority() {
+        setUpFullQueue(QueueFullPolicy.DROP_LOWEST_PRIORITY);
+        driver.queue(5, () -> executionOrder.add("Priority 5")); // Drops Task 2
+        driver.queue(3, () -> executionOrder.add("Priority 3")); // Drops Task 1
+        driver.queue(5, () -> executionOrder.add("Another priority 5")); // Dropped, as queued after the other of same priority
+        driver.queue(4, () -> executionOrder.add("Priority 4")); // Drops Priority 5
+        assertTasks(2, 1, 0);
+
+        finishTask(); // Finish dummy task
+        Assertions.assertEquals(Arrays.asList("Priority 3", "Priority 4"), executionOrder);
+        Assertions.assertEquals(4, driver.getNumberOfDroppedTasks());
+    }
+
+    @Test
+    void dropLowestPrioritySkipsCancelledTasks() {
+        setUpFullQueue(QueueFullPolicy.DROP_LOWEST_PRIORITY);
+        driver.clearQueue();
+        driver.queue(() -> executionOrder.add("Task 1"));
+        TaskHandle handle = driver.queue(() -> executionOrder.add("Task 2"));
+        handle.cancel();
+        driver.queue(1, () -> executionOrder.add("Priority 1"));
+        driver.queue(0, () -> executionOrder.add("Priority 0")); // Drops Task 1, as Task 2 is cancelled
+        assertTasks(2, 1, 0);
+
+        finishTask(); // Finish dummy task
+        Assertions.assertEquals(Arrays.asList("Priority 0", "Priority 1"), executionOrder);
+    }
+
+    @Test
+    void callerRuns() {
+        setUpFullQueue(QueueFullPolicy.CALLER_RUNS);
+        driver.queue(() -> executionOrder.add("Task 3"));
+        Assertions.assertEquals(Arrays.asList("Task 3"), executionOrder);
+        assertTasks(2, 1, 0);
+
+        finishTask(); // Finish dummy task
+        Assertions.assertEquals(Arrays.asList("Task 3", "Task 1", "Task 2"), executionOrder);
+        assertTasks(0, 0, 3);
+    }
+
+    @Test
+    void offerReturnsFalseWhenFull() {
+        setUpFullQueue(QueueFullPolicy.CALLER_RUNS);
+        Assertions.assertFalse(driver.offer(() -> executionOrder.add("Task 3")));
+        Assertions.assertTrue(executionOrder.isEmpty());
+
+        finishTask(); // Finish dummy task
+        Assertions.assertTrue(driver.offer(() -> executionOrder.add("Task 3")));
+        Assertions.assertEquals(Arrays.asList("Task 1", "Task 2", "Task 3"), executionOrder);
+    }
+
+    @Test
+    void offerWithTimeoutTimesOut() throws InterruptedException {
+        setUpFullQueue(QueueFullPolicy.REJECT);
+        Assertions.assertFalse(driver.offer(() -> executionOrder.add("Task 3"), 10, TimeUnit.MILLISECONDS));
+        assertTasks(2, 1, 0);
+    }
+
+    @Test
+    void offerWithTimeoutWaitsForSpace() throws InterruptedException {
+        setUpFullQueue(QueueFullPolicy.REJECT);
+        driver.setMaxQueuedTasks(Limit.of(3));
+        driver.queue(1, asynchronousTask); // Blocks the driver when started
+        CountDownLatch waiting = new CountDownLatch(1);
+        AtomicBoolean offered = new AtomicBoolean();
+        Thread producer = new Thread(() -> {
+            waiting.countDown();
+            try {
+                offered.set(driver.offer(() -> executionOrder.add("Task 3"), 8, TimeUnit.SECONDS));
+            } catch (final InterruptedException e) {
+                throw new RuntimeException(e);
+            }
+        });
+        producer.start();
+        waiting.await();
+
+        finishTask(); // Finish dummy task, starting the prioritised task, freeing space
+        producer.join(8000);
+        Assertions.assertTrue(offered.get());
+        assertTasks(3, 1, 1);
+    }
+
+    @Test
+    void offerAsyncCompletesWhenSpaceFrees() {
+        setUpFullQueue(QueueFullPolicy.REJECT);
+        CompletableFuture<Void> future1 = driver.offerAsync(() -> executionOrder.add("Task 3"));
+        CompletableFuture<Void> future2 = driver.offerAsync(() -> executionOrder.add("Task 4"));
+        Assertions.assertFalse(future1.isDone());
+        Assertions.assertFalse(future2.isDone());
+        assertTasks(2, 1, 0);
+
+        finishTask(); // Finish dummy task
+        Assertions.assertTrue(future1.isDone());
+        Assertions.assertTrue(future2.isDone());
+        Assertions.assertEquals(Arrays.asList("Task 1", "Task 2", "Task 3", "Task 4"), executionOrder);
+        assertTasks(0, 0, 5);
+    }
+
+    @Test
+    void offerAsyncCompletesRightAwayWithSpace() {
+        driver = new ConcurrentTaskDriver();
+        driver.setMaxQueuedTasks(Limit.of(1));
+        driver.suspend();
+
+        Assertions.assertTrue(driver.offerAsync(asynchronousTask).isDone());
+        assertTasks(1, 0, 0);
+    }
+
+    @Test
+    void clearQueueCancelsAsyncOffers() {
+        setUpFullQueue(QueueFullPolicy.REJECT);
+        CompletableFuture<Void> future = driver.offerAsync(() -> executionOrder.add("Task 3"));
+
+        driver.clearQueue();
+        Assertions.assertTrue(future.isCancelled());
+        assertTasks(0, 1, 0);
+
+        finishTask(); // Finish dummy task
+        Assertions.assertTrue(executionOrder.isEmpty());
+    }
+
+    @Test
+    void raisingLimitLetsInAsyncOffers() {
+        setUpFullQueue(QueueFullPolicy.REJECT);
+        CompletableFuture<Void> future = driver.offerAsync(() -> executionOrder.add("Task 3"));
+
+        driver.setMaxQueuedTasks(Limit.noLimit());
+        Assertions.assertTrue(future.isDone());
+        assertTasks(3, 1, 0);
+    }
+
+    @Test
+    void cancellingFreesSpace() {
+        driver = new ConcurrentTaskDriver();
+        driver.suspend();
+        driver.setMaxQueuedTasks(Limit.of(1));
+        TaskHandle handle = driver.queue(asynchronousTask);
+
+        handle.cancel();
+        driver.queue(asynchronousTask);
+        assertTasks(1, 0, 0);
+    }
+}
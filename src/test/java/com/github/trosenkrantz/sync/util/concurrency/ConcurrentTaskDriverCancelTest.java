@@ -0,0 +1,116 @@
+package com.github.trosenkrantz.sync.util.concurrency;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+class ConcurrentTaskDriverCancelTest extends ConcurrentTaskDriverTest {
+    @Test
+    void cancelledTaskDoesNotStart() {
+        driver = new ConcurrentTaskDriver();
+        driver.setMaxRunningTasks(Limit.of(1));
+        driver.queue(asynchronousTask); // Dummy task to block driver from starting other tasks
+        List<String> executionOrder = new ArrayList<>();
+
+        TaskHandle handle1 = driver.queue(() -> executionOrder.add("Task 1"));
+        driver.queue(() -> executionOrder.add("Task 2"));
+        assertTasks(2, 1, 0);
+
+        Assertions.assertTrue(handle1.cancel());
+        Assertions.assertTrue(handle1.isCancelled());
+        assertTasks(1, 1, 0);
+
+        finishTask(); // Finish dummy task
+        Assertions.assertEquals(Arrays.asList("Task 2"), executionOrder);
+        assertTasks(0, 0, 2);
+    }
+
+    @Test
+    void cancelPrioritisedTask() {
+        driver = new ConcurrentTaskDriver();
+        driver.setMaxRunningTasks(Limit.of(1));
+        driver.queue(asynchronousTask); // Dummy task to block driver from starting other tasks
+        List<String> executionOrder = new ArrayList<>();
+
+        driver.queue(() -> executionOrder.add("Without priority"));
+        TaskHandle handle = driver.queue(1, () -> executionOrder.add("With priority"));
+        handle.cancel();
+
+        finishTask(); // Finish dummy task
+        Assertions.assertEquals(Arrays.asList("Without priority"), executionOrder);
+    }
+
+    @Test
+    void cancelStartedTaskHasNoEffect() {
+        driver = new ConcurrentTaskDriver();
+
+        TaskHandle handle = driver.queue(asynchronousTask);
+        assertTasks(0, 1, 0);
+
+        Assertions.assertFalse(handle.cancel());
+        Assertions.assertFalse(handle.isCancelled());
+        assertTasks(0, 1, 0);
+    }
+
+    @Test
+    void cancelTwiceHasNoEffect() {
+        driver = new ConcurrentTaskDriver();
+        driver.suspend();
+        TaskHandle handle = driver.queue(asynchronousTask);
+        driver.queue(asynchronousTask);
+
+        Assertions.assertTrue(handle.cancel());
+        Assertions.assertFalse(handle.cancel());
+        assertTasks(1, 0, 0);
+    }
+
+    @Test
+    void cancelClearedTaskHasNoEffect() {
+        driver = new ConcurrentTaskDriver();
+        driver.suspend();
+        TaskHandle handle = driver.queue(asynchronousTask);
+
+        driver.clearQueue();
+        Assertions.assertFalse(handle.cancel());
+        assertTasks(0, 0, 0);
+
+        driver.queue(asynchronousTask);
+        assertTasks(1, 0, 0);
+    }
+
+    @Test
+    void listenersAreNotifiedOfCancel() {
+        driver = new ConcurrentTaskDriver();
+        driver.suspend();
+        TestListener listener = new TestListener();
+        driver.addListener(listener);
+        TaskHandle handle = driver.queue(asynchronousTask);
+        driver.queue(asynchronousTask);
+        assertTasks(listener, 2, 0, 0);
+
+        handle.cancel();
+        assertTasks(listener, 1, 0, 0);
+    }
+
+    @Test
+    void manyCancelledTasksAreCompacted() {
+        driver = new ConcurrentTaskDriver();
+        driver.suspend();
+        List<TaskHandle> handles = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) {
+            handles.add(driver.queue(i % 3, asynchronousTask));
+            handles.add(driver.queue(asynchronousTask));
+        }
+
+        for (int i = 0; i < handles.size(); i++) {
+            if (i % 10 != 0) handles.get(i).cancel();
+        }
+        assertTasks(200, 0, 0);
+
+        driver.resume();
+        assertTasks(0, 200, 0);
+    }
+}
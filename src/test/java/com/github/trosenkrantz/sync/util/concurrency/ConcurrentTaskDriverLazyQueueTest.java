@@ -0,0 +1,211 @@
+package com.github.trosenkrantz.sync.util.concurrency;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.Timeout;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.stream.IntStream;
+
+class ConcurrentTaskDriverLazyQueueTest extends ConcurrentTaskDriverTest {
+    private final List<String> executionOrder = new ArrayList<>();
+    private int pulled = 0;
+
+    private Iterator<AsynchronousTask> countingTasks(final int count) {
+        return IntStream.range(0, count).mapToObj(i -> {
+            pulled++;
+            return asynchronousTask;
+        }).iterator();
+    }
+
+    @Test
+    void pullsOnlyWhenSlotsFree() {
+        driver = new ConcurrentTaskDriver();
+        driver.setMaxRunningTasks(Limit.of(2));
+
+        CompletableFuture<Void> future = driver.queueLazily(countingTasks(5));
+        Assertions.assertEquals(2, pulled);
+        assertTasks(0, 2, 0);
+
+        finishTask();
+        Assertions.assertEquals(3, pulled);
+        assertTasks(0, 2, 1);
+
+        for (int i = 0; i < 2; i++) finishTask();
+        Assertions.assertEquals(5, pulled);
+        Assertions.assertFalse(future.isDone()); // The iterator does not know it is exhausted before asked
+
+        finishTask();
+        Assertions.assertTrue(future.isDone());
+        finishTask();
+        assertTasks(0, 0, 5);
+    }
+
+    @Test
+    void prefetchKeepsTasksQueued() {
+        driver = new ConcurrentTaskDriver();
+        driver.setMaxRunningTasks(Limit.of(2));
+
+        driver.queueLazily(countingTasks(10), 3);
+        Assertions.assertEquals(5, pulled);
+        assertTasks(3, 2, 0);
+
+        finishTask();
+        Assertions.assertEquals(6, pulled);
+        assertTasks(3, 2, 1);
+    }
+
+    @Test
+    void suspendedPullsOnlyPrefetch() {
+        driver = new ConcurrentTaskDriver();
+        driver.suspend();
+
+        driver.queueLazily(countingTasks(10));
+        Assertions.assertEquals(0, pulled);
+
+        driver.queueLazily(countingTasks(10), 2);
+        Assertions.assertEquals(0, pulled); // Waits behind the first source
+
+        driver.resume();
+        Assertions.assertEquals(20, pulled); // No limit to running tasks, so both sources are pulled to the end
+    }
+
+    @Test
+    void supplierEndsWithNull() {
+        driver = new ConcurrentTaskDriver();
+        Iterator<String> names = Arrays.asList("Task 1", "Task 2").iterator();
+
+        CompletableFuture<Void> future = driver.queueLazily(() -> {
+            if (!names.hasNext()) return null;
+            String name = names.next();
+            return (AsynchronousTask) onDone -> {
+                executionOrder.add(name);
+                onDone.run();
+            };
+        });
+        Assertions.assertTrue(future.isDone());
+        Assertions.assertEquals(Arrays.asList("Task 1", "Task 2"), executionOrder);
+        assertTasks(0, 0, 2);
+    }
+
+    @Test
+    void spliteratorSource() {
+        driver = new ConcurrentTaskDriver();
+        driver.setMaxRunningTasks(Limit.of(1));
+
+        CompletableFuture<Void> future = driver.queueLazily(Arrays.asList(asynchronousTask, asynchronousTask).spliterator());
+        assertTasks(0, 1, 0);
+
+        finishTask();
+        finishTask();
+        Assertions.assertTrue(future.isDone());
+        assertTasks(0, 0, 2);
+    }
+
+    @Test
+    void sourcesArePulledInOrder() {
+        driver = new ConcurrentTaskDriver();
+        driver.suspend();
+
+        driver.queueLazily(Arrays.asList((AsynchronousTask) onDone -> {
+            executionOrder.add("First 1");
+            onDone.run();
+        }).iterator());
+        driver.queueLazily(Arrays.asList((AsynchronousTask) onDone -> {
+            executionOrder.add("Second 1");
+            onDone.run();
+        }).iterator());
+        driver.queue(() -> executionOrder.add("Queued"));
+        driver.resume();
+
+        Assertions.assertEquals(Arrays.asList("Queued", "First 1", "Second 1"), executionOrder);
+    }
+
+    @Test
+    void throwingSourceFailsFuture() {
+        driver = new ConcurrentTaskDriver();
+        driver.setMaxRunningTasks(Limit.of(1));
+
+        CompletableFuture<Void> future = driver.queueLazily(() -> {
+            throw new IllegalStateException("Cursor closed");
+        });
+        Assertions.assertTrue(future.isCompletedExceptionally());
+        assertTasks(0, 0, 0);
+
+        driver.queue(asynchronousTask); // The driver keeps working
+        assertTasks(0, 1, 0);
+    }
+
+    @Test
+    void sourceThrowingErrorDoesNotStopDriver() {
+        driver = new ConcurrentTaskDriver();
+
+        CompletableFuture<Void> future = driver.queueLazily(() -> {
+            throw new AssertionError("Broken source");
+        });
+        Assertions.assertTrue(future.isCompletedExceptionally());
+
+        driver.queue(asynchronousTask); // A later task still runs
+        assertTasks(0, 1, 0);
+    }
+
+    @Test
+    void cancellingFutureStopsPulling() {
+        driver = new ConcurrentTaskDriver();
+        driver.setMaxRunningTasks(Limit.of(1));
+
+        CompletableFuture<Void> future = driver.queueLazily(countingTasks(10));
+        future.cancel(false);
+        finishTask();
+        Assertions.assertEquals(1, pulled);
+        assertTasks(0, 0, 1);
+    }
+
+    @Test
+    void clearQueueCancelsSources() {
+        driver = new ConcurrentTaskDriver();
+        driver.suspend();
+
+        CompletableFuture<Void> future = driver.queueLazily(countingTasks(10), 2);
+        driver.clearQueue();
+        Assertions.assertTrue(future.isCancelled());
+        assertTasks(0, 0, 0);
+
+        driver.resume();
+        Assertions.assertEquals(2, pulled);
+    }
+
+    @Test
+    void respectsMaxQueuedTasks() {
+        driver = new ConcurrentTaskDriver();
+        driver.suspend();
+        driver.setMaxQueuedTasks(Limit.of(1));
+
+        driver.queueLazily(countingTasks(10), 5);
+        Assertions.assertEquals(1, pulled);
+    }
+
+    @Test
+    void prefetchMustBeNonNegative() {
+        driver = new ConcurrentTaskDriver();
+        Assertions.assertThrows(IllegalArgumentException.class, () -> driver.queueLazily(countingTasks(1), -1));
+    }
+
+    @Test
+    @Timeout(value = 8)
+    void loadWithoutMaterializingTasks() {
+        driver = new ConcurrentTaskDriver();
+        driver.setMaxRunningTasks(Limit.of(ConcurrentTaskDriverLoadTest.MAX_RUNNING_TASKS));
+
+        driver.queueLazily(countingTasks(ConcurrentTaskDriverLoadTest.TASK_COUNT));
+        for (int i = 0; i < ConcurrentTaskDriverLoadTest.TASK_COUNT; i++) {
+            assertTasks(0, ConcurrentTaskDriverLoadTest.MAX_RUNNING_TASKS - Math.max(0, i + ConcurrentTaskDriverLoadTest.MAX_RUNNING_TASKS - ConcurrentTaskDriverLoadTest.TASK_COUNT), i);
+            finishTask();
+        }
+        assertTasks(0, 0, ConcurrentTaskDriverLoadTest.TASK_COUNT);
+    }
+}
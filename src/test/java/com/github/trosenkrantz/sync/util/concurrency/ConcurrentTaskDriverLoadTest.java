@@ -1,8 +1,13 @@
 package com.github.trosenkrantz.sync.util.concurrency;
 
+import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.Timeout;
 
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
 class ConcurrentTaskDriverLoadTest extends ConcurrentTaskDriverTest {
     public static final int MAX_RUNNING_TASKS = 4;
     public static final int QUEUE_SIZE = 1000;
@@ -53,4 +58,48 @@ class ConcurrentTaskDriverLoadTest extends ConcurrentTaskDriverTest {
         }
         assertTasks(0, 0, TASK_COUNT);
     }
+
+    @Test
+    @Timeout(value = 8)
+    void loadWithTasksDoneWhileRunning() {
+        driver = new ConcurrentTaskDriver();
+        driver.setMaxRunningTasks(Limit.of(MAX_RUNNING_TASKS));
+        driver.suspend();
+
+        for (int i = 0; i < TASK_COUNT; i++) {
+            driver.queue(onDone -> onDone.run());
+        }
+        assertTasks(TASK_COUNT, 0, 0);
+
+        driver.resume(); // Would overflow the stack, if each task started the next one recursively
+        assertTasks(0, 0, TASK_COUNT);
+    }
+
+    @Test
+    @Timeout(value = 8)
+    void synchronousTasksOfDifferentThreadsRunInParallel() throws InterruptedException {
+        driver = new ConcurrentTaskDriver();
+        driver.setMaxRunningTasks(Limit.of(MAX_RUNNING_TASKS));
+        CountDownLatch allRunning = new CountDownLatch(MAX_RUNNING_TASKS);
+        AtomicInteger overlappingTasks = new AtomicInteger();
+
+        Thread[] producers = new Thread[MAX_RUNNING_TASKS];
+        for (int i = 0; i < producers.length; i++) {
+            producers[i] = new Thread(() -> driver.queue(() -> {
+                allRunning.countDown();
+                try {
+                    if (allRunning.await(2, TimeUnit.SECONDS)) overlappingTasks.incrementAndGet(); // Times out, if another thread runs the tasks one by one
+                } catch (final InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }));
+            producers[i].start();
+        }
+        for (Thread producer : producers) {
+            producer.join();
+        }
+
+        Assertions.assertEquals(MAX_RUNNING_TASKS, overlappingTasks.get());
+        assertTasks(0, 0, MAX_RUNNING_TASKS);
+    }
 }
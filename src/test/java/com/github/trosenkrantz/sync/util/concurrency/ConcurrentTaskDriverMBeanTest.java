@@ -0,0 +1,81 @@
+package com.github.trosenkrantz.sync.util.concurrency;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import javax.management.Attribute;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+
+class ConcurrentTaskDriverMBeanTest extends ConcurrentTaskDriverTest {
+    private final MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+
+    @AfterEach
+    void tearDown() throws JMException {
+        driver.unregisterMBean();
+    }
+
+    @Test
+    void exposesCounts() throws JMException {
+        driver = new ConcurrentTaskDriver();
+        driver.setMaxRunningTasks(Limit.of(1));
+        ObjectName name = driver.registerMBean("counts");
+
+        driver.queue(asynchronousTask, asynchronousTask, asynchronousTask);
+        finishTask();
+        Assertions.assertEquals(1, server.getAttribute(name, "QueuedTasks"));
+        Assertions.assertEquals(1, server.getAttribute(name, "RunningTasks"));
+        Assertions.assertEquals(1, server.getAttribute(name, "FinishedTasks"));
+        Assertions.assertEquals(1, server.getAttribute(name, "MaxRunningTasks"));
+        Assertions.assertEquals(false, server.getAttribute(name, "Suspended"));
+    }
+
+    @Test
+    void percentilesNeedStatistics() throws JMException {
+        driver = new ConcurrentTaskDriver();
+        ObjectName name = driver.registerMBean("percentiles");
+        Assertions.assertTrue(Double.isNaN((Double) server.getAttribute(name, "RunTimeP99Millis")));
+
+        driver.setStatisticsEnabled(true);
+        driver.queue(asynchronousTask);
+        finishTask();
+        Assertions.assertEquals(true, server.getAttribute(name, "StatisticsEnabled"));
+        Assertions.assertTrue((Double) server.getAttribute(name, "RunTimeP99Millis") >= 0);
+    }
+
+    @Test
+    void operationsControlDriver() throws JMException {
+        driver = new ConcurrentTaskDriver();
+        ObjectName name = driver.registerMBean("operations");
+
+        server.invoke(name, "suspend", null, null);
+        Assertions.assertTrue(driver.isSuspended());
+
+        driver.queue(asynchronousTask);
+        server.invoke(name, "clearQueue", null, null);
+        assertTasks(0, 0, 0);
+
+        driver.queue(asynchronousTask);
+        driver.queue(asynchronousTask);
+        server.setAttribute(name, new Attribute("MaxRunningTasks", 1));
+        server.invoke(name, "resume", null, null);
+        assertTasks(1, 1, 0);
+
+        server.setAttribute(name, new Attribute("MaxRunningTasks", -1));
+        Assertions.assertFalse(driver.getMaxRunningTasks().hasLimit());
+        assertTasks(0, 2, 0);
+    }
+
+    @Test
+    void registeringTwiceFails() throws JMException {
+        driver = new ConcurrentTaskDriver();
+        ObjectName name = driver.registerMBean("twice");
+
+        Assertions.assertThrows(IllegalStateException.class, () -> driver.registerMBean("again"));
+        driver.unregisterMBean();
+        Assertions.assertFalse(server.isRegistered(name));
+    }
+}
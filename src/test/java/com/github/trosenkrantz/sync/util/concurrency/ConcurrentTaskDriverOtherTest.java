@@ -64,6 +64,35 @@ class ConcurrentTaskDriverOtherTest extends ConcurrentTaskDriverTest {
         assertTasks(0, 0, 1);
     }
 
+    @Test
+    void exceptionDoesNotPreventOtherTasksFromStarting() {
+        driver = new ConcurrentTaskDriver();
+        driver.setMaxRunningTasks(Limit.of(1));
+        final int[] runCount = {0};
+
+        Assertions.assertThrows(RuntimeException.class, () ->
+                driver.queue(() -> {
+                    throw new RuntimeException();
+                }, () -> runCount[0]++)
+        );
+        Assertions.assertEquals(1, runCount[0]);
+        assertTasks(0, 0, 2);
+    }
+
+    @Test
+    void taskQueuedWhileRunningStartsAfterwards() {
+        driver = new ConcurrentTaskDriver();
+        final int[] runCount = {0};
+
+        driver.queue(() -> {
+            driver.queue(() -> runCount[0]++);
+            Assertions.assertEquals(0, runCount[0]); // Started by the outer call, once this task returns
+            assertTasks(1, 1, 0);
+        });
+        Assertions.assertEquals(1, runCount[0]);
+        assertTasks(0, 0, 2);
+    }
+
     @Test
     void finishingAsynchronousTaskMultipleTimesHasNoEffect() {
         // Arrange
@@ -79,4 +108,34 @@ class ConcurrentTaskDriverOtherTest extends ConcurrentTaskDriverTest {
         // Assert
         assertTasks(0, 0, 1);
     }
+
+    @Test
+    void throwingLimitDoesNotStopDriver() {
+        driver = new ConcurrentTaskDriver();
+        boolean[] throwing = {false};
+        Limit limit = new Limit() {
+            @Override
+            public boolean hasLimit() {
+                return true;
+            }
+
+            @Override
+            protected int getValue() {
+                if (throwing[0]) throw new IllegalStateException("Broken limit");
+                return 1;
+            }
+        };
+
+        throwing[0] = true;
+        Assertions.assertThrows(IllegalStateException.class, () -> driver.setMaxRunningTasks(limit));
+        Assertions.assertThrows(IllegalStateException.class, () -> driver.queue(asynchronousTask));
+        assertTasks(1, 0, 0);
+
+        throwing[0] = false;
+        driver.queue(asynchronousTask); // The driver drains again
+        assertTasks(1, 1, 0);
+
+        finishTask();
+        assertTasks(0, 1, 1);
+    }
 }
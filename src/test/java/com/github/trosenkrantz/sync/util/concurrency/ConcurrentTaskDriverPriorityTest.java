@@ -3,6 +3,9 @@ package com.github.trosenkrantz.sync.util.concurrency;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.Test;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 import java.util.concurrent.atomic.AtomicReference;
 
 class ConcurrentTaskDriverPriorityTest extends ConcurrentTaskDriverTest {
@@ -117,4 +120,20 @@ class ConcurrentTaskDriverPriorityTest extends ConcurrentTaskDriverTest {
         taskWithoutPriorityOnDone.get().run();
         assertTasks(0, 0, 3);
     }
+
+    @Test
+    void keepsOrderWithinSamePriority() {
+        driver = new ConcurrentTaskDriver();
+        driver.setMaxRunningTasks(Limit.of(1));
+        driver.queue(asynchronousTask); // Dummy task to block driver from starting other tasks
+        List<Integer> executionOrder = new ArrayList<>();
+
+        for (int i = 0; i < 20; i++) {
+            int taskNumber = i;
+            driver.queue(i % 2, () -> executionOrder.add(taskNumber));
+        }
+        finishTask(); // Finish dummy task
+
+        Assertions.assertEquals(Arrays.asList(0, 2, 4, 6, 8, 10, 12, 14, 16, 18, 1, 3, 5, 7, 9, 11, 13, 15, 17, 19), executionOrder);
+    }
 }
@@ -0,0 +1,62 @@
+package com.github.trosenkrantz.sync.util.concurrency;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+class ConcurrentTaskDriverStatisticsTest extends ConcurrentTaskDriverTest {
+    @Test
+    void disabledByDefault() {
+        driver = new ConcurrentTaskDriver();
+
+        Assertions.assertNull(driver.getStatistics());
+    }
+
+    @Test
+    void recordsWaitAndRunTimes() throws InterruptedException {
+        driver = new ConcurrentTaskDriver();
+        driver.setStatisticsEnabled(true);
+        driver.setMaxRunningTasks(Limit.of(1));
+
+        driver.queue(asynchronousTask, asynchronousTask);
+        Thread.sleep(5);
+        finishTask(); // Second task has now waited at least 5 ms
+        Thread.sleep(5);
+        finishTask(); // Second task has now run at least 5 ms
+
+        LatencyHistogram.Snapshot waitTimes = driver.getStatistics().getQueueWaitTimes().snapshot();
+        LatencyHistogram.Snapshot runTimes = driver.getStatistics().getRunTimes().snapshot();
+        Assertions.assertEquals(2, waitTimes.getCount());
+        Assertions.assertEquals(2, runTimes.getCount());
+        Assertions.assertTrue(waitTimes.getMax() >= 4_500_000, "Max wait time was " + waitTimes.getMax());
+        Assertions.assertTrue(runTimes.getMax() >= 4_500_000, "Max run time was " + runTimes.getMax());
+    }
+
+    @Test
+    void onlyTasksQueuedOrStartedWhileEnabledAreRecorded() {
+        driver = new ConcurrentTaskDriver();
+        driver.setMaxRunningTasks(Limit.of(1));
+        driver.queue(asynchronousTask, asynchronousTask);
+
+        driver.setStatisticsEnabled(true);
+        driver.queue(asynchronousTask);
+        finishTask();
+        finishTask();
+        finishTask();
+
+        Assertions.assertEquals(1, driver.getStatistics().getQueueWaitTimes().snapshot().getCount()); // Only the last task was queued while enabled
+        Assertions.assertEquals(2, driver.getStatistics().getRunTimes().snapshot().getCount()); // The last two tasks were started while enabled
+    }
+
+    @Test
+    void disable() {
+        driver = new ConcurrentTaskDriver();
+        driver.setStatisticsEnabled(true);
+        driver.queue(asynchronousTask);
+
+        driver.setStatisticsEnabled(false);
+        finishTask();
+
+        Assertions.assertNull(driver.getStatistics());
+        assertTasks(0, 0, 1);
+    }
+}
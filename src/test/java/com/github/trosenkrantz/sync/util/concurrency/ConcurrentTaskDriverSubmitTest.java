@@ -0,0 +1,172 @@
+package com.github.trosenkrantz.sync.util.concurrency;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+class ConcurrentTaskDriverSubmitTest extends ConcurrentTaskDriverTest {
+    @Test
+    void submitCallable() throws ExecutionException, InterruptedException {
+        driver = new ConcurrentTaskDriver();
+
+        CompletableFuture<Integer> future = driver.submit(() -> 42);
+        Assertions.assertEquals(42, future.get());
+        assertTasks(0, 0, 1);
+    }
+
+    @Test
+    void submitThrowingCallable() {
+        driver = new ConcurrentTaskDriver();
+
+        CompletableFuture<Integer> future = driver.submit(() -> {
+            throw new IOException("Failed");
+        });
+        ExecutionException exception = Assertions.assertThrows(ExecutionException.class, future::get);
+        Assertions.assertTrue(exception.getCause() instanceof IOException);
+        assertTasks(0, 0, 1);
+    }
+
+    @Test
+    void submitAsynchronousTask() throws ExecutionException, InterruptedException {
+        driver = new ConcurrentTaskDriver();
+        List<CompletableFuture<String>> results = new ArrayList<>();
+
+        CompletableFuture<String> future = driver.submit(results::add);
+        Assertions.assertFalse(future.isDone());
+        assertTasks(0, 1, 0);
+
+        results.get(0).complete("Done");
+        Assertions.assertEquals("Done", future.get());
+        assertTasks(0, 0, 1);
+    }
+
+    @Test
+    void asynchronousTaskThrowingCompletesExceptionally() {
+        driver = new ConcurrentTaskDriver();
+
+        CompletableFuture<String> future = driver.submit(result -> {
+            throw new IllegalStateException("Failed");
+        });
+        Assertions.assertTrue(future.isCompletedExceptionally());
+        assertTasks(0, 0, 1);
+    }
+
+    @Test
+    void exceptionalCompletionCountsAsFailed() {
+        driver = new ConcurrentTaskDriver();
+        List<Boolean> failures = new ArrayList<>();
+        driver.setMaxRunningTasks(new AdaptiveLimit(1, 1, 10) {
+            @Override
+            protected int computeValue(final int current, final long roundTripNanos, final boolean failed, final int running) {
+                failures.add(failed);
+                return current;
+            }
+        });
+
+        driver.submit(result -> result.complete("Done"));
+        driver.submit(result -> result.completeExceptionally(new IOException("Failed")));
+        driver.submit(() -> {
+            throw new IOException("Failed");
+        });
+        Assertions.assertEquals(Arrays.asList(false, true, true), failures);
+    }
+
+    @Test
+    void cancellingBeforeStartRemovesFromQueue() {
+        driver = new ConcurrentTaskDriver();
+        driver.setMaxRunningTasks(Limit.of(1));
+        driver.queue(asynchronousTask); // Dummy task to block driver from starting other tasks
+        List<String> executionOrder = new ArrayList<>();
+
+        CompletableFuture<String> future = driver.submit(() -> {
+            executionOrder.add("Task 1");
+            return "Done";
+        });
+        assertTasks(1, 1, 0);
+
+        Assertions.assertTrue(future.cancel(false));
+        assertTasks(0, 1, 0);
+
+        finishTask(); // Finish dummy task
+        Assertions.assertTrue(executionOrder.isEmpty());
+        assertTasks(0, 0, 1);
+    }
+
+    @Test
+    void cancellingRunningTaskMakesItDone() {
+        driver = new ConcurrentTaskDriver();
+
+        CompletableFuture<String> future = driver.submit(result -> {
+        });
+        assertTasks(0, 1, 0);
+
+        future.cancel(false);
+        assertTasks(0, 0, 1);
+    }
+
+    @Test
+    void timingOutCompletesWithTimeoutException() throws InterruptedException {
+        driver = new ConcurrentTaskDriver();
+        driver.setDefaultTimeout(10, TimeUnit.MILLISECONDS);
+
+        CompletableFuture<String> future = driver.submit(result -> {
+        });
+        ExecutionException exception = Assertions.assertThrows(ExecutionException.class, () -> future.get(8, TimeUnit.SECONDS));
+        Assertions.assertTrue(exception.getCause() instanceof TimeoutException);
+        while (driver.getNumberOfFinishedTasks() < 1) Thread.sleep(1); // The future completes before the task counts as done
+        assertTasks(0, 0, 1);
+    }
+
+    @Test
+    void droppedTaskCompletesExceptionally() {
+        driver = new ConcurrentTaskDriver();
+        driver.suspend();
+        driver.setMaxQueuedTasks(Limit.of(1));
+        driver.setQueueFullPolicy(QueueFullPolicy.DROP_OLDEST);
+
+        CompletableFuture<String> future = driver.submit(() -> "Done");
+        driver.queue(asynchronousTask);
+        ExecutionException exception = Assertions.assertThrows(ExecutionException.class, future::get);
+        Assertions.assertTrue(exception.getCause() instanceof RejectedExecutionException);
+    }
+
+    @Test
+    void clearingQueueCancels() {
+        driver = new ConcurrentTaskDriver();
+        driver.suspend();
+
+        CompletableFuture<String> future = driver.submit(() -> "Done");
+        driver.clearQueue();
+        Assertions.assertTrue(future.isCancelled());
+    }
+
+    @Test
+    void submitWithPriority() throws ExecutionException, InterruptedException {
+        driver = new ConcurrentTaskDriver();
+        driver.suspend();
+        List<String> executionOrder = new ArrayList<>();
+
+        CompletableFuture<String> future1 = driver.submit(() -> {
+            executionOrder.add("Without priority");
+            return "1";
+        });
+        CompletableFuture<String> future2 = driver.submit(1, result -> {
+            executionOrder.add("With priority");
+            result.complete("2");
+        });
+        driver.resume();
+
+        Assertions.assertEquals(Arrays.asList("With priority", "Without priority"), executionOrder);
+        Assertions.assertEquals("1", future1.get());
+        Assertions.assertEquals("2", future2.get());
+    }
+}
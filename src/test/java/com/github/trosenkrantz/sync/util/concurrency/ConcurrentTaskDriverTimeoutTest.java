@@ -0,0 +1,104 @@
+package com.github.trosenkrantz.sync.util.concurrency;
+
+import com.github.trosenkrantz.sync.util.runnable.SingleRunnable;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.Timeout;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+class ConcurrentTaskDriverTimeoutTest extends ConcurrentTaskDriverTest {
+    private void awaitFinished(final int expectedFinished) throws InterruptedException {
+        while (driver.getNumberOfFinishedTasks() < expectedFinished) {
+            Thread.sleep(1);
+        }
+    }
+
+    @Test
+    @Timeout(value = 8)
+    void timedOutTaskReleasesSlot() throws InterruptedException {
+        driver = new ConcurrentTaskDriver();
+        driver.setMaxRunningTasks(Limit.of(1));
+
+        driver.queueWithTimeout(20, TimeUnit.MILLISECONDS, asynchronousTask);
+        driver.queue(asynchronousTask);
+        assertTasks(1, 1, 0);
+
+        awaitFinished(1);
+        assertTasks(0, 1, 1);
+
+        finishTask(); // Finishing the timed out task has no effect
+        assertTasks(0, 1, 1);
+        finishTask();
+        assertTasks(0, 0, 2);
+    }
+
+    @Test
+    @Timeout(value = 8)
+    void defaultTimeoutCancelsTask() throws InterruptedException {
+        driver = new ConcurrentTaskDriver();
+        driver.setDefaultTimeout(20, TimeUnit.MILLISECONDS);
+        AtomicInteger cancelCount = new AtomicInteger();
+
+        driver.queue(new CancellableTask() {
+            @Override
+            public void run(final SingleRunnable onDone) {
+            }
+
+            @Override
+            public void cancel() {
+                cancelCount.incrementAndGet();
+            }
+        });
+        awaitFinished(1);
+
+        Assertions.assertEquals(1, cancelCount.get());
+        assertTasks(0, 0, 1);
+    }
+
+    @Test
+    @Timeout(value = 8)
+    void taskDoneInTimeIsNotCancelled() throws InterruptedException {
+        driver = new ConcurrentTaskDriver();
+        driver.setDefaultTimeout(20, TimeUnit.MILLISECONDS);
+        AtomicInteger cancelCount = new AtomicInteger();
+
+        driver.queue(new CancellableTask() {
+            @Override
+            public void run(final SingleRunnable onDone) {
+                onDone.run();
+            }
+
+            @Override
+            public void cancel() {
+                cancelCount.incrementAndGet();
+            }
+        });
+        Thread.sleep(60);
+
+        Assertions.assertEquals(0, cancelCount.get());
+        assertTasks(0, 0, 1);
+    }
+
+    @Test
+    @Timeout(value = 8)
+    void timeoutCountsAsFailure() throws InterruptedException {
+        driver = new ConcurrentTaskDriver();
+        AimdLimit limit = new AimdLimit(10, 1, 10);
+        driver.setMaxRunningTasks(limit);
+
+        driver.queueWithTimeout(10, TimeUnit.MILLISECONDS, asynchronousTask);
+        awaitFinished(1);
+
+        Assertions.assertEquals(9, limit.get());
+    }
+
+    @Test
+    void nonPositiveTimeoutRejected() {
+        driver = new ConcurrentTaskDriver();
+
+        Assertions.assertThrows(IllegalArgumentException.class, () -> driver.queueWithTimeout(0, TimeUnit.SECONDS, asynchronousTask));
+        Assertions.assertThrows(IllegalArgumentException.class, () -> driver.setDefaultTimeout(-1, TimeUnit.SECONDS));
+    }
+}
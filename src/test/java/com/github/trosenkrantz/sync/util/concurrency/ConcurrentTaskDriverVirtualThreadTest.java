@@ -0,0 +1,66 @@
+package com.github.trosenkrantz.sync.util.concurrency;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Assumptions;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+class ConcurrentTaskDriverVirtualThreadTest extends ConcurrentTaskDriverTest {
+    @Test
+    void supportedWhenExpected() {
+        Assumptions.assumeTrue(Boolean.getBoolean("sync.util.expectVirtualThreads")); // Set by the java21Test task
+        Assertions.assertTrue(VirtualThreads.isSupported());
+    }
+
+    @Test
+    void enablingRequiresSupport() {
+        Assumptions.assumeFalse(VirtualThreads.isSupported());
+        driver = new ConcurrentTaskDriver();
+
+        Assertions.assertThrows(UnsupportedOperationException.class, () -> driver.setVirtualThreadsEnabled(true));
+        Assertions.assertThrows(UnsupportedOperationException.class, () -> ExecutorServiceTask.onVirtualThread(() -> {
+        }));
+        driver.setVirtualThreadsEnabled(false);
+    }
+
+    @Test
+    void synchronousTasksRunOnVirtualThreads() throws InterruptedException {
+        Assumptions.assumeTrue(VirtualThreads.isSupported());
+        driver = new ConcurrentTaskDriver();
+        driver.setVirtualThreadsEnabled(true);
+        driver.setMaxRunningTasks(Limit.of(2));
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch done = new CountDownLatch(3);
+        Thread caller = Thread.currentThread();
+
+        for (int i = 0; i < 3; i++) {
+            driver.queue(() -> {
+                Assertions.assertNotSame(caller, Thread.currentThread());
+                try {
+                    release.await();
+                } catch (final InterruptedException e) {
+                    throw new RuntimeException(e);
+                }
+                done.countDown();
+            });
+        }
+        assertTasks(1, 2, 0); // The caller is not blocked by the running tasks
+
+        release.countDown();
+        Assertions.assertTrue(done.await(8, TimeUnit.SECONDS));
+        while (driver.getNumberOfFinishedTasks() < 3) Thread.sleep(1); // The latch counts down before the task counts as done
+        assertTasks(0, 0, 3);
+    }
+
+    @Test
+    void executorServiceTaskOnVirtualThread() throws InterruptedException {
+        Assumptions.assumeTrue(VirtualThreads.isSupported());
+        driver = new ConcurrentTaskDriver();
+        CountDownLatch done = new CountDownLatch(1);
+
+        driver.queue(ExecutorServiceTask.onVirtualThread(done::countDown));
+        Assertions.assertTrue(done.await(8, TimeUnit.SECONDS));
+    }
+}
@@ -0,0 +1,113 @@
+package com.github.trosenkrantz.sync.util.concurrency;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+class ConcurrentTaskDriverWeightTest extends ConcurrentTaskDriverTest {
+    @Test
+    void weightsLimitRunningTasks() {
+        driver = new ConcurrentTaskDriver();
+        driver.setMaxRunningWeight(Limit.of(10));
+
+        driver.queueWeighted(4, asynchronousTask, asynchronousTask, asynchronousTask);
+        assertTasks(1, 2, 0);
+        Assertions.assertEquals(8, driver.getRunningWeight());
+
+        finishTask();
+        assertTasks(0, 2, 1);
+        Assertions.assertEquals(8, driver.getRunningWeight());
+    }
+
+    @Test
+    void unweightedTasksWeighOne() {
+        driver = new ConcurrentTaskDriver();
+        driver.setMaxRunningWeight(Limit.of(3));
+
+        driver.queue(asynchronousTask, asynchronousTask, asynchronousTask, asynchronousTask);
+        assertTasks(1, 3, 0);
+    }
+
+    @Test
+    void heavyTaskHoldsBackLighterTasks() {
+        driver = new ConcurrentTaskDriver();
+        driver.setMaxRunningWeight(Limit.of(10));
+        driver.queueWeighted(6, asynchronousTask);
+
+        driver.queueWeighted(8, asynchronousTask);
+        driver.queueWeighted(1, asynchronousTask);
+        assertTasks(2, 1, 0); // Light task must not overtake the heavy one, although it fits
+
+        finishTask();
+        assertTasks(0, 2, 1);
+        Assertions.assertEquals(9, driver.getRunningWeight());
+    }
+
+    @Test
+    void oversizedTaskRunsAlone() {
+        driver = new ConcurrentTaskDriver();
+        driver.setMaxRunningWeight(Limit.of(10));
+        driver.queueWeighted(1, asynchronousTask);
+
+        driver.queueWeighted(20, asynchronousTask);
+        driver.queueWeighted(1, asynchronousTask);
+        assertTasks(2, 1, 0);
+
+        finishTask();
+        assertTasks(1, 1, 1);
+        Assertions.assertEquals(20, driver.getRunningWeight());
+
+        finishTask();
+        assertTasks(0, 1, 2);
+    }
+
+    @Test
+    void oversizedTaskRejected() {
+        driver = new ConcurrentTaskDriver();
+        driver.setMaxRunningWeight(Limit.of(10));
+        driver.setOversizedTaskPolicy(OversizedTaskPolicy.REJECT);
+
+        Assertions.assertThrows(IllegalArgumentException.class, () -> driver.queueWeighted(11, asynchronousTask));
+        assertTasks(0, 0, 0);
+
+        driver.queueWeighted(10, asynchronousTask);
+        assertTasks(0, 1, 0);
+    }
+
+    @Test
+    void negativeWeightRejected() {
+        driver = new ConcurrentTaskDriver();
+
+        Assertions.assertThrows(IllegalArgumentException.class, () -> driver.queueWeighted(-1, asynchronousTask));
+    }
+
+    @Test
+    void raisingMaxRunningWeightStartsTasks() {
+        driver = new ConcurrentTaskDriver();
+        driver.setMaxRunningWeight(Limit.of(5));
+        driver.queueWeighted(5, asynchronousTask, asynchronousTask);
+        assertTasks(1, 1, 0);
+
+        driver.setMaxRunningWeight(Limit.of(10));
+        assertTasks(0, 2, 0);
+    }
+
+    @Test
+    void weightAndCountLimitsBothApply() {
+        driver = new ConcurrentTaskDriver();
+        driver.setMaxRunningTasks(Limit.of(2));
+        driver.setMaxRunningWeight(Limit.of(100));
+
+        driver.queueWeighted(1, asynchronousTask, asynchronousTask, asynchronousTask);
+        assertTasks(1, 2, 0);
+    }
+
+    @Test
+    void synchronousWeightedTasksReleaseWeight() {
+        driver = new ConcurrentTaskDriver();
+        driver.setMaxRunningWeight(Limit.of(3));
+
+        driver.queueWeighted(3, () -> Assertions.assertEquals(3, driver.getRunningWeight()), () -> {});
+        assertTasks(0, 0, 2);
+        Assertions.assertEquals(0, driver.getRunningWeight());
+    }
+}
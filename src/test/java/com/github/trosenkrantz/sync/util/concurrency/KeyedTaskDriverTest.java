@@ -0,0 +1,269 @@
+package com.github.trosenkrantz.sync.util.concurrency;
+
+import com.github.trosenkrantz.sync.util.runnable.SingleRunnable;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.Timeout;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+class KeyedTaskDriverTest extends ConcurrentTaskDriverTest {
+    @Test
+    void runsOneTaskPerKeyAtATime() {
+        driver = new ConcurrentTaskDriver();
+        KeyedTaskDriver<String> keyedDriver = new KeyedTaskDriver<>(driver);
+
+        keyedDriver.queue("A", asynchronousTask, asynchronousTask);
+        keyedDriver.queue("B", asynchronousTask);
+        assertTasks(0, 2, 0);
+        Assertions.assertEquals(1, keyedDriver.getNumberOfWaitingTasks());
+        Assertions.assertEquals(2, keyedDriver.getNumberOfActiveKeys());
+
+        finishTask(); // Finish first task of A
+        assertTasks(0, 2, 1);
+        Assertions.assertEquals(0, keyedDriver.getNumberOfWaitingTasks());
+    }
+
+    @Test
+    void keepsOrderWithinKey() {
+        driver = new ConcurrentTaskDriver();
+        KeyedTaskDriver<Integer> keyedDriver = new KeyedTaskDriver<>(driver);
+        List<String> executionOrder = new ArrayList<>();
+        keyedDriver.queue(1, asynchronousTask); // Dummy task to block key 1
+
+        keyedDriver.queue(1, () -> executionOrder.add("1a"));
+        keyedDriver.queue(2, () -> executionOrder.add("2a"));
+        keyedDriver.queue(1, () -> executionOrder.add("1b"));
+        Assertions.assertEquals(Arrays.asList("2a"), executionOrder);
+
+        finishTask(); // Finish dummy task
+        Assertions.assertEquals(Arrays.asList("2a", "1a", "1b"), executionOrder);
+    }
+
+    @Test
+    void driverLimitCapsAllKeys() {
+        driver = new ConcurrentTaskDriver();
+        driver.setMaxRunningTasks(Limit.of(2));
+        KeyedTaskDriver<String> keyedDriver = new KeyedTaskDriver<>(driver);
+
+        keyedDriver.queue("A", asynchronousTask);
+        keyedDriver.queue("B", asynchronousTask);
+        keyedDriver.queue("C", asynchronousTask);
+        assertTasks(1, 2, 0);
+
+        finishTask();
+        assertTasks(0, 2, 1);
+    }
+
+    @Test
+    void reclaimsStateOfDrainedKeys() {
+        driver = new ConcurrentTaskDriver();
+        KeyedTaskDriver<String> keyedDriver = new KeyedTaskDriver<>(driver);
+
+        keyedDriver.queue("A", asynchronousTask, asynchronousTask);
+        keyedDriver.queue("B", () -> {});
+        Assertions.assertEquals(1, keyedDriver.getNumberOfActiveKeys());
+
+        finishTask();
+        finishTask();
+        Assertions.assertEquals(0, keyedDriver.getNumberOfActiveKeys());
+        assertTasks(0, 0, 3);
+    }
+
+    @Test
+    void throwingTaskDoesNotBlockKey() {
+        driver = new ConcurrentTaskDriver();
+        KeyedTaskDriver<String> keyedDriver = new KeyedTaskDriver<>(driver);
+        List<String> executionOrder = new ArrayList<>();
+        keyedDriver.queue("A", asynchronousTask); // Dummy task to block key
+
+        keyedDriver.queue("A", () -> {
+            throw new IllegalStateException();
+        });
+        keyedDriver.queue("A", () -> executionOrder.add("After"));
+
+        Assertions.assertThrows(IllegalStateException.class, this::finishTask);
+        Assertions.assertEquals(Arrays.asList("After"), executionOrder);
+        Assertions.assertEquals(0, keyedDriver.getNumberOfActiveKeys());
+        assertTasks(0, 0, 3);
+    }
+
+    @Test
+    void asynchronousTaskThrowingBeforeDoneDoesNotBlockKey() {
+        driver = new ConcurrentTaskDriver();
+        KeyedTaskDriver<String> keyedDriver = new KeyedTaskDriver<>(driver);
+        List<String> executionOrder = new ArrayList<>();
+
+        Assertions.assertThrows(IllegalStateException.class, () -> keyedDriver.queue("A", onDone -> {
+            throw new IllegalStateException();
+        }));
+        keyedDriver.queue("A", () -> executionOrder.add("After"));
+        Assertions.assertEquals(Arrays.asList("After"), executionOrder);
+    }
+
+    @Test
+    void cancellingHeadTaskReleasesKey() {
+        driver = new ConcurrentTaskDriver();
+        driver.suspend();
+        KeyedTaskDriver<String> keyedDriver = new KeyedTaskDriver<>(driver);
+        List<String> executionOrder = new ArrayList<>();
+
+        TaskHandle handle = keyedDriver.queue("A", () -> executionOrder.add("Head"));
+        keyedDriver.queue("A", () -> executionOrder.add("After"));
+        Assertions.assertTrue(handle.cancel());
+        Assertions.assertTrue(handle.isCancelled());
+        Assertions.assertFalse(handle.cancel());
+        assertTasks(1, 0, 0); // The next task of the key took its place
+
+        driver.resume();
+        Assertions.assertEquals(Arrays.asList("After"), executionOrder);
+        Assertions.assertEquals(0, keyedDriver.getNumberOfActiveKeys());
+    }
+
+    @Test
+    void cancellingWaitingTaskSkipsIt() {
+        driver = new ConcurrentTaskDriver();
+        KeyedTaskDriver<String> keyedDriver = new KeyedTaskDriver<>(driver);
+        List<String> executionOrder = new ArrayList<>();
+        keyedDriver.queue("A", asynchronousTask); // Dummy task to block key
+
+        TaskHandle handle = keyedDriver.queue("A", () -> executionOrder.add("Cancelled"));
+        keyedDriver.queue("A", () -> executionOrder.add("After"));
+        Assertions.assertTrue(handle.cancel());
+        Assertions.assertEquals(1, keyedDriver.getNumberOfWaitingTasks());
+
+        finishTask(); // Finish dummy task
+        Assertions.assertEquals(Arrays.asList("After"), executionOrder);
+    }
+
+    @Test
+    void cancellingRunningTaskHasNoEffect() {
+        driver = new ConcurrentTaskDriver();
+        KeyedTaskDriver<String> keyedDriver = new KeyedTaskDriver<>(driver);
+
+        TaskHandle handle = keyedDriver.queue("A", asynchronousTask);
+        Assertions.assertFalse(handle.cancel());
+        Assertions.assertEquals(1, keyedDriver.getNumberOfActiveKeys());
+    }
+
+    @Test
+    void clearingQueueReleasesKeys() {
+        driver = new ConcurrentTaskDriver();
+        driver.suspend();
+        KeyedTaskDriver<String> keyedDriver = new KeyedTaskDriver<>(driver);
+        List<String> executionOrder = new ArrayList<>();
+        keyedDriver.queue("A", () -> executionOrder.add("Cleared"));
+        keyedDriver.queue("A", () -> executionOrder.add("After"));
+
+        driver.clearQueue();
+        driver.resume();
+        Assertions.assertEquals(Arrays.asList("After"), executionOrder);
+        Assertions.assertEquals(0, keyedDriver.getNumberOfActiveKeys());
+    }
+
+    @Test
+    void rejectedHeadTaskReleasesKey() {
+        driver = new ConcurrentTaskDriver();
+        driver.suspend();
+        driver.setMaxQueuedTasks(Limit.of(1));
+        KeyedTaskDriver<String> keyedDriver = new KeyedTaskDriver<>(driver);
+        driver.queue(asynchronousTask); // Fills the queue
+
+        Assertions.assertThrows(RejectedExecutionException.class, () -> keyedDriver.queue("A", asynchronousTask));
+        Assertions.assertEquals(0, keyedDriver.getNumberOfActiveKeys());
+
+        driver.clearQueue();
+        keyedDriver.queue("A", asynchronousTask);
+        assertTasks(1, 0, 0);
+    }
+
+    @Test
+    void rejectedWaitingTaskIsSkipped() {
+        driver = new ConcurrentTaskDriver();
+        driver.setMaxRunningTasks(Limit.of(1));
+        driver.setMaxQueuedTasks(Limit.of(1));
+        KeyedTaskDriver<String> keyedDriver = new KeyedTaskDriver<>(driver);
+        List<String> executionOrder = new ArrayList<>();
+        keyedDriver.queue("A", asynchronousTask);
+        KeyedTaskHandle rejected = keyedDriver.queue("A", () -> executionOrder.add("Rejected"));
+        KeyedTaskHandle alsoRejected = keyedDriver.queue("A", () -> executionOrder.add("Also rejected"));
+        driver.queue(asynchronousTask); // Fills the queue
+
+        finishTask(); // Lets through the waiting tasks of A, which the driver rejects, without failing this
+        Assertions.assertTrue(rejected.isRemoved());
+        Assertions.assertNotNull(rejected.getRejection());
+        Assertions.assertFalse(rejected.isCancelled());
+        Assertions.assertFalse(rejected.cancel());
+        Assertions.assertNotNull(alsoRejected.getRejection());
+        Assertions.assertEquals(0, keyedDriver.getNumberOfActiveKeys());
+        assertTasks(0, 1, 1);
+
+        KeyedTaskHandle later = keyedDriver.queue("A", () -> executionOrder.add("Later"));
+        finishTask();
+        Assertions.assertEquals(Arrays.asList("Later"), executionOrder);
+        Assertions.assertFalse(later.isRemoved());
+        Assertions.assertNull(later.getRejection());
+    }
+
+    @Test
+    void droppedHeadTaskReleasesKey() {
+        driver = new ConcurrentTaskDriver();
+        driver.suspend();
+        driver.setMaxQueuedTasks(Limit.of(1));
+        driver.setQueueFullPolicy(QueueFullPolicy.DROP_OLDEST);
+        KeyedTaskDriver<String> keyedDriver = new KeyedTaskDriver<>(driver);
+        List<String> executionOrder = new ArrayList<>();
+        keyedDriver.queue("A", () -> executionOrder.add("Dropped"));
+        keyedDriver.queue("A", () -> executionOrder.add("After"));
+
+        driver.queue(() -> executionOrder.add("Other")); // Drops the head task of A, which lets in the next, which drops this
+        driver.resume();
+        Assertions.assertEquals(Arrays.asList("After"), executionOrder);
+        Assertions.assertEquals(0, keyedDriver.getNumberOfActiveKeys());
+    }
+
+    @Test
+    void timedOutHeadTaskReleasesKey() throws InterruptedException {
+        driver = new ConcurrentTaskDriver();
+        driver.setDefaultTimeout(10, TimeUnit.MILLISECONDS);
+        KeyedTaskDriver<String> keyedDriver = new KeyedTaskDriver<>(driver);
+        CountDownLatch after = new CountDownLatch(1);
+        boolean[] cancelled = {false};
+
+        keyedDriver.queue("A", new CancellableTask() {
+            @Override
+            public void run(final SingleRunnable onDone) {
+            }
+
+            @Override
+            public void cancel() {
+                cancelled[0] = true;
+            }
+        });
+        keyedDriver.queue("A", after::countDown);
+
+        Assertions.assertTrue(after.await(8, TimeUnit.SECONDS));
+        Assertions.assertTrue(cancelled[0]);
+    }
+
+    @Test
+    @Timeout(value = 8)
+    void manyTasksOfOneKeyDoneWhileRunning() {
+        final int taskCount = 100000;
+        driver = new ConcurrentTaskDriver();
+        KeyedTaskDriver<String> keyedDriver = new KeyedTaskDriver<>(driver);
+        keyedDriver.queue("A", asynchronousTask); // Dummy task to block key
+
+        for (int i = 0; i < taskCount; i++) {
+            keyedDriver.queue("A", onDone -> onDone.run());
+        }
+        finishTask(); // Would overflow the stack, if each task started the next one recursively
+
+        assertTasks(0, 0, taskCount + 1);
+    }
+}
@@ -0,0 +1,79 @@
+package com.github.trosenkrantz.sync.util.concurrency;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+class LatencyHistogramTest {
+    private static void assertWithinPrecision(final long expected, final long actual) {
+        Assertions.assertTrue(Math.abs(expected - actual) <= expected * 0.04, "Expected about " + expected + ", but was " + actual);
+    }
+
+    @Test
+    void empty() {
+        LatencyHistogram.Snapshot snapshot = new LatencyHistogram().snapshot();
+
+        Assertions.assertEquals(0, snapshot.getCount());
+        Assertions.assertEquals(0, snapshot.getMax());
+        Assertions.assertEquals(0, snapshot.getP50());
+        Assertions.assertEquals(0.0, snapshot.getMean(), 0);
+    }
+
+    @Test
+    void smallValuesAreExact() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (int i = 1; i <= 10; i++) {
+            histogram.record(i);
+        }
+
+        LatencyHistogram.Snapshot snapshot = histogram.snapshot();
+        Assertions.assertEquals(10, snapshot.getCount());
+        Assertions.assertEquals(5, snapshot.getP50());
+        Assertions.assertEquals(10, snapshot.getP99());
+        Assertions.assertEquals(10, snapshot.getMax());
+        Assertions.assertEquals(5.5, snapshot.getMean(), 0);
+    }
+
+    @Test
+    void percentilesOfUniformValues() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (long i = 1; i <= 100000; i++) {
+            histogram.record(i * 1000);
+        }
+
+        LatencyHistogram.Snapshot snapshot = histogram.snapshot();
+        assertWithinPrecision(50000000, snapshot.getP50());
+        assertWithinPrecision(99000000, snapshot.getP99());
+        assertWithinPrecision(99900000, snapshot.getP999());
+        Assertions.assertEquals(100000000, snapshot.getMax());
+    }
+
+    @Test
+    void percentilesOfLargeValues() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        histogram.record(Long.MAX_VALUE);
+        histogram.record(3_600_000_000_000L); // An hour
+
+        LatencyHistogram.Snapshot snapshot = histogram.snapshot();
+        assertWithinPrecision(3_600_000_000_000L, snapshot.getP50());
+        Assertions.assertEquals(Long.MAX_VALUE, snapshot.getValueAtPercentile(100));
+    }
+
+    @Test
+    void negativeValuesAreRecordedAsZero() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        histogram.record(-5);
+
+        Assertions.assertEquals(1, histogram.snapshot().getCount());
+        Assertions.assertEquals(0, histogram.snapshot().getMax());
+    }
+
+    @Test
+    void reset() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        histogram.record(42);
+        histogram.reset();
+
+        Assertions.assertEquals(0, histogram.snapshot().getCount());
+        Assertions.assertEquals(0, histogram.snapshot().getMax());
+    }
+}
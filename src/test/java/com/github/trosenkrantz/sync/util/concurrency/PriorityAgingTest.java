@@ -0,0 +1,92 @@
+package com.github.trosenkrantz.sync.util.concurrency;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+class PriorityAgingTest extends ConcurrentTaskDriverTest {
+    private static final long NOW = 1_000_000_000_000L;
+
+    @Test
+    void improvesOnePerInterval() {
+        PriorityAging aging = PriorityAging.of(10, TimeUnit.NANOSECONDS, 0);
+
+        Assertions.assertEquals(9, aging.getEffectivePriority(9, NOW, NOW));
+        Assertions.assertEquals(9, aging.getEffectivePriority(9, NOW - 9, NOW));
+        Assertions.assertEquals(8, aging.getEffectivePriority(9, NOW - 10, NOW));
+        Assertions.assertEquals(6, aging.getEffectivePriority(9, NOW - 35, NOW));
+    }
+
+    @Test
+    void stopsAtCeiling() {
+        PriorityAging aging = PriorityAging.of(10, TimeUnit.NANOSECONDS, 2);
+
+        Assertions.assertEquals(2, aging.getEffectivePriority(9, NOW - 1000, NOW));
+        Assertions.assertEquals(1, aging.getEffectivePriority(1, NOW - 1000, NOW)); // Already better than ceiling
+    }
+
+    @Test
+    void noneAndUnmeasuredKeepPriority() {
+        Assertions.assertFalse(PriorityAging.none().isEnabled());
+        Assertions.assertEquals(9, PriorityAging.none().getEffectivePriority(9, NOW - 1000, NOW));
+        Assertions.assertEquals(9, PriorityAging.of(1, TimeUnit.NANOSECONDS, 0).getEffectivePriority(9, QueuedTask.UNMEASURED, NOW));
+    }
+
+    @Test
+    void nonPositiveIntervalRejected() {
+        Assertions.assertThrows(IllegalArgumentException.class, () -> PriorityAging.of(0, TimeUnit.SECONDS, 0));
+        Assertions.assertThrows(IllegalArgumentException.class, () -> PriorityAging.of(-1, TimeUnit.SECONDS, 0));
+    }
+
+    @Test
+    void queueStartsAgedTaskFirst() {
+        BucketPriorityQueue queue = new BucketPriorityQueue();
+        queue.setAging(PriorityAging.of(1, TimeUnit.SECONDS, 0));
+        long now = System.nanoTime();
+        QueuedTask fresh = new QueuedTask(onDone -> {}, null, true, 1, 1, now);
+        QueuedTask old = new QueuedTask(onDone -> {}, null, true, 9, 1, now - TimeUnit.HOURS.toNanos(1));
+        QueuedTask oldOverflow = new QueuedTask(onDone -> {}, null, true, 100, 1, now - TimeUnit.HOURS.toNanos(1));
+
+        queue.addAll(Arrays.asList(fresh, oldOverflow, old));
+
+        Assertions.assertSame(old, queue.peek()); // Tie with overflow task at ceiling goes to best original priority
+        Assertions.assertSame(old, queue.poll());
+        Assertions.assertSame(oldOverflow, queue.poll());
+        Assertions.assertSame(fresh, queue.poll());
+    }
+
+    @Test
+    void driverStartsTaskWaitingLongFirst() throws InterruptedException {
+        driver = new ConcurrentTaskDriver();
+        driver.setMaxRunningTasks(Limit.of(1));
+        driver.setPriorityAging(PriorityAging.of(50, TimeUnit.MILLISECONDS, 0));
+        driver.queue(asynchronousTask); // Dummy task to block driver from starting other tasks
+        List<String> executionOrder = new ArrayList<>();
+
+        driver.queue(3, () -> executionOrder.add("Old"));
+        Thread.sleep(200);
+        driver.queue(1, () -> executionOrder.add("New"));
+        finishTask(); // Finish dummy task
+
+        Assertions.assertEquals(Arrays.asList("Old", "New"), executionOrder);
+    }
+
+    @Test
+    void driverKeepsPriorityOrderWithoutAging() throws InterruptedException {
+        driver = new ConcurrentTaskDriver();
+        driver.setMaxRunningTasks(Limit.of(1));
+        driver.queue(asynchronousTask); // Dummy task to block driver from starting other tasks
+        List<String> executionOrder = new ArrayList<>();
+
+        driver.queue(3, () -> executionOrder.add("Old"));
+        Thread.sleep(50);
+        driver.queue(1, () -> executionOrder.add("New"));
+        finishTask(); // Finish dummy task
+
+        Assertions.assertEquals(Arrays.asList("New", "Old"), executionOrder);
+    }
+}
@@ -0,0 +1,97 @@
+package com.github.trosenkrantz.sync.util.concurrency;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.Timeout;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+class RateLimitTest extends ConcurrentTaskDriverTest {
+    @Test
+    void allowsBurstThenRate() {
+        RateLimit rateLimit = RateLimit.of(10, TimeUnit.SECONDS, 3);
+        long now = System.nanoTime();
+
+        Assertions.assertTrue(rateLimit.tryAcquire(now));
+        Assertions.assertTrue(rateLimit.tryAcquire(now));
+        Assertions.assertTrue(rateLimit.tryAcquire(now));
+        Assertions.assertFalse(rateLimit.tryAcquire(now));
+        Assertions.assertEquals(TimeUnit.MILLISECONDS.toNanos(100), rateLimit.getNanosUntilAvailable(now));
+
+        Assertions.assertFalse(rateLimit.tryAcquire(now + TimeUnit.MILLISECONDS.toNanos(99)));
+        Assertions.assertTrue(rateLimit.tryAcquire(now + TimeUnit.MILLISECONDS.toNanos(100)));
+        Assertions.assertFalse(rateLimit.tryAcquire(now + TimeUnit.MILLISECONDS.toNanos(100)));
+    }
+
+    @Test
+    void refillsUpToBurstSize() {
+        RateLimit rateLimit = RateLimit.of(10, TimeUnit.SECONDS, 2);
+        long later = System.nanoTime() + TimeUnit.HOURS.toNanos(1);
+
+        Assertions.assertTrue(rateLimit.tryAcquire(later));
+        Assertions.assertTrue(rateLimit.tryAcquire(later));
+        Assertions.assertFalse(rateLimit.tryAcquire(later));
+    }
+
+    @Test
+    void smoothAllowsOneAtATime() {
+        RateLimit rateLimit = RateLimit.smooth(1, TimeUnit.SECONDS);
+        long now = System.nanoTime();
+
+        Assertions.assertTrue(rateLimit.tryAcquire(now));
+        Assertions.assertFalse(rateLimit.tryAcquire(now));
+        Assertions.assertTrue(rateLimit.tryAcquire(now + TimeUnit.SECONDS.toNanos(1)));
+    }
+
+    @Test
+    void noLimitAlwaysAllows() {
+        RateLimit rateLimit = RateLimit.noLimit();
+
+        Assertions.assertFalse(rateLimit.hasLimit());
+        for (int i = 0; i < 1000; i++) {
+            Assertions.assertTrue(rateLimit.tryAcquire(0));
+        }
+        Assertions.assertEquals(0, rateLimit.getNanosUntilAvailable(0));
+    }
+
+    @Test
+    void invalidArgumentsRejected() {
+        Assertions.assertThrows(IllegalArgumentException.class, () -> RateLimit.of(0, TimeUnit.SECONDS, 1));
+        Assertions.assertThrows(IllegalArgumentException.class, () -> RateLimit.of(Double.NaN, TimeUnit.SECONDS, 1));
+        Assertions.assertThrows(IllegalArgumentException.class, () -> RateLimit.of(1, TimeUnit.SECONDS, 0));
+    }
+
+    @Test
+    void driverHoldsBackTasksWithoutTokens() {
+        driver = new ConcurrentTaskDriver();
+        driver.setRateLimit(RateLimit.of(1, TimeUnit.HOURS, 2));
+
+        driver.queue(asynchronousTask, asynchronousTask, asynchronousTask);
+        assertTasks(1, 2, 0);
+
+        finishTask(); // Frees a slot, but not a token
+        assertTasks(1, 1, 1);
+    }
+
+    @Test
+    @Timeout(value = 8)
+    void driverStartsTasksWhenRefilled() throws InterruptedException {
+        driver = new ConcurrentTaskDriver();
+        driver.setRateLimit(RateLimit.of(100, TimeUnit.SECONDS, 1));
+        CountDownLatch done = new CountDownLatch(5);
+        long start = System.nanoTime();
+
+        for (int i = 0; i < 5; i++) {
+            driver.queue(done::countDown);
+        }
+        Assertions.assertEquals(4, done.getCount());
+
+        done.await();
+        while (driver.getNumberOfFinishedTasks() < 5) { // The last task counts as finished just after counting down
+            Thread.sleep(1);
+        }
+        Assertions.assertTrue(System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(40), "Started tasks faster than the rate");
+        assertTasks(0, 0, 5);
+    }
+}
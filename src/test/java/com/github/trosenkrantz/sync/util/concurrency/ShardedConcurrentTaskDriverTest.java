@@ -0,0 +1,220 @@
+package com.github.trosenkrantz.sync.util.concurrency;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.Timeout;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+class ShardedConcurrentTaskDriverTest {
+    private static final int NUMBER_OF_SHARDS = 4;
+
+    private ShardedConcurrentTaskDriver driver;
+    private AsynchronousTask asynchronousTask;
+    private List<Runnable> onDoneList;
+
+    @BeforeEach
+    void setUp() {
+        driver = new ShardedConcurrentTaskDriver(NUMBER_OF_SHARDS);
+        onDoneList = Collections.synchronizedList(new ArrayList<>());
+        asynchronousTask = onDoneList::add;
+    }
+
+    private void finishTask() {
+        onDoneList.remove(0).run();
+    }
+
+    private void assertTasks(final int expectedQueued, final int expectedRunning, final int expectedFinished) {
+        Assertions.assertEquals(expectedQueued, driver.getNumberOfQueuedTasks(), "Wrong number of queued tasks");
+        Assertions.assertEquals(expectedRunning, driver.getNumberOfRunningTasks(), "Wrong number of running tasks");
+        Assertions.assertEquals(expectedFinished, driver.getNumberOfFinishedTasks(), "Wrong number of finished tasks");
+    }
+
+    /**
+     * Runs on a thread using another shard than the current thread.
+     */
+    private static void runOnOtherShard(final Runnable runnable) throws InterruptedException {
+        Thread thread;
+        do {
+            thread = new Thread(runnable);
+        } while (thread.getId() % NUMBER_OF_SHARDS == Thread.currentThread().getId() % NUMBER_OF_SHARDS);
+        thread.start();
+        thread.join();
+    }
+
+    @Test
+    void nonPositiveNumberOfShardsRejected() {
+        Assertions.assertThrows(IllegalArgumentException.class, () -> new ShardedConcurrentTaskDriver(0));
+    }
+
+    @Test
+    void throttle() {
+        driver.setMaxRunningTasks(Limit.of(2));
+
+        driver.queue(asynchronousTask, asynchronousTask, asynchronousTask);
+        assertTasks(1, 2, 0);
+
+        finishTask();
+        assertTasks(0, 2, 1);
+
+        finishTask();
+        finishTask();
+        assertTasks(0, 0, 3);
+    }
+
+    @Test
+    void stealsTasksFromOtherShard() throws InterruptedException {
+        driver.setMaxRunningTasks(Limit.of(1));
+
+        runOnOtherShard(() -> driver.queue(asynchronousTask, asynchronousTask, asynchronousTask));
+        assertTasks(2, 1, 0);
+
+        finishTask(); // Finishing on this thread starts a task from the other shard
+        assertTasks(1, 1, 1);
+
+        finishTask();
+        finishTask();
+        assertTasks(0, 0, 3);
+    }
+
+    @Test
+    void limitAppliesAcrossShards() throws InterruptedException {
+        driver.setMaxRunningTasks(Limit.of(2));
+
+        driver.queue(asynchronousTask);
+        runOnOtherShard(() -> driver.queue(asynchronousTask, asynchronousTask));
+        assertTasks(1, 2, 0);
+    }
+
+    @Test
+    void slotsReleasedOnOtherShardFreeTheLimit() throws InterruptedException {
+        driver.setMaxRunningTasks(Limit.of(1));
+
+        driver.queue(asynchronousTask, asynchronousTask);
+        runOnOtherShard(this::finishTask); // Released in the cell of another shard than taken in
+        assertTasks(0, 1, 1);
+
+        runOnOtherShard(this::finishTask);
+        assertTasks(0, 0, 2);
+        driver.queue(asynchronousTask);
+        assertTasks(0, 1, 2);
+    }
+
+    @Test
+    void prioritisedTasksOfOtherShardsFirst() throws InterruptedException {
+        driver.setMaxRunningTasks(Limit.of(1));
+        driver.queue(asynchronousTask); // Dummy task to block driver from starting other tasks
+        List<String> executionOrder = Collections.synchronizedList(new ArrayList<>());
+
+        driver.queue(() -> executionOrder.add("Local"));
+        runOnOtherShard(() -> driver.queue(1, () -> executionOrder.add("Prioritised")));
+        finishTask(); // Finish dummy task
+
+        Assertions.assertEquals(2, executionOrder.size());
+        Assertions.assertEquals("Prioritised", executionOrder.get(0));
+        Assertions.assertEquals("Local", executionOrder.get(1));
+    }
+
+    @Test
+    void suspendWithCallback() {
+        driver.setMaxRunningTasks(Limit.of(2));
+        driver.queue(asynchronousTask, asynchronousTask, asynchronousTask);
+        AtomicInteger whenIdleCalledCount = new AtomicInteger();
+
+        driver.suspend(whenIdleCalledCount::incrementAndGet);
+        Assertions.assertTrue(driver.isSuspended());
+        finishTask();
+        finishTask();
+        assertTasks(1, 0, 2);
+        Assertions.assertEquals(1, whenIdleCalledCount.get());
+
+        driver.resume();
+        assertTasks(0, 1, 2);
+    }
+
+    @Test
+    void clearQueue() throws InterruptedException {
+        driver.setMaxRunningTasks(Limit.of(1));
+        driver.queue(asynchronousTask, asynchronousTask);
+        runOnOtherShard(() -> driver.queue(1, asynchronousTask));
+        assertTasks(2, 1, 0);
+
+        driver.clearQueue();
+        assertTasks(0, 1, 0);
+    }
+
+    @Test
+    void listenerGetsAggregateCounts() throws InterruptedException {
+        driver.setMaxRunningTasks(Limit.of(1));
+        TestListener listener = new TestListener();
+        driver.addListener(listener);
+
+        driver.queue(asynchronousTask);
+        runOnOtherShard(() -> driver.queue(asynchronousTask, asynchronousTask));
+
+        ConcurrentTaskDriverTest.assertTasks(listener, 2, 1, 0);
+    }
+
+    @Test
+    @Timeout(value = 8)
+    void tasksDoneWhileRunning() {
+        final int taskCount = 1000000;
+        driver.setMaxRunningTasks(Limit.of(4));
+        driver.suspend();
+
+        for (int i = 0; i < taskCount; i++) {
+            driver.queue(onDone -> onDone.run());
+        }
+        assertTasks(taskCount, 0, 0);
+
+        driver.resume(); // Would overflow the stack, if each task started the next one recursively
+        assertTasks(0, 0, taskCount);
+    }
+
+    @Test
+    @Timeout(value = 8)
+    void concurrentProducersAndCompleters() throws InterruptedException {
+        final int producers = 8;
+        final int tasksPerProducer = 20000;
+        final int maxRunningTasks = 4;
+        driver.setMaxRunningTasks(Limit.of(maxRunningTasks));
+        AtomicInteger running = new AtomicInteger();
+        AtomicInteger maxObservedRunning = new AtomicInteger();
+        ExecutorService completers = Executors.newFixedThreadPool(4);
+        ExecutorService producerPool = Executors.newFixedThreadPool(producers);
+
+        for (int i = 0; i < producers; i++) {
+            final int producer = i;
+            producerPool.execute(() -> {
+                for (int j = 0; j < tasksPerProducer; j++) {
+                    AsynchronousTask task = onDone -> {
+                        maxObservedRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+                        completers.execute(() -> {
+                            running.decrementAndGet();
+                            onDone.run();
+                        });
+                    };
+                    if (j % 2 == 0) driver.queue(task);
+                    else driver.queue(producer, task);
+                }
+            });
+        }
+        producerPool.shutdown();
+        Assertions.assertTrue(producerPool.awaitTermination(8, TimeUnit.SECONDS));
+
+        while (driver.getNumberOfFinishedTasks() < producers * tasksPerProducer || driver.getNumberOfRunningTasks() > 0) { // The last slot is released just after counting as finished
+            Thread.sleep(1);
+        }
+        completers.shutdown();
+
+        assertTasks(0, 0, producers * tasksPerProducer);
+        Assertions.assertTrue(maxObservedRunning.get() <= maxRunningTasks, "Ran " + maxObservedRunning.get() + " tasks simultaneously");
+    }
+}
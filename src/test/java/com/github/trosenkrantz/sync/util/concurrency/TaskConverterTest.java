@@ -41,6 +41,7 @@ class TaskConverterTest {
 
         // Assert
         Assertions.assertTrue(isInnerRun.get());
+        Assertions.assertTrue(Thread.interrupted()); // Interrupt is kept, and clearing it keeps it from affecting other tests on this thread
     }
 
     @Test
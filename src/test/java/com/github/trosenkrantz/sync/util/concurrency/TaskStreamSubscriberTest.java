@@ -0,0 +1,128 @@
+package com.github.trosenkrantz.sync.util.concurrency;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.concurrent.RejectedExecutionException;
+
+class TaskStreamSubscriberTest extends ConcurrentTaskDriverTest {
+    private TaskStreamSubscriber subscriber;
+    private long requested;
+    private boolean subscriptionCancelled;
+
+    private void subscribe(final int prefetch) {
+        subscriber = new TaskStreamSubscriber(driver, prefetch);
+        subscriber.onSubscribe(n -> requested += n, () -> subscriptionCancelled = true);
+    }
+
+    @Test
+    void requestsFreeSlotsPlusPrefetch() {
+        driver = new ConcurrentTaskDriver();
+        driver.setMaxRunningTasks(Limit.of(2));
+        subscribe(1);
+        Assertions.assertEquals(3, requested);
+
+        for (int i = 0; i < 3; i++) subscriber.onNext(asynchronousTask);
+        assertTasks(1, 2, 0);
+        Assertions.assertEquals(3, requested);
+
+        finishTask();
+        assertTasks(0, 2, 1);
+        Assertions.assertEquals(4, requested);
+    }
+
+    @Test
+    void countsTasksQueuedByOthers() {
+        driver = new ConcurrentTaskDriver();
+        driver.setMaxRunningTasks(Limit.of(1));
+        driver.queue(asynchronousTask);
+        driver.queue(asynchronousTask);
+        subscribe(2);
+        Assertions.assertEquals(1, requested);
+    }
+
+    @Test
+    void requestsPrefetchWithoutLimit() {
+        driver = new ConcurrentTaskDriver();
+        subscribe(2);
+        Assertions.assertEquals(2, requested);
+
+        subscriber.onNext(asynchronousTask);
+        Assertions.assertEquals(3, requested); // The running task frees the slot in the prefetch window
+    }
+
+    @Test
+    void completesWhenStreamCompletedAndTasksDone() {
+        driver = new ConcurrentTaskDriver();
+        subscribe(1);
+        subscriber.onNext(asynchronousTask);
+
+        subscriber.onComplete();
+        Assertions.assertFalse(subscriber.getCompletion().isDone());
+
+        finishTask();
+        Assertions.assertTrue(subscriber.getCompletion().isDone());
+        Assertions.assertFalse(subscriber.getCompletion().isCompletedExceptionally());
+    }
+
+    @Test
+    void failsWhenStreamFails() {
+        driver = new ConcurrentTaskDriver();
+        subscribe(1);
+
+        subscriber.onError(new IOException("Failed"));
+        Assertions.assertTrue(subscriber.getCompletion().isCompletedExceptionally());
+    }
+
+    @Test
+    void cancelStopsRequesting() {
+        driver = new ConcurrentTaskDriver();
+        driver.setMaxRunningTasks(Limit.of(1));
+        subscribe(1);
+        subscriber.onNext(asynchronousTask);
+
+        subscriber.cancel();
+        Assertions.assertTrue(subscriptionCancelled);
+        Assertions.assertTrue(subscriber.getCompletion().isCancelled());
+
+        long requestedBefore = requested;
+        finishTask();
+        Assertions.assertEquals(requestedBefore, requested);
+        assertTasks(0, 0, 1);
+    }
+
+    @Test
+    void secondSubscriptionIsCancelled() {
+        driver = new ConcurrentTaskDriver();
+        subscribe(1);
+        long[] requestedFromSecond = {0};
+        boolean[] cancelled = {false};
+
+        subscriber.onSubscribe(n -> requestedFromSecond[0] += n, () -> cancelled[0] = true);
+        Assertions.assertEquals(0, requestedFromSecond[0]);
+        Assertions.assertTrue(cancelled[0]);
+        Assertions.assertFalse(subscriptionCancelled);
+    }
+
+    @Test
+    void rejectionCancelsSubscription() {
+        driver = new ConcurrentTaskDriver();
+        driver.suspend();
+        driver.setMaxQueuedTasks(Limit.of(1));
+        subscribe(2);
+
+        subscriber.onNext(asynchronousTask);
+        subscriber.onNext(asynchronousTask);
+        Assertions.assertTrue(subscriptionCancelled);
+        subscriber.getCompletion().whenComplete((result, error) -> Assertions.assertTrue(error instanceof RejectedExecutionException));
+        Assertions.assertTrue(subscriber.getCompletion().isCompletedExceptionally());
+        assertTasks(1, 0, 0);
+    }
+
+    @Test
+    void prefetchMustBePositive() {
+        driver = new ConcurrentTaskDriver();
+        Assertions.assertThrows(IllegalArgumentException.class, () -> new TaskStreamSubscriber(driver, 0));
+    }
+}
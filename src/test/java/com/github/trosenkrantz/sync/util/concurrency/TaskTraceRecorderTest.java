@@ -0,0 +1,134 @@
+package com.github.trosenkrantz.sync.util.concurrency;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+class TaskTraceRecorderTest extends ConcurrentTaskDriverTest {
+    private static int count(final String trace, final String regex) {
+        Matcher matcher = Pattern.compile(regex).matcher(trace);
+        int count = 0;
+        while (matcher.find()) count++;
+        return count;
+    }
+
+    @Test
+    void roundsCapacityUpToPowerOfTwo() {
+        Assertions.assertEquals(1, new TaskTraceRecorder(1).getCapacity());
+        Assertions.assertEquals(8, new TaskTraceRecorder(5).getCapacity());
+        Assertions.assertEquals(8, new TaskTraceRecorder(8).getCapacity());
+        Assertions.assertThrows(IllegalArgumentException.class, () -> new TaskTraceRecorder(0));
+    }
+
+    @Test
+    void recordsLifecycleOfTasks() {
+        driver = new ConcurrentTaskDriver();
+        TaskTraceRecorder recorder = new TaskTraceRecorder(64);
+        driver.setTraceRecorder(recorder);
+        driver.setMaxRunningTasks(Limit.of(2));
+
+        driver.queue(asynchronousTask, asynchronousTask);
+        driver.queue(3, asynchronousTask);
+        finishTask();
+        finishTask();
+        Assertions.assertEquals(8, recorder.getNumberOfRecordedEvents()); // 3 queued, 3 started, 2 finished
+
+        String trace = recorder.toChromeTrace();
+        Assertions.assertTrue(trace.startsWith("{\"displayTimeUnit\":\"ns\",\"traceEvents\":["));
+        Assertions.assertEquals(3, count(trace, "\"cat\":\"queue\",\"ph\":\"b\""));
+        Assertions.assertEquals(3, count(trace, "\"cat\":\"queue\",\"ph\":\"e\""));
+        Assertions.assertEquals(3, count(trace, "\"cat\":\"run\",\"ph\":\"X\""));
+        Assertions.assertEquals(1, count(trace, "\"finished\":false")); // The last task is still running
+        Assertions.assertEquals(2, count(trace, "\"priority\":3,")); // On its queue wait and its run
+        Assertions.assertEquals(2, count(trace, "\"name\":\"thread_name\"")); // Two slots, as at most two tasks ran at once
+    }
+
+    @Test
+    void recordsRemovedTasks() {
+        driver = new ConcurrentTaskDriver();
+        TaskTraceRecorder recorder = new TaskTraceRecorder(64);
+        driver.setTraceRecorder(recorder);
+        driver.suspend();
+
+        TaskHandle handle = driver.queue(asynchronousTask);
+        driver.queue(asynchronousTask);
+        handle.cancel();
+        driver.clearQueue();
+
+        String trace = recorder.toChromeTrace();
+        Assertions.assertEquals(2, count(trace, "\"removed\":true"));
+        Assertions.assertEquals(0, count(trace, "\"cat\":\"run\""));
+    }
+
+    @Test
+    void recordsDependencyWaits() {
+        driver = new ConcurrentTaskDriver();
+        TaskTraceRecorder recorder = new TaskTraceRecorder(64);
+        driver.setTraceRecorder(recorder);
+        NotifyingTask dependency = new NotifyingTask(asynchronousTask);
+        driver.queue(dependency);
+
+        new DependentTask(() -> {
+        }).schedule(driver, dependency);
+        Assertions.assertEquals(1, count(recorder.toChromeTrace(), "\"cat\":\"dependencies\",\"ph\":\"b\""));
+
+        finishTask();
+        String trace = recorder.toChromeTrace();
+        Assertions.assertEquals(1, count(trace, "\"cat\":\"dependencies\",\"ph\":\"e\""));
+        Assertions.assertEquals(2, count(trace, "\"cat\":\"run\",\"ph\":\"X\""));
+    }
+
+    @Test
+    void keepsLatestEventsWhenFull() {
+        driver = new ConcurrentTaskDriver();
+        TaskTraceRecorder recorder = new TaskTraceRecorder(4);
+        driver.setTraceRecorder(recorder);
+
+        for (int i = 0; i < 10; i++) driver.queue(() -> {
+        });
+        Assertions.assertEquals(30, recorder.getNumberOfRecordedEvents());
+
+        String trace = recorder.toChromeTrace();
+        Assertions.assertEquals(4, count(trace, "\"ph\":\"C\"")); // One counter event per event held
+        Assertions.assertEquals(1, count(trace, "\"cat\":\"run\",\"ph\":\"X\"")); // Only the last task has its start and finish held
+    }
+
+    @Test
+    void disablingStopsRecording() {
+        driver = new ConcurrentTaskDriver();
+        TaskTraceRecorder recorder = new TaskTraceRecorder(16);
+        driver.setTraceRecorder(recorder);
+        driver.setTraceRecorder(null);
+
+        driver.queue(asynchronousTask);
+        Assertions.assertNull(driver.getTraceRecorder());
+        Assertions.assertEquals(0, recorder.getNumberOfRecordedEvents());
+    }
+
+    @Test
+    void recordsFromManyThreads() throws InterruptedException {
+        driver = new ConcurrentTaskDriver();
+        TaskTraceRecorder recorder = new TaskTraceRecorder(1024);
+        driver.setTraceRecorder(recorder);
+        List<Thread> threads = new ArrayList<>();
+
+        for (int i = 0; i < 4; i++) {
+            Thread thread = new Thread(() -> {
+                for (int j = 0; j < 1000; j++) driver.queue(() -> {
+                });
+            });
+            threads.add(thread);
+            thread.start();
+        }
+        for (Thread thread : threads) thread.join(8000);
+
+        Assertions.assertEquals(12000, recorder.getNumberOfRecordedEvents());
+        String trace = recorder.toChromeTrace();
+        Assertions.assertEquals(1024, count(trace, "\"ph\":\"C\""));
+        Assertions.assertTrue(trace.endsWith("]}\n"));
+    }
+}
@@ -0,0 +1,177 @@
+package com.github.trosenkrantz.sync.util.runnable;
+
+import com.github.trosenkrantz.sync.util.timer.HashedWheelTimer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+class DebouncerTest {
+    private HashedWheelTimer timer;
+    private final AtomicInteger runs = new AtomicInteger();
+
+    @BeforeEach
+    void setUp() {
+        timer = new HashedWheelTimer(1, TimeUnit.MILLISECONDS, 8);
+    }
+
+    @AfterEach
+    void tearDown() {
+        timer.stop();
+    }
+
+    private Debouncer debouncer(final long delayMillis, final long maxWaitMillis, final Debouncer.Edge edge) {
+        return new Debouncer(runs::incrementAndGet, delayMillis, maxWaitMillis, TimeUnit.MILLISECONDS, edge, timer);
+    }
+
+    private static void awaitIdle(final Debouncer debouncer) throws InterruptedException {
+        while (debouncer.isPending()) Thread.sleep(1);
+    }
+
+    private void awaitRuns(final Debouncer debouncer, final int expectedRuns) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(8);
+        while (runs.get() < expectedRuns && System.nanoTime() < deadline) Thread.sleep(1); // The burst ends just before the trailing run
+        awaitIdle(debouncer);
+        Thread.sleep(20); // Any extra run would happen meanwhile
+        Assertions.assertEquals(expectedRuns, runs.get());
+    }
+
+    @Test
+    void collapsesBurstIntoTrailingRun() throws InterruptedException {
+        Debouncer debouncer = debouncer(20, 0, Debouncer.Edge.TRAILING);
+
+        for (int i = 0; i < 1000; i++) debouncer.trigger();
+        Assertions.assertEquals(0, runs.get());
+
+        awaitRuns(debouncer, 1);
+    }
+
+    @Test
+    void runsAgainForNextBurst() throws InterruptedException {
+        Debouncer debouncer = debouncer(10, 0, Debouncer.Edge.TRAILING);
+
+        debouncer.trigger();
+        awaitIdle(debouncer);
+        debouncer.trigger();
+        awaitRuns(debouncer, 2);
+    }
+
+    @Test
+    void waitsForQuietDelay() throws InterruptedException {
+        Debouncer debouncer = debouncer(50, 0, Debouncer.Edge.TRAILING);
+        long start = System.nanoTime();
+
+        for (int i = 0; i < 5; i++) {
+            debouncer.trigger();
+            Thread.sleep(10);
+        }
+        awaitRuns(debouncer, 1);
+        Assertions.assertTrue(System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(90), "Ran before quiet");
+    }
+
+    @Test
+    void leadingRunsOnFirstTrigger() throws InterruptedException {
+        Debouncer debouncer = debouncer(20, 0, Debouncer.Edge.LEADING);
+
+        debouncer.trigger();
+        Assertions.assertEquals(1, runs.get());
+        debouncer.trigger();
+        Assertions.assertEquals(1, runs.get());
+
+        awaitRuns(debouncer, 1);
+    }
+
+    @Test
+    void bothEdgesOnlyRunTrailingIfTriggeredAgain() throws InterruptedException {
+        Debouncer debouncer = debouncer(20, 0, Debouncer.Edge.BOTH);
+
+        debouncer.trigger();
+        awaitRuns(debouncer, 1);
+
+        debouncer.trigger();
+        debouncer.trigger();
+        awaitRuns(debouncer, 3);
+    }
+
+    @Test
+    void maxWaitRunsDuringLongBurst() throws InterruptedException {
+        Debouncer debouncer = debouncer(50, 100, Debouncer.Edge.TRAILING);
+        long end = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(350);
+
+        while (System.nanoTime() < end) {
+            debouncer.trigger();
+            Thread.sleep(5);
+        }
+        Assertions.assertTrue(runs.get() >= 2, "Ran " + runs.get() + " times");
+
+        int runsDuringBurst = runs.get();
+        awaitRuns(debouncer, runsDuringBurst + 1);
+    }
+
+    @Test
+    void cancelDiscardsTrailingRun() throws InterruptedException {
+        Debouncer debouncer = debouncer(10, 0, Debouncer.Edge.TRAILING);
+
+        debouncer.trigger();
+        debouncer.cancel();
+        Assertions.assertFalse(debouncer.isPending());
+        Thread.sleep(50);
+        Assertions.assertEquals(0, runs.get());
+
+        debouncer.trigger();
+        awaitRuns(debouncer, 1);
+    }
+
+    @Test
+    void triggersFromManyThreadsRunOnce() throws InterruptedException {
+        Debouncer debouncer = debouncer(50, 0, Debouncer.Edge.TRAILING);
+        List<Thread> threads = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            threads.add(new Thread(() -> {
+                for (int j = 0; j < 10000; j++) debouncer.trigger();
+            }));
+        }
+        threads.forEach(Thread::start);
+        for (Thread thread : threads) thread.join();
+
+        awaitRuns(debouncer, 1);
+    }
+
+    @Test
+    void triggersRacingEndOfBurstAreRunForOnce() throws InterruptedException {
+        AtomicLong lastRunNanos = new AtomicLong();
+        Debouncer debouncer = new Debouncer(() -> {
+            lastRunNanos.set(System.nanoTime());
+            runs.incrementAndGet();
+        }, 1, 0, TimeUnit.MILLISECONDS, Debouncer.Edge.BOTH, timer);
+        Random random = new Random(42);
+
+        int triggers = 500;
+        long lastTriggerNanos = 0;
+        for (int i = 0; i < triggers; i++) {
+            LockSupport.parkNanos(TimeUnit.MICROSECONDS.toNanos(500 + random.nextInt(2500))); // Around the end of the burst
+            lastTriggerNanos = System.nanoTime();
+            debouncer.trigger();
+        }
+        awaitIdle(debouncer);
+        Thread.sleep(20); // Any extra run would happen meanwhile
+
+        Assertions.assertTrue(runs.get() <= triggers, "Ran " + runs.get() + " times for " + triggers + " triggers"); // Each run needs a trigger since the run before
+        Assertions.assertTrue(lastRunNanos.get() >= lastTriggerNanos, "Last trigger was not run for");
+    }
+
+    @Test
+    void validatesArguments() {
+        Assertions.assertThrows(IllegalArgumentException.class, () -> debouncer(0, 0, Debouncer.Edge.TRAILING));
+        Assertions.assertThrows(IllegalArgumentException.class, () -> debouncer(10, -1, Debouncer.Edge.TRAILING));
+        Assertions.assertThrows(IllegalArgumentException.class, () -> debouncer(10, 20, Debouncer.Edge.LEADING));
+    }
+}
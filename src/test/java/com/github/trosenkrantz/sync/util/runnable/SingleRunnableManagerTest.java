@@ -5,6 +5,10 @@ import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
 import java.lang.reflect.Field;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -207,13 +211,40 @@ class SingleRunnableManagerTest {
         assertEquals(0, count2);
     }
 
+    @Test
+    void runsOnceWhenRacingRunAndAllow() throws InterruptedException {
+        for (int round = 0; round < 1000; round++) {
+            SingleRunnableManager manager = new SingleRunnableManager(false);
+            AtomicInteger runs = new AtomicInteger();
+            CountDownLatch start = new CountDownLatch(1);
+            List<Thread> threads = new ArrayList<>();
+            for (int i = 0; i < 4; i++) {
+                boolean allowing = i % 2 == 0;
+                threads.add(new Thread(() -> {
+                    try {
+                        start.await();
+                    } catch (final InterruptedException e) {
+                        throw new RuntimeException(e);
+                    }
+                    if (allowing) manager.allow();
+                    else manager.run(runs::incrementAndGet);
+                }));
+            }
+            threads.forEach(Thread::start);
+            start.countDown();
+            for (Thread thread : threads) thread.join();
+
+            assertEquals(1, runs.get());
+        }
+    }
+
     @Test
     void catchUnexpectedStateValue() throws NoSuchFieldException, IllegalAccessException {
         SingleRunnableManager manager = new SingleRunnableManager();
 
         Field stateField = SingleRunnableManager.class.getDeclaredField("state");
         stateField.setAccessible(true);
-        stateField.set(manager, RunnableState.NEW_VALUE);
+        stateField.setInt(manager, Integer.MAX_VALUE); // No state has this value
 
         Assertions.assertThrows(Exception.class, () -> manager.run(runnable1));
         Assertions.assertThrows(Exception.class, manager::allow);
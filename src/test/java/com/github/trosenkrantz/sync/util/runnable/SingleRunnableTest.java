@@ -51,4 +51,37 @@ class SingleRunnableTest {
 
         assertEquals(1, count);
     }
-}
\ No newline at end of file
+
+    @Test
+    void subclassRunsOnce() {
+        SingleRunnable singleRunnable = new SingleRunnable() {
+            @Override
+            protected void runOnce() {
+                count++;
+            }
+        };
+
+        singleRunnable.run();
+        singleRunnable.run();
+
+        assertEquals(1, count);
+    }
+
+    @Test
+    void subclassRunsOnceWhenAllowed() {
+        SingleRunnable singleRunnable = new SingleRunnable() {
+            @Override
+            protected void runOnce() {
+                count++;
+            }
+        };
+        singleRunnable.suspend();
+
+        singleRunnable.run();
+        assertEquals(0, count);
+
+        singleRunnable.allow();
+        singleRunnable.run();
+        assertEquals(1, count);
+    }
+}
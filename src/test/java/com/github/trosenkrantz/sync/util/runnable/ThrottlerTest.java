@@ -0,0 +1,89 @@
+package com.github.trosenkrantz.sync.util.runnable;
+
+import com.github.trosenkrantz.sync.util.timer.HashedWheelTimer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+class ThrottlerTest {
+    private HashedWheelTimer timer;
+    private final AtomicInteger runs = new AtomicInteger();
+
+    @BeforeEach
+    void setUp() {
+        timer = new HashedWheelTimer(1, TimeUnit.MILLISECONDS, 8);
+    }
+
+    @AfterEach
+    void tearDown() {
+        timer.stop();
+    }
+
+    private void awaitClosed() throws InterruptedException {
+        while (timer.getNumberOfPendingTimeouts() > 0) Thread.sleep(1);
+    }
+
+    private void awaitRuns(final int expectedRuns) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(8);
+        while (runs.get() < expectedRuns && System.nanoTime() < deadline) Thread.sleep(1); // The interval closes just before the collapsed run
+        awaitClosed();
+        Assertions.assertEquals(expectedRuns, runs.get());
+    }
+
+    @Test
+    void runsRightAwayWhenIdle() throws InterruptedException {
+        Throttler throttler = new Throttler(runs::incrementAndGet, 20, TimeUnit.MILLISECONDS, timer);
+
+        throttler.trigger();
+        Assertions.assertEquals(1, runs.get());
+
+        awaitRuns(1);
+    }
+
+    @Test
+    void collapsesTriggersWithinInterval() throws InterruptedException {
+        Throttler throttler = new Throttler(runs::incrementAndGet, 20, TimeUnit.MILLISECONDS, timer);
+
+        for (int i = 0; i < 1000; i++) throttler.trigger();
+        Assertions.assertEquals(1, runs.get());
+        Assertions.assertTrue(throttler.isPending());
+
+        awaitRuns(2);
+    }
+
+    @Test
+    void runsAtMostOncePerInterval() throws InterruptedException {
+        Throttler throttler = new Throttler(runs::incrementAndGet, 50, TimeUnit.MILLISECONDS, timer);
+        long start = System.nanoTime();
+
+        while (System.nanoTime() - start < TimeUnit.MILLISECONDS.toNanos(240)) {
+            throttler.trigger();
+            Thread.sleep(1);
+        }
+        awaitClosed();
+        long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        Assertions.assertTrue(runs.get() <= elapsedMillis / 50 + 1, "Ran " + runs.get() + " times in " + elapsedMillis + " ms");
+        Assertions.assertTrue(runs.get() >= 4, "Ran " + runs.get() + " times");
+    }
+
+    @Test
+    void cancelDiscardsPendingRun() throws InterruptedException {
+        Throttler throttler = new Throttler(runs::incrementAndGet, 20, TimeUnit.MILLISECONDS, timer);
+
+        throttler.trigger();
+        throttler.trigger();
+        throttler.cancel();
+        Assertions.assertFalse(throttler.isPending());
+
+        awaitRuns(1);
+    }
+
+    @Test
+    void intervalMustBePositive() {
+        Assertions.assertThrows(IllegalArgumentException.class, () -> new Throttler(runs::incrementAndGet, 0, TimeUnit.MILLISECONDS, timer));
+    }
+}
@@ -0,0 +1,124 @@
+package com.github.trosenkrantz.sync.util.timer;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+class HashedWheelTimerTest {
+    private HashedWheelTimer timer;
+
+    @BeforeEach
+    void setUp() {
+        timer = new HashedWheelTimer(1, TimeUnit.MILLISECONDS, 8);
+    }
+
+    @AfterEach
+    void tearDown() {
+        timer.stop();
+    }
+
+    private void awaitNoPendingTimeouts() throws InterruptedException {
+        while (timer.getNumberOfPendingTimeouts() > 0) {
+            Thread.sleep(1);
+        }
+    }
+
+    @Test
+    void runsAfterDelay() throws InterruptedException {
+        CountDownLatch latch = new CountDownLatch(1);
+        long start = System.nanoTime();
+
+        Timeout timeout = timer.schedule(latch::countDown, 20, TimeUnit.MILLISECONDS);
+        Assertions.assertTrue(latch.await(8, TimeUnit.SECONDS));
+
+        Assertions.assertTrue(System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(20), "Ran before deadline");
+        Assertions.assertTrue(timeout.isExpired());
+        Assertions.assertFalse(timeout.cancel());
+    }
+
+    @Test
+    void runsAfterMoreThanOneRound() throws InterruptedException {
+        CountDownLatch latch = new CountDownLatch(1);
+        long start = System.nanoTime();
+
+        timer.schedule(latch::countDown, 30, TimeUnit.MILLISECONDS); // Wheel of 8 ticks of 1 millisecond
+        Assertions.assertTrue(latch.await(8, TimeUnit.SECONDS));
+
+        Assertions.assertTrue(System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(30), "Ran before deadline");
+    }
+
+    @Test
+    void hugeDelaysDoNotRunRightAway() throws InterruptedException {
+        AtomicInteger runCount = new AtomicInteger();
+
+        Timeout maxNanos = timer.schedule(runCount::incrementAndGet, Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+        Timeout maxDays = timer.schedule(runCount::incrementAndGet, Long.MAX_VALUE / 2, TimeUnit.DAYS);
+        Thread.sleep(30);
+
+        Assertions.assertEquals(0, runCount.get());
+        Assertions.assertEquals(2, timer.getNumberOfPendingTimeouts());
+        Assertions.assertTrue(maxNanos.cancel());
+        Assertions.assertTrue(maxDays.cancel());
+    }
+
+    @Test
+    void cancelledDoesNotRun() throws InterruptedException {
+        AtomicInteger runCount = new AtomicInteger();
+
+        Timeout timeout = timer.schedule(runCount::incrementAndGet, 10, TimeUnit.MILLISECONDS);
+        Assertions.assertTrue(timeout.cancel());
+        Assertions.assertFalse(timeout.cancel());
+        awaitNoPendingTimeouts();
+        Thread.sleep(30);
+
+        Assertions.assertTrue(timeout.isCancelled());
+        Assertions.assertEquals(0, runCount.get());
+    }
+
+    @Test
+    void manyTimeoutsMostlyCancelled() throws InterruptedException {
+        final int count = 100000;
+        CountDownLatch latch = new CountDownLatch(count / 10);
+
+        for (int i = 0; i < count; i++) {
+            Timeout timeout = timer.schedule(latch::countDown, i % 50, TimeUnit.MILLISECONDS);
+            if (i % 10 != 0) timeout.cancel();
+        }
+        Assertions.assertTrue(latch.await(8, TimeUnit.SECONDS));
+        awaitNoPendingTimeouts();
+    }
+
+    @Test
+    void exceptionDoesNotStopTimer() throws InterruptedException {
+        CountDownLatch latch = new CountDownLatch(1);
+        Thread.UncaughtExceptionHandler handler = Thread.getDefaultUncaughtExceptionHandler();
+        Thread.setDefaultUncaughtExceptionHandler((thread, e) -> {});
+        try {
+            timer.schedule(() -> {
+                throw new IllegalStateException();
+            }, 1, TimeUnit.MILLISECONDS);
+            timer.schedule(latch::countDown, 5, TimeUnit.MILLISECONDS);
+
+            Assertions.assertTrue(latch.await(8, TimeUnit.SECONDS));
+        } finally {
+            Thread.setDefaultUncaughtExceptionHandler(handler);
+        }
+    }
+
+    @Test
+    void stoppedRejectsTimeouts() {
+        timer.stop();
+
+        Assertions.assertThrows(IllegalStateException.class, () -> timer.schedule(() -> {}, 1, TimeUnit.MILLISECONDS));
+    }
+
+    @Test
+    void sharedCannotBeStopped() {
+        Assertions.assertThrows(UnsupportedOperationException.class, () -> HashedWheelTimer.getShared().stop());
+    }
+}